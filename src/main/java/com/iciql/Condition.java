@@ -56,19 +56,38 @@ class Condition<A> implements Token {
 	@SuppressWarnings("unchecked")
 	public <T> void appendSQL(SQLStatement stat, Query<T> query) {
 		query.appendSQL(stat, null, x);
+		if (i != null) {
+			// IN and NOT IN render their own operator
+			query.appendSQL(stat, x, (Iterable<Object>) i, compareType);
+			return;
+		}
 		stat.appendSQL(" ");
 		stat.appendSQL(compareType.getString());
 		if (compareType.hasRightExpression()) {
-			if (i == null) {
-				stat.appendSQL(" ");
-				if (z == null) {
-					query.appendSQL(stat, x, y);
-				} else {
-					query.appendSQL(stat, x, y, z, compareType);
-				}
+			stat.appendSQL(" ");
+			if (z == null) {
+				query.appendSQL(stat, x, y);
 			} else {
-				query.appendSQL(stat, x, (Iterable<Object>)i, compareType);
+				query.appendSQL(stat, x, y, z, compareType);
 			}
 		}
 	}
+
+	@SuppressWarnings("unchecked")
+	<T> boolean appendKey(SQLStatement.Key key, Query<T> query) {
+		key.add(Condition.class);
+		if (!query.appendKey(key, null, x)) {
+			return false;
+		}
+		if (i != null) {
+			return query.appendKey(key, x, (Iterable<Object>) i, compareType);
+		}
+		key.add(compareType);
+		if (!compareType.hasRightExpression()) {
+			return true;
+		} else if (z == null) {
+			return query.appendKey(key, x, y);
+		}
+		return query.appendKey(key, x, y, z);
+	}
 }
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2026 iciql contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iciql;
+
+import java.util.Iterator;
+
+/**
+ * A Cursor streams the rows of a query without reading the whole result into
+ * memory. The result set and statement are released when the last row has
+ * been read or when the cursor is closed, whichever comes first.
+ * <p>
+ * A cursor holds an open result set on the connection of the Db, so it should
+ * always be closed if it is not read to the end.
+ * </p>
+ *
+ * @param <T>
+ *            the row type
+ */
+public interface Cursor<T> extends Iterator<T>, Iterable<T>, AutoCloseable {
+
+	/**
+	 * Releases the result set and statement of the cursor.
+	 */
+	@Override
+	void close();
+}
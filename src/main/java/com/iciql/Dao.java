@@ -154,6 +154,49 @@ public interface Dao extends AutoCloseable {
 		String value();
 	}
 
+	/**
+	 * Used to indicate that a method should execute a statement as a JDBC
+	 * batch. Array and Iterable arguments are iterated in parallel, one batch
+	 * row per element, and all other arguments are bound to every row.
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target({ ElementType.METHOD })
+	public @interface SqlBatch {
+		String value();
+
+		/**
+		 * The number of rows sent to the database by each executeBatch.
+		 */
+		int batchSize() default 100;
+	}
+
+	/**
+	 * Used to cache the results of a query method in the ResultCache of the
+	 * Db. Results are keyed by the bound parameters and are invalidated by
+	 * writes to the tables read by the query.
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target({ ElementType.METHOD })
+	public @interface CacheResult {
+
+		/**
+		 * The time to live of a result in milliseconds, 0 keeps results until
+		 * they are invalidated or evicted.
+		 */
+		long ttl() default 0;
+
+		/**
+		 * The maximum number of cached results of the method.
+		 */
+		int maxEntries() default 100;
+
+		/**
+		 * The tables read by the query. If empty, every write invalidates the
+		 * cached results.
+		 */
+		String[] tables() default {};
+	}
+
 	public class BeanBinder {
 		public void bind(BindBean bind, Object obj) {
 
@@ -0,0 +1,916 @@
+/*
+ * Copyright 2026 iciql contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iciql;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+
+import com.iciql.Dao.Bind;
+import com.iciql.Dao.BindBean;
+import com.iciql.Dao.CacheResult;
+import com.iciql.Dao.SqlBatch;
+import com.iciql.Dao.SqlQuery;
+import com.iciql.Dao.SqlStatement;
+import com.iciql.util.StringUtils;
+
+/**
+ * DaoProcessor is an annotation processor which generates the implementation
+ * of DAO interfaces at compile time. The generated classes bind method
+ * arguments and bean properties with typed JDBC setters and do not use
+ * reflection or proxy dispatch. Invalid return types and unbound parameters
+ * are reported as compile errors.
+ * <p>
+ * The processor is not registered as a service, it must be enabled explicitly
+ * with <code>javac -processor com.iciql.DaoProcessor</code>. Db.open(Class)
+ * returns an instance of the generated class, if there is one.
+ * </p>
+ * <p>
+ * Statements which are resolved by the DaoStatementProvider at runtime, e.g.
+ * the ids of external statements, @SqlBatch methods, @CacheResult methods and
+ * methods which return a Future are delegated to the dynamic proxy.
+ * </p>
+ */
+@SupportedAnnotationTypes({ "com.iciql.Dao.SqlQuery", "com.iciql.Dao.SqlStatement", "com.iciql.Dao.SqlBatch" })
+public class DaoProcessor extends AbstractProcessor {
+
+	private static final String TYPE_ADAPTER = "com.iciql.Iciql.TypeAdapter";
+
+	private final char bindingDelimiter = ':';
+
+	private final Set<String> generated = new HashSet<String>();
+
+	private Elements elements;
+
+	private Types types;
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		elements = processingEnv.getElementUtils();
+		types = processingEnv.getTypeUtils();
+
+		Set<TypeElement> daos = new LinkedHashSet<TypeElement>();
+		for (TypeElement annotation : annotations) {
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				daos.add((TypeElement) element.getEnclosingElement());
+			}
+		}
+
+		for (TypeElement dao : daos) {
+			if (generated.add(elements.getBinaryName(dao).toString())) {
+				generate(dao);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Generates the implementation of a DAO interface.
+	 *
+	 * @param dao
+	 */
+	private void generate(TypeElement dao) {
+		if (dao.getKind() != ElementKind.INTERFACE
+				|| !types.isAssignable(types.erasure(dao.asType()), elements.getTypeElement(Dao.class.getName())
+						.asType())) {
+			error(dao, "@{0} and @{1} methods must be declared by an interface which extends {2}",
+					SqlQuery.class.getSimpleName(), SqlStatement.class.getSimpleName(), Dao.class.getName());
+			return;
+		}
+		if (!dao.getTypeParameters().isEmpty() || dao.getModifiers().contains(Modifier.PRIVATE)) {
+			// can not be implemented by a top-level class, use the proxy
+			return;
+		}
+
+		String daoName = types.erasure(dao.asType()).toString();
+		String binaryName = DaoSupport.getImplementationName(elements.getBinaryName(dao).toString());
+		String packageName = elements.getPackageOf(dao).getQualifiedName().toString();
+		String className = binaryName.substring(binaryName.lastIndexOf('.') + 1);
+
+		StringBuilder constants = new StringBuilder();
+		StringBuilder methods = new StringBuilder();
+		List<String> statements = new ArrayList<String>();
+		boolean valid = true;
+
+		for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(dao))) {
+			String declaringClass = ((TypeElement) method.getEnclosingElement()).getQualifiedName().toString();
+			if (Object.class.getName().equals(declaringClass) || Dao.class.getName().equals(declaringClass)
+					|| method.getModifiers().contains(Modifier.STATIC)
+					|| !method.getModifiers().contains(Modifier.ABSTRACT)) {
+				continue;
+			}
+
+			if (hasErrorType(method)) {
+				// unresolved types are reported by the compiler
+				return;
+			}
+
+			String sql;
+			boolean isQuery;
+			boolean isBatch = false;
+			boolean isAsync = isType(types.erasure(method.getReturnType()), Future.class);
+			if (method.getAnnotation(SqlQuery.class) != null) {
+				sql = method.getAnnotation(SqlQuery.class).value();
+				isQuery = true;
+			} else if (method.getAnnotation(SqlStatement.class) != null) {
+				sql = method.getAnnotation(SqlStatement.class).value();
+				isQuery = false;
+			} else if (method.getAnnotation(SqlBatch.class) != null) {
+				sql = method.getAnnotation(SqlBatch.class).value();
+				isQuery = false;
+				isBatch = true;
+				if (!isAsync && !isValidBatch(method)) {
+					valid = false;
+					continue;
+				}
+			} else {
+				error(method, "Can not implement non-dao method {0}.{1}", dao.getSimpleName(),
+						method.getSimpleName());
+				valid = false;
+				continue;
+			}
+
+			methods.append('\n');
+			methods.append("\t@Override\n");
+			methods.append("\tpublic ").append(signature(method)).append(" {\n");
+
+			if (isBatch || isAsync || method.getAnnotation(CacheResult.class) != null || !isStatement(sql)
+					|| !method.getTypeParameters().isEmpty()) {
+				// delegate batches, asynchronous methods, cached queries, statements resolved at runtime
+				// and generic methods
+				String constant = "METHOD_" + statements.size();
+				statements.add(null);
+				constants.append("\tprivate static final java.lang.reflect.Method ").append(constant);
+				constants.append(" = method(").append(daoName).append(".class, \"").append(method.getSimpleName())
+						.append("\", new Class<?>[] {");
+				String comma = " ";
+				for (VariableElement parameter : method.getParameters()) {
+					constants.append(comma).append(types.erasure(parameter.asType())).append(".class");
+					comma = ", ";
+				}
+				constants.append(" });\n");
+				methods.append(delegate(method, constant));
+				methods.append("\t}\n");
+				continue;
+			}
+
+			String constant = "SQL_" + statements.size();
+			statements.add(constant);
+			StringBuilder body = new StringBuilder();
+			String preparedSql;
+			if (method.getParameters().isEmpty()) {
+				// no method arguments
+				preparedSql = sql;
+			} else {
+				preparedSql = bind(method, sql, body);
+				if (preparedSql == null) {
+					valid = false;
+					continue;
+				}
+			}
+
+			String execute = isQuery ? query(method, constant, preparedSql) : update(method, constant);
+			if (execute == null) {
+				valid = false;
+				continue;
+			}
+
+			constants.append("\tprivate static final String SOURCE_").append(constant.substring(4)).append(" = \"")
+					.append(escape(sql)).append("\";\n");
+			constants.append("\tprivate static final String ").append(constant).append(" = \"")
+					.append(escape(preparedSql)).append("\";\n");
+			methods.append("\t\tjava.sql.PreparedStatement statement = prepare(").append(constant).append(");\n");
+			if (body.length() > 0) {
+				methods.append("\t\ttry {\n");
+				methods.append(body);
+				methods.append("\t\t} catch (Exception e) {\n");
+				methods.append("\t\t\tthrow failed(statement, e);\n");
+				methods.append("\t\t}\n");
+			}
+			methods.append(execute);
+			methods.append("\t}\n");
+		}
+
+		if (!valid) {
+			return;
+		}
+
+		StringBuilder source = new StringBuilder();
+		if (!StringUtils.isNullOrEmpty(packageName)) {
+			source.append("package ").append(packageName).append(";\n\n");
+		}
+		source.append("/**\n");
+		source.append(" * Generated by ").append(DaoProcessor.class.getName()).append(" from ").append(daoName)
+				.append(".\n");
+		source.append(" * Do not edit.\n");
+		source.append(" */\n");
+		source.append("@SuppressWarnings(\"unchecked\")\n");
+		source.append("public final class ").append(className).append(" extends ")
+				.append(DaoSupport.class.getName()).append(" implements ").append(daoName).append(" {\n\n");
+		source.append(constants);
+		source.append('\n');
+		source.append("\tpublic ").append(className).append("(").append(Db.class.getName()).append(" db) {\n");
+		// the annotation values let the DaoSupport detect statements which are
+		// replaced by the statement provider at runtime
+		StringBuilder sources = new StringBuilder();
+		StringBuilder compiled = new StringBuilder();
+		String comma = " ";
+		for (String statement : statements) {
+			if (statement != null) {
+				sources.append(comma).append("SOURCE_").append(statement.substring(4));
+				compiled.append(comma).append(statement);
+				comma = ", ";
+			}
+		}
+		source.append("\t\tsuper(db, ").append(daoName).append(".class, new String[] {").append(sources)
+				.append(" }, new String[] {").append(compiled).append(" });\n");
+		source.append("\t}\n");
+		source.append(methods);
+		source.append("}\n");
+
+		try {
+			Writer writer = processingEnv.getFiler().createSourceFile(binaryName, dao).openWriter();
+			try {
+				writer.write(source.toString());
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			error(dao, "Failed to generate {0}: {1}", binaryName, e.getMessage());
+		}
+	}
+
+	private boolean hasErrorType(ExecutableElement method) {
+		if (method.getReturnType().getKind() == TypeKind.ERROR) {
+			return true;
+		}
+		for (VariableElement parameter : method.getParameters()) {
+			if (parameter.asType().getKind() == TypeKind.ERROR) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Validates the return type and batch arguments of a @SqlBatch method,
+	 * like the DaoProxy.
+	 *
+	 * @param method
+	 * @return true if the method is valid
+	 */
+	private boolean isValidBatch(ExecutableElement method) {
+		TypeMirror returnType = method.getReturnType();
+		if (returnType.getKind() != TypeKind.VOID
+				&& !(returnType.getKind() == TypeKind.ARRAY && ((ArrayType) returnType).getComponentType()
+						.getKind() == TypeKind.INT)) {
+			error(method, "Invalid return type ''{0}'' for @{1} {2}.{3}!", returnType,
+					SqlBatch.class.getSimpleName(), method.getEnclosingElement().getSimpleName(),
+					method.getSimpleName());
+			return false;
+		}
+		TypeMirror iterable = types.erasure(type(Iterable.class));
+		for (VariableElement parameter : method.getParameters()) {
+			TypeMirror type = parameter.asType();
+			if ((type.getKind() == TypeKind.ARRAY && ((ArrayType) type).getComponentType().getKind() != TypeKind.BYTE)
+					|| types.isAssignable(types.erasure(type), iterable)) {
+				return true;
+			}
+		}
+		error(method, "@{0} {1}.{2} must have an array or Iterable parameter!", SqlBatch.class.getSimpleName(),
+				method.getEnclosingElement().getSimpleName(), method.getSimpleName());
+		return false;
+	}
+
+	/**
+	 * Returns true if the value of an annotation is a statement, false if it
+	 * is the id of an external statement.
+	 *
+	 * @param sql
+	 * @return true if the value is a statement
+	 */
+	private boolean isStatement(String sql) {
+		for (int i = 0; i < sql.length(); i++) {
+			if (Character.isWhitespace(sql.charAt(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the signature of the implementation of a method.
+	 *
+	 * @param method
+	 * @return the signature
+	 */
+	private String signature(ExecutableElement method) {
+		StringBuilder sb = new StringBuilder();
+		if (!method.getTypeParameters().isEmpty()) {
+			sb.append('<');
+			String comma = "";
+			for (TypeParameterElement parameter : method.getTypeParameters()) {
+				sb.append(comma).append(parameter.getSimpleName());
+				String and = " extends ";
+				for (TypeMirror bound : parameter.getBounds()) {
+					if (!Object.class.getName().equals(bound.toString())) {
+						sb.append(and).append(bound);
+						and = " & ";
+					}
+				}
+				comma = ", ";
+			}
+			sb.append("> ");
+		}
+		sb.append(method.getReturnType()).append(' ').append(method.getSimpleName()).append('(');
+		for (int i = 0; i < method.getParameters().size(); i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(method.getParameters().get(i).asType()).append(" arg").append(i);
+		}
+		sb.append(')');
+		if (!method.getThrownTypes().isEmpty()) {
+			sb.append(" throws ");
+			String comma = "";
+			for (TypeMirror thrown : method.getThrownTypes()) {
+				sb.append(comma).append(thrown);
+				comma = ", ";
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the body of a method which is delegated to the dynamic proxy.
+	 *
+	 * @param method
+	 * @param constant
+	 * @return the method body
+	 */
+	private String delegate(ExecutableElement method, String constant) {
+		StringBuilder sb = new StringBuilder("\t\t");
+		TypeMirror returnType = method.getReturnType();
+		if (returnType.getKind() != TypeKind.VOID) {
+			sb.append("return (").append(boxed(returnType)).append(") ");
+		}
+		sb.append("invoke(").append(constant).append(", new Object[] {");
+		String comma = " ";
+		for (int i = 0; i < method.getParameters().size(); i++) {
+			sb.append(comma).append("arg").append(i);
+			comma = ", ";
+		}
+		sb.append(" });\n");
+		return sb.toString();
+	}
+
+	/**
+	 * Replaces the parameters of a statement with JDBC placeholders and
+	 * appends the typed parameter binding to the method body.
+	 *
+	 * @param method
+	 * @param sql
+	 * @param body
+	 * @return the JDBC statement or null, if a parameter is unbound
+	 */
+	private String bind(ExecutableElement method, String sql, StringBuilder body) {
+
+		Map<String, Binding> parameterIndex = buildParameterIndex(method);
+
+		// build a regex to extract parameter names from the sql statement,
+		// longer names first so that :p does not match :p.name
+		List<String> names = new ArrayList<String>(parameterIndex.keySet());
+		Collections.sort(names, new Comparator<String>() {
+			@Override
+			public int compare(String a, String b) {
+				return b.length() - a.length();
+			}
+		});
+		StringBuilder sb = new StringBuilder();
+		sb.append(bindingDelimiter);
+		sb.append("{1}(\\?");
+		for (String name : names) {
+			sb.append("|");
+			sb.append(Pattern.quote(name));
+		}
+		sb.append(')');
+
+		final Pattern p = Pattern.compile(sb.toString());
+		final Matcher m = p.matcher(sql);
+		final StringBuffer buffer = new StringBuffer();
+
+		int count = 0;
+		while (m.find()) {
+			String name = m.group(1);
+			m.appendReplacement(buffer, "?");
+
+			Binding binding;
+			if ("?".equals(name)) {
+				// standard ? JDBC placeholder
+				binding = parameterIndex.get("arg" + count);
+			} else {
+				// named placeholder
+				binding = parameterIndex.get(name);
+			}
+
+			if (binding == null) {
+				error(method, "Unbound SQL parameter ''{0}'' in {1}.{2}", name,
+						method.getEnclosingElement().getSimpleName(), method.getSimpleName());
+				return null;
+			}
+
+			count++;
+			body.append("\t\t\t").append(binding.setter(count)).append('\n');
+		}
+		m.appendTail(buffer);
+
+		String unbound = findNamedParameter(buffer.toString());
+		if (unbound != null) {
+			error(method, "Unbound SQL parameter ''{0}'' in {1}.{2}", unbound,
+					method.getEnclosingElement().getSimpleName(), method.getSimpleName());
+			return null;
+		}
+
+		return buffer.toString();
+	}
+
+	/**
+	 * Returns the first named parameter of a statement, outside of quoted
+	 * literals. Double delimiters, e.g. PostgreSQL casts, are ignored.
+	 *
+	 * @param sql
+	 * @return the name of the parameter or null
+	 */
+	private String findNamedParameter(String sql) {
+		boolean quoted = false;
+		for (int i = 0; i < sql.length(); i++) {
+			char c = sql.charAt(i);
+			if (c == '\'') {
+				quoted = !quoted;
+			} else if (!quoted && c == bindingDelimiter) {
+				if (i + 1 < sql.length() && sql.charAt(i + 1) == bindingDelimiter) {
+					i++;
+				} else if (i + 1 < sql.length() && Character.isJavaIdentifierStart(sql.charAt(i + 1))) {
+					int end = i + 1;
+					while (end < sql.length()
+							&& (Character.isJavaIdentifierPart(sql.charAt(end)) || sql.charAt(end) == '.')) {
+						end++;
+					}
+					return sql.substring(i + 1, end);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Builds an index of parameter name->binding from the method parameters.
+	 *
+	 * @param method
+	 * @return a bindings map of ("name", Binding) pairs
+	 */
+	private Map<String, Binding> buildParameterIndex(ExecutableElement method) {
+
+		Map<String, Binding> index = new TreeMap<String, Binding>();
+
+		List<? extends VariableElement> parameters = method.getParameters();
+		for (int i = 0; i < parameters.size(); i++) {
+
+			VariableElement parameter = parameters.get(i);
+			String argument = "arg" + i;
+
+			// map the bean properties of the method argument class
+			BindBean bean = parameter.getAnnotation(BindBean.class);
+			if (bean != null && parameter.asType().getKind() == TypeKind.DECLARED) {
+				index.putAll(buildBeanIndex(argument, bean.value(), (DeclaredType) parameter.asType()));
+			}
+
+			String typeAdapter = getTypeAdapter(parameter);
+			if (typeAdapter == null && parameter.asType().getKind() == TypeKind.DECLARED) {
+				// the type adapter of the argument class
+				typeAdapter = getTypeAdapter(types.asElement(parameter.asType()));
+			}
+			Binding binding = new Binding(argument, parameter.asType(), typeAdapter);
+
+			// :N - 1-indexed, like JDBC ResultSet
+			index.put("" + (i + 1), binding);
+
+			// argN - 0-indexed, like Reflection
+			index.put(argument, binding);
+
+			// Bound name
+			Bind bind = parameter.getAnnotation(Bind.class);
+			if (bind != null && !bind.value().isEmpty()) {
+				index.put(bind.value(), binding);
+			}
+
+			// source argument name
+			index.put(parameter.getSimpleName().toString(), binding);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Builds an index of bean property->binding.
+	 *
+	 * @param argument
+	 * @param prefix
+	 * @param beanType
+	 * @return a bindings map of ("prefix.property", Binding) pairs
+	 */
+	private Map<String, Binding> buildBeanIndex(String argument, String prefix, DeclaredType beanType) {
+
+		final String beanPrefix = StringUtils.isNullOrEmpty(prefix) ? "" : (prefix + ".");
+		final Map<String, Binding> index = new TreeMap<String, Binding>();
+		final List<? extends Element> members = elements.getAllMembers((TypeElement) beanType.asElement());
+
+		// map JavaBean property getters
+		for (ExecutableElement method : ElementFilter.methodsIn(members)) {
+
+			TypeElement declaringClass = (TypeElement) method.getEnclosingElement();
+			if (!method.getModifiers().contains(Modifier.PUBLIC)
+					|| method.getModifiers().contains(Modifier.STATIC)
+					|| method.getReturnType().getKind() == TypeKind.VOID
+					|| !method.getParameters().isEmpty()
+					|| Object.class.getName().equals(declaringClass.getQualifiedName().toString())) {
+
+				// not a JavaBean property
+				continue;
+			}
+
+			final String name = method.getSimpleName().toString();
+			final String propertyName;
+			if (name.startsWith("get")) {
+				propertyName = name.substring(3);
+			} else if (name.startsWith("is")) {
+				propertyName = name.substring(2);
+			} else {
+				// not a conventional JavaBean property
+				continue;
+			}
+			if (propertyName.length() == 0) {
+				continue;
+			}
+
+			TypeMirror type = ((ExecutableType) types.asMemberOf(beanType, method))
+					.getReturnType();
+			index.put(beanPrefix + preparePropertyName(propertyName), new Binding(argument + "." + name + "()",
+					type, getTypeAdapter(method)));
+		}
+
+		// map public instance fields
+		for (VariableElement field : ElementFilter.fieldsIn(members)) {
+
+			if (!field.getModifiers().contains(Modifier.PUBLIC) || field.getModifiers().contains(Modifier.STATIC)) {
+				// not a JavaBean property
+				continue;
+			}
+
+			String name = field.getSimpleName().toString();
+			TypeMirror type = types.asMemberOf(beanType, field);
+			index.put(beanPrefix + preparePropertyName(name), new Binding(argument + "." + name, type,
+					getTypeAdapter(field)));
+		}
+
+		return index;
+	}
+
+	/**
+	 * Returns the statements which execute a query and return the result.
+	 *
+	 * @param method
+	 * @param constant
+	 * @param sql
+	 * @return the statements or null, if the return type is invalid
+	 */
+	private String query(ExecutableElement method, String constant, String sql) {
+		TypeMirror returnType = method.getReturnType();
+		TypeMirror erasure = types.erasure(returnType);
+
+		String execute;
+		TypeMirror rowType;
+		String consumer = null;
+		if (returnType.getKind() == TypeKind.VOID) {
+			// rows are passed to a RowConsumer argument
+			rowType = null;
+			for (int i = 0; i < method.getParameters().size(); i++) {
+				TypeMirror type = method.getParameters().get(i).asType();
+				if (types.isSameType(types.erasure(type), types.erasure(type(RowConsumer.class)))) {
+					rowType = getRowType(method, type);
+					consumer = "arg" + i;
+					break;
+				}
+			}
+			if (consumer == null) {
+				error(method, "You must specify a return type or a {0} parameter for @{1} {2}.{3}!",
+						RowConsumer.class.getSimpleName(), SqlQuery.class.getSimpleName(),
+						method.getEnclosingElement().getSimpleName(), method.getSimpleName());
+				return null;
+			}
+			execute = "\t\tqueryRows(";
+		} else if (isType(erasure, java.util.List.class) || isType(erasure, java.util.Collection.class)) {
+			rowType = getRowType(method, returnType);
+			execute = "\t\treturn queryList(";
+		} else if (isType(erasure, java.util.Iterator.class) || isType(erasure, Cursor.class)) {
+			rowType = getRowType(method, returnType);
+			execute = "\t\treturn queryCursor(";
+		} else if (types.isAssignable(erasure, types.erasure(type(java.util.Collection.class)))) {
+			error(method,
+					"You may not return a {0} for an @{1} method, please change the return type of {2}.{3} to YourClass[] or List<YourClass>!",
+					types.asElement(returnType).getSimpleName(), SqlQuery.class.getSimpleName(),
+					method.getEnclosingElement().getSimpleName(), method.getSimpleName());
+			return null;
+		} else if (returnType.getKind() == TypeKind.ARRAY) {
+			rowType = ((ArrayType) returnType).getComponentType();
+			execute = "\t\treturn (" + returnType + ") queryArray(";
+		} else {
+			rowType = returnType;
+			execute = "\t\treturn (" + boxed(returnType) + ") queryFirst(";
+		}
+		if (rowType == null) {
+			return null;
+		}
+
+		String typeAdapter = getTypeAdapter(method);
+		String adapterClass = typeAdapter == null ? "null" : (typeAdapter + ".class");
+
+		// query of an Iciql model or of a standard Java type or a DataTypeAdapter type
+		boolean model = !isJavaType(rowType) && typeAdapter == null;
+
+		StringBuilder sb = new StringBuilder(execute);
+		sb.append(constant).append(", statement, ").append(types.erasure(rowType)).append(".class, ")
+				.append(model).append(", ").append(adapterClass);
+		if (consumer != null) {
+			sb.append(", ").append(consumer);
+		}
+		sb.append(");\n");
+		return sb.toString();
+	}
+
+	private boolean isType(TypeMirror erasure, Class<?> c) {
+		return types.isSameType(erasure, types.erasure(type(c)));
+	}
+
+	/**
+	 * Returns the row type of a parameterized return or parameter type.
+	 *
+	 * @param method
+	 * @param type
+	 * @return the row type or null, if the type is not parameterized
+	 */
+	private TypeMirror getRowType(ExecutableElement method, TypeMirror type) {
+		if (type.getKind() == TypeKind.DECLARED) {
+			List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+			if (arguments.size() == 1
+					&& (arguments.get(0).getKind() == TypeKind.DECLARED || arguments.get(0).getKind() == TypeKind.ARRAY)) {
+				return arguments.get(0);
+			}
+		}
+		error(method, "You must specify the row type of {0}.{1}, e.g. List<YourClass>!", method
+				.getEnclosingElement().getSimpleName(), method.getSimpleName());
+		return null;
+	}
+
+	/**
+	 * Returns the statements which execute a statement and return the result.
+	 *
+	 * @param method
+	 * @param constant
+	 * @return the statements or null, if the return type is invalid
+	 */
+	private String update(ExecutableElement method, String constant) {
+		TypeKind kind = method.getReturnType().getKind();
+		if (kind == TypeKind.VOID) {
+			return "\t\texecuteUpdate(" + constant + ", statement);\n";
+		} else if (kind == TypeKind.BOOLEAN) {
+			return "\t\treturn executeUpdate(" + constant + ", statement) > 0;\n";
+		} else if (kind == TypeKind.INT) {
+			return "\t\treturn executeUpdate(" + constant + ", statement);\n";
+		}
+		error(method, "Invalid return type ''{0}'' for @{1} {2}.{3}!", method.getReturnType(),
+				SqlStatement.class.getSimpleName(), method.getEnclosingElement().getSimpleName(),
+				method.getSimpleName());
+		return null;
+	}
+
+	/**
+	 * Returns true if the type is a standard Java type, like the DaoProxy.
+	 *
+	 * @param type
+	 * @return true if the type is a standard Java type
+	 */
+	private boolean isJavaType(TypeMirror type) {
+		if (type.getKind().isPrimitive()) {
+			return true;
+		}
+		if (type.getKind() == TypeKind.ARRAY) {
+			return ((ArrayType) type).getComponentType().getKind() == TypeKind.BYTE;
+		}
+		if (type.getKind() != TypeKind.DECLARED) {
+			return false;
+		}
+		TypeMirror erasure = types.erasure(type);
+		return types.asElement(type).getKind() == ElementKind.ENUM
+				|| types.isAssignable(erasure, type(Boolean.class))
+				|| types.isAssignable(erasure, type(Number.class))
+				|| types.isAssignable(erasure, type(String.class))
+				|| types.isAssignable(erasure, type(java.util.Date.class));
+	}
+
+	private TypeMirror type(Class<?> c) {
+		return elements.getTypeElement(c.getCanonicalName()).asType();
+	}
+
+	/**
+	 * Returns the reference type of a type, for casts.
+	 *
+	 * @param type
+	 * @return the reference type
+	 */
+	private String boxed(TypeMirror type) {
+		if (type.getKind().isPrimitive()) {
+			return types.boxedClass((PrimitiveType) type).getQualifiedName().toString();
+		}
+		return type.toString();
+	}
+
+	/**
+	 * Returns the type adapter of an element, like Utils.getDataTypeAdapter.
+	 *
+	 * @param element
+	 * @return the qualified name of the type adapter class or null
+	 */
+	private String getTypeAdapter(Element element) {
+		String typeAdapter = null;
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+			if (TYPE_ADAPTER.equals(annotationType.getQualifiedName().toString())) {
+				typeAdapter = getValue(annotation);
+			} else {
+				for (AnnotationMirror meta : annotationType.getAnnotationMirrors()) {
+					TypeElement metaType = (TypeElement) meta.getAnnotationType().asElement();
+					if (TYPE_ADAPTER.equals(metaType.getQualifiedName().toString())) {
+						typeAdapter = getValue(meta);
+					}
+				}
+			}
+		}
+		return typeAdapter;
+	}
+
+	private String getValue(AnnotationMirror annotation) {
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation
+				.getElementValues().entrySet()) {
+			if ("value".equals(entry.getKey().getSimpleName().toString())) {
+				TypeMirror type = (TypeMirror) entry.getValue().getValue();
+				return types.erasure(type).toString();
+			}
+		}
+		return null;
+	}
+
+	private String preparePropertyName(String value) {
+		return Character.toLowerCase(value.charAt(0)) + value.substring(1);
+	}
+
+	private String escape(String sql) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < sql.length(); i++) {
+			char c = sql.charAt(i);
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if (c < ' ' || c > '~') {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	private void error(Element element, String message, Object... args) {
+		processingEnv.getMessager().printMessage(Kind.ERROR, MessageFormat.format(message, args),
+				element);
+	}
+
+	/**
+	 * A parameter of a generated statement.
+	 */
+	private static class Binding {
+		final String expression;
+		final TypeMirror type;
+		final String typeAdapter;
+
+		Binding(String expression, TypeMirror type, String typeAdapter) {
+			this.expression = expression;
+			this.type = type;
+			this.typeAdapter = typeAdapter;
+		}
+
+		/**
+		 * Returns the statement which binds the parameter with the typed JDBC
+		 * setter of its declared type.
+		 *
+		 * @param i
+		 *            the JDBC parameter index
+		 * @return the statement
+		 */
+		String setter(int i) {
+			if (typeAdapter != null) {
+				return "statement.setObject(" + i + ", serialize(" + expression + ", " + typeAdapter + ".class));";
+			}
+			switch (type.getKind()) {
+			case BOOLEAN:
+				return "statement.setBoolean(" + i + ", " + expression + ");";
+			case BYTE:
+				return "statement.setByte(" + i + ", " + expression + ");";
+			case SHORT:
+				return "statement.setShort(" + i + ", " + expression + ");";
+			case INT:
+				return "statement.setInt(" + i + ", " + expression + ");";
+			case LONG:
+				return "statement.setLong(" + i + ", " + expression + ");";
+			case FLOAT:
+				return "statement.setFloat(" + i + ", " + expression + ");";
+			case DOUBLE:
+				return "statement.setDouble(" + i + ", " + expression + ");";
+			case CHAR:
+				return "statement.setObject(" + i + ", " + expression + ");";
+			default:
+				return "bind(statement, " + i + ", " + expression + ");";
+			}
+		}
+	}
+}
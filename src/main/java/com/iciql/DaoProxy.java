@@ -16,6 +16,7 @@
 package com.iciql;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
@@ -23,17 +24,26 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -56,6 +66,17 @@ final class DaoProxy<X extends Dao> implements InvocationHandler, Dao {
 
 	private final Class<X> daoInterface;
 
+	private static final Object[] NO_ARGS = new Object[0];
+
+	private static final Pattern FOR_UPDATE = Pattern.compile("\\bfor\\s+update\\b", Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * The indexed statements of the DAO interfaces, which are shared by all
+	 * proxies of an interface.
+	 */
+	private static final Map<Class<?>, Map<Method, IndexedSql>> INDEXED_SQL = Collections
+			.synchronizedMap(new WeakHashMap<Class<?>, Map<Method, IndexedSql>>());
+
 	private final char bindingDelimiter = ':';
 
 	private final Map<Method, IndexedSql> indexedSqlCache;
@@ -63,7 +84,14 @@ final class DaoProxy<X extends Dao> implements InvocationHandler, Dao {
 	DaoProxy(Db db, Class<X> daoInterface) {
 		this.db = db;
 		this.daoInterface = daoInterface;
-		this.indexedSqlCache = new ConcurrentHashMap<Method, IndexedSql>();
+		synchronized (INDEXED_SQL) {
+			Map<Method, IndexedSql> cache = INDEXED_SQL.get(daoInterface);
+			if (cache == null) {
+				cache = new ConcurrentHashMap<Method, IndexedSql>();
+				INDEXED_SQL.put(daoInterface, cache);
+			}
+			this.indexedSqlCache = cache;
+		}
 	}
 
 	/**
@@ -112,22 +140,13 @@ final class DaoProxy<X extends Dao> implements InvocationHandler, Dao {
 
 				return method.invoke(this, args);
 
-			} else if (method.isAnnotationPresent(SqlQuery.class)) {
-
-				String sql = method.getAnnotation(SqlQuery.class).value();
-				String statement = db.getDaoStatementProvider().getStatement(sql, db.getMode());
-				return executeQuery(method, args, statement);
-
-			} else if (method.isAnnotationPresent(SqlStatement.class)) {
+			} else if (Future.class == method.getReturnType()) {
 
-				String sql = method.getAnnotation(SqlStatement.class).value();
-				String statement = db.getDaoStatementProvider().getStatement(sql, db.getMode());
-				return executeStatement(method, args, statement);
+				return executeAsync(method, args);
 
 			} else {
 
-				throw new IciqlException("Can not invoke non-dao method {0}.{1}",
-						method.getDeclaringClass().getSimpleName(), method.getName());
+				return execute(method, args);
 
 			}
 
@@ -136,6 +155,148 @@ final class DaoProxy<X extends Dao> implements InvocationHandler, Dao {
 		}
 	}
 
+	/**
+	 * Execute a DAO method.
+	 *
+	 * @param method
+	 * @param args
+	 * @return the result
+	 */
+	private Object execute(Method method, Object[] args) {
+		if (method.isAnnotationPresent(SqlQuery.class)) {
+
+			String sql = method.getAnnotation(SqlQuery.class).value();
+			String statement = db.getDaoStatementProvider().getStatement(sql, db.getMode());
+			if (db.isReplicaRead() && isReplicaQuery(method, statement)) {
+				return executeRead(method, args);
+			}
+			return executeQuery(method, args, statement);
+
+		} else if (method.isAnnotationPresent(SqlStatement.class)) {
+
+			String sql = method.getAnnotation(SqlStatement.class).value();
+			String statement = db.getDaoStatementProvider().getStatement(sql, db.getMode());
+			return executeStatement(method, args, statement);
+
+		} else if (method.isAnnotationPresent(SqlBatch.class)) {
+
+			String sql = method.getAnnotation(SqlBatch.class).value();
+			String statement = db.getDaoStatementProvider().getStatement(sql, db.getMode());
+			return executeBatch(method, args, statement);
+
+		} else {
+
+			throw new IciqlException("Can not invoke non-dao method {0}.{1}",
+					method.getDeclaringClass().getSimpleName(), method.getName());
+
+		}
+	}
+
+	/**
+	 * Execute a DAO method which returns a Future on a connection which is
+	 * borrowed from the DataSource of the database.
+	 *
+	 * @param method
+	 * @param args
+	 * @return the future result
+	 */
+	private Future<Object> executeAsync(final Method method, final Object[] args) {
+		Class<?> resultType = getReturnType(method);
+		if (Iterator.class == resultType || Cursor.class == resultType) {
+			throw new IciqlException("You may not stream the result of the asynchronous method {0}.{1}!",
+					method.getDeclaringClass().getSimpleName(), method.getName());
+		}
+		return db.executeAsync(new Db.Task<Object>() {
+			@Override
+			public Object execute(Db borrowed) {
+				return new DaoProxy<X>(borrowed, daoInterface).execute(method, args);
+			}
+		});
+	}
+
+	/**
+	 * Returns true if a query may be read from a replica. Queries which write,
+	 * e.g. SELECT ... FOR UPDATE, and streamed results use the primary.
+	 *
+	 * @param method
+	 * @param sql
+	 * @return true if the query may be read from a replica
+	 */
+	private boolean isReplicaQuery(Method method, String sql) {
+		Class<?> resultType = getReturnType(method);
+		if (Iterator.class == resultType || Cursor.class == resultType) {
+			return false;
+		}
+		return ResultCache.getWrittenTable(sql) == null && !FOR_UPDATE.matcher(sql).find();
+	}
+
+	/**
+	 * Execute a DAO query on a read-only connection which is borrowed from a
+	 * replica of the database.
+	 *
+	 * @param method
+	 * @param args
+	 * @return the result
+	 */
+	private Object executeRead(final Method method, final Object[] args) {
+		return db.executeRead(new Db.Task<Object>() {
+			@Override
+			public Object execute(Db replica) {
+				return new DaoProxy<X>(replica, daoInterface).execute(method, args);
+			}
+		});
+	}
+
+	/**
+	 * Returns the return type of a method or the result type of a method which
+	 * returns a Future. Void, Boolean and Integer results are unboxed.
+	 *
+	 * @param method
+	 * @return the return type
+	 */
+	private Class<?> getReturnType(Method method) {
+		if (Future.class != method.getReturnType()) {
+			return method.getReturnType();
+		}
+		Type type = getGenericReturnType(method);
+		Class<?> resultType;
+		if (type instanceof ParameterizedType) {
+			resultType = (Class<?>) ((ParameterizedType) type).getRawType();
+		} else {
+			resultType = (Class<?>) type;
+		}
+		if (Void.class == resultType) {
+			return void.class;
+		} else if (Boolean.class == resultType) {
+			return boolean.class;
+		} else if (Integer.class == resultType) {
+			return int.class;
+		}
+		return resultType;
+	}
+
+	/**
+	 * Returns the generic return type of a method or the result type of a
+	 * method which returns a Future.
+	 *
+	 * @param method
+	 * @return the generic return type
+	 */
+	private Type getGenericReturnType(Method method) {
+		Type type = method.getGenericReturnType();
+		if (Future.class != method.getReturnType()) {
+			return type;
+		}
+		if (type instanceof ParameterizedType) {
+			Type argument = ((ParameterizedType) type).getActualTypeArguments()[0];
+			if (argument instanceof Class || argument instanceof ParameterizedType) {
+				return argument;
+			}
+		}
+		throw new IciqlException("You must specify the result type of {0}.{1}, e.g. Future<List<YourClass>>!",
+				method.getDeclaringClass().getSimpleName(), method.getName());
+	}
+
 	/**
 	 * Execute a query.
 	 *
@@ -149,31 +310,43 @@ final class DaoProxy<X extends Dao> implements InvocationHandler, Dao {
 		/*
 		 * Determine and validate the return type
 		 */
-		Class<?> returnType = method.getReturnType();
+		Class<?> returnType = getReturnType(method);
+		Class<?> rowType = returnType;
+		RowConsumer<Object> consumer = null;
 
 		if (void.class == returnType) {
-			throw new IciqlException("You must specify a return type for @{0} {1}.{2}!",
-					SqlQuery.class.getSimpleName(), method.getDeclaringClass().getSimpleName(), method.getName());
-		}
-
-		if (Collection.class.isAssignableFrom(returnType)) {
-			throw new IciqlException("You may not return a collection for an @{0} method, please change the return type of {1}.{2} to YourClass[]!",
-					SqlQuery.class.getSimpleName(), method.getDeclaringClass().getSimpleName(), method.getName());
-		}
-
-		boolean isArray = false;
-		if (returnType.isArray()) {
-			isArray = true;
-			returnType = returnType.getComponentType();
+			// rows are passed to a RowConsumer argument
+			Class<?>[] parameterTypes = method.getParameterTypes();
+			for (int i = 0; i < parameterTypes.length; i++) {
+				if (RowConsumer.class == parameterTypes[i]) {
+					rowType = getRowType(method, method.getGenericParameterTypes()[i]);
+					consumer = asConsumer(methodArgs[i]);
+					break;
+				}
+			}
+			if (consumer == null) {
+				throw new IciqlException("You must specify a return type or a {0} parameter for @{1} {2}.{3}!",
+						RowConsumer.class.getSimpleName(), SqlQuery.class.getSimpleName(),
+						method.getDeclaringClass().getSimpleName(), method.getName());
+			}
+		} else if (List.class == returnType || Collection.class == returnType
+				|| Iterator.class == returnType || Cursor.class == returnType) {
+			rowType = getRowType(method, getGenericReturnType(method));
+		} else if (Collection.class.isAssignableFrom(returnType)) {
+			throw new IciqlException("You may not return a {0} for an @{1} method, please change the return type of {2}.{3} to YourClass[] or List<YourClass>!",
+					returnType.getSimpleName(), SqlQuery.class.getSimpleName(),
+					method.getDeclaringClass().getSimpleName(), method.getName());
+		} else if (returnType.isArray()) {
+			rowType = returnType.getComponentType();
 		}
 
-		boolean isJavaType = returnType.isEnum()
-				|| returnType.isPrimitive()
-				|| java.lang.Boolean.class.isAssignableFrom(returnType)
-				|| java.lang.Number.class.isAssignableFrom(returnType)
-				|| java.lang.String.class.isAssignableFrom(returnType)
-				|| java.util.Date.class.isAssignableFrom(returnType)
-				|| byte[].class.isAssignableFrom(returnType);
+		boolean isJavaType = rowType.isEnum()
+				|| rowType.isPrimitive()
+				|| java.lang.Boolean.class.isAssignableFrom(rowType)
+				|| java.lang.Number.class.isAssignableFrom(rowType)
+				|| java.lang.String.class.isAssignableFrom(rowType)
+				|| java.util.Date.class.isAssignableFrom(rowType)
+				|| byte[].class.isAssignableFrom(rowType);
 
 		// determine the return type adapter, if any
 		DataTypeAdapter<?> adapter = null;
@@ -189,83 +362,127 @@ final class DaoProxy<X extends Dao> implements InvocationHandler, Dao {
 			}
 		}
 
+		IndexedSql indexedSql = getIndexedSql(method, sql);
+
 		/*
-		 * Prepare & execute sql
+		 * Lookup a cached result
 		 */
-		PreparedSql preparedSql = prepareSql(method, methodArgs, sql);
-
-		List<Object> objects;
-		if (!isJavaType && adapter == null) {
-
-			// query of an Iciql model
-			objects = db.executeQuery(returnType, preparedSql.sql, preparedSql.parameters);
-
-		} else {
-
-			// query of (array of) standard Java type or a DataTypeAdapter type
-			objects = Utils.newArrayList();
-			ResultSet rs = db.executeQuery(preparedSql.sql, preparedSql.parameters);
-			try {
-
-				while (rs.next()) {
-
-					Object o = rs.getObject(1);
-					Object value;
-
-					if (adapter == null) {
-						// use internal Iciql type conversion
-						value = Utils.convert(o, returnType);
-					} else {
-						// use the type adapter to convert the JDBC object to a domain type
-						value = adapter.deserialize(o);
-					}
-
-					objects.add(value);
-
-					if (!isArray) {
-						// we are not returning an array so we break
-						// the loop and return the first result
-						break;
-					}
-				}
-
-			} catch (SQLException e) {
-				throw new IciqlException(e);
-			} finally {
-				JdbcUtils.closeSilently(rs);
+		CacheResult cacheResult = method.getAnnotation(CacheResult.class);
+		Object [] parameters = null;
+		long generation = 0;
+		if (cacheResult != null) {
+			if (consumer != null || Iterator.class == returnType || Cursor.class == returnType) {
+				throw new IciqlException("You may not cache the streamed result of @{0} {1}.{2}!",
+						SqlQuery.class.getSimpleName(), method.getDeclaringClass().getSimpleName(), method.getName());
 			}
-
+			parameters = indexedSql.prepareParameters(db, methodArgs);
+			ResultCache cache = db.getResultCache();
+			Object cached = cache.get(method, cacheResult, parameters);
+			if (cached != ResultCache.MISS) {
+				return copyResult(cached);
+			}
+			generation = cache.generation(method, cacheResult);
 		}
 
 		/*
-		 * Return the results
+		 * Prepare & execute sql
 		 */
-		if (objects == null || objects.isEmpty()) {
-
-			// no results
-			if (isArray) {
-				// return an empty array
-				return Array.newInstance(returnType, 0);
+		PreparedStatement statement = db.acquireStatement(method, indexedSql.sql);
+		try {
+			if (parameters == null) {
+				indexedSql.bind(db, statement, methodArgs);
+			} else {
+				indexedSql.bind(statement, parameters);
 			}
+		} catch (RuntimeException e) {
+			JdbcUtils.closeSilently(statement);
+			throw e;
+		} catch (SQLException e) {
+			JdbcUtils.closeSilently(statement);
+			throw new IciqlException(e);
+		}
+
+		// query of an Iciql model or of a standard Java type or a DataTypeAdapter type
+		boolean model = !isJavaType && adapter == null;
+		ResultCursor<?> cursor = ResultCursor.open(db, method, indexedSql.sql, statement, rowType, model,
+				adapter);
 
-			// nothing to return!
+		/*
+		 * Return the results
+		 */
+		if (consumer != null) {
+			// stream the rows to the consumer
+			cursor.each(consumer);
 			return null;
+		} else if (Iterator.class == returnType || Cursor.class == returnType) {
+			// stream the rows, the caller closes the cursor
+			return cursor;
+		}
 
-		} else if (isArray) {
+		Object result;
+		if (List.class == returnType || Collection.class == returnType) {
+			result = cursor.toList();
+		} else if (returnType.isArray()) {
+			result = cursor.toArray(rowType);
+		} else {
+			// return first row
+			result = cursor.first();
+		}
 
-			// return an array of object results
-			Object array = Array.newInstance(returnType, objects.size());
-			for (int i = 0; i < objects.size(); i++) {
-				Array.set(array, i, objects.get(i));
+		if (cacheResult != null) {
+			if (result instanceof List) {
+				result = Collections.unmodifiableList((List<?>) result);
 			}
-			return array;
+			db.getResultCache().put(method, cacheResult, parameters, result, generation);
+			return copyResult(result);
+		}
+		return result;
+	}
 
+	/**
+	 * Returns a copy of a cached array, so that callers can not modify the
+	 * cached result. Cached lists are unmodifiable.
+	 *
+	 * @param result
+	 * @return the result
+	 */
+	private Object copyResult(Object result) {
+		if (result != null && result.getClass().isArray()) {
+			int length = Array.getLength(result);
+			Object copy = Array.newInstance(result.getClass().getComponentType(), length);
+			System.arraycopy(result, 0, copy, 0, length);
+			return copy;
 		}
+		return result;
+	}
 
-		// return first element
-		return objects.get(0);
+	/**
+	 * Returns the row type of a parameterized return or parameter type.
+	 *
+	 * @param method
+	 * @param type
+	 * @return the row type
+	 */
+	private Class<?> getRowType(Method method, Type type) {
+		if (type instanceof ParameterizedType) {
+			Type argument = ((ParameterizedType) type).getActualTypeArguments()[0];
+			if (argument instanceof Class) {
+				return (Class<?>) argument;
+			} else if (argument instanceof ParameterizedType) {
+				return (Class<?>) ((ParameterizedType) argument).getRawType();
+			}
+		}
+		throw new IciqlException("You must specify the row type of {0}.{1}, e.g. List<YourClass>!",
+				method.getDeclaringClass().getSimpleName(), method.getName());
 	}
 
+	@SuppressWarnings("unchecked")
+	private RowConsumer<Object> asConsumer(Object arg) {
+		if (arg == null) {
+			throw new IciqlException("The {0} of a query may not be null!", RowConsumer.class.getSimpleName());
+		}
+		return (RowConsumer<Object>) arg;
+	}
 
 	/**
 	 * Execute a statement.
@@ -280,7 +497,7 @@ final class DaoProxy<X extends Dao> implements InvocationHandler, Dao {
 		/*
 		 * Determine and validate the return type
 		 */
-		Class<?> returnType = method.getReturnType();
+		Class<?> returnType = getReturnType(method);
 
 		if (void.class != returnType && boolean.class != returnType && int.class != returnType) {
 
@@ -292,8 +509,21 @@ final class DaoProxy<X extends Dao> implements InvocationHandler, Dao {
 		/*
 		 * Prepare & execute sql
 		 */
-		PreparedSql preparedSql = prepareSql(method, methodArgs, sql);
-		int rows = db.executeUpdate(preparedSql.sql, preparedSql.parameters);
+		IndexedSql indexedSql = getIndexedSql(method, sql);
+		PreparedStatement statement = db.acquireStatement(method, indexedSql.sql);
+		boolean reusable = false;
+
+		int rows;
+		try {
+			indexedSql.bind(db, statement, methodArgs);
+			rows = statement.executeUpdate();
+			db.invalidateResults(indexedSql.sql);
+			reusable = true;
+		} catch (SQLException e) {
+			throw new IciqlException(e);
+		} finally {
+			releaseStatement(method, indexedSql.sql, statement, reusable);
+		}
 
 		/*
 		 * Return the results
@@ -317,34 +547,263 @@ final class DaoProxy<X extends Dao> implements InvocationHandler, Dao {
 	}
 
 	/**
-	 * Prepares an sql statement and execution parameters based on the supplied
-	 * method and it's arguments.
+	 * Execute a statement as a JDBC batch.
 	 *
 	 * @param method
 	 * @param methodArgs
 	 * @param sql
-	 * @return a prepared sql statement and arguments
+	 * @return the result
 	 */
-	private PreparedSql prepareSql(Method method, Object[] methodArgs, String sql) {
+	private Object executeBatch(Method method, Object[] methodArgs, String sql) {
+
+		/*
+		 * Determine and validate the return type and batch arguments
+		 */
+		Class<?> returnType = getReturnType(method);
+
+		if (void.class != returnType && int[].class != returnType) {
+
+			throw new IciqlException("Invalid return type ''{0}'' for @{1} {2}.{3}!",
+					returnType.getSimpleName(), SqlBatch.class.getSimpleName(),
+					method.getDeclaringClass().getSimpleName(), method.getName());
+		}
+
+		int batchSize = Math.max(1, method.getAnnotation(SqlBatch.class).batchSize());
+
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		Iterator<?>[] iterators = new Iterator<?>[parameterTypes.length];
+		boolean isBatch = false;
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (isBatchParameter(method, parameterTypes[i])) {
+				if (methodArgs[i] == null) {
+					throw new IciqlException("The batch argument {0} of {1}.{2} may not be null!", i,
+							method.getDeclaringClass().getSimpleName(), method.getName());
+				}
+				iterators[i] = iterator(methodArgs[i]);
+				isBatch = true;
+			}
+		}
+
+		if (!isBatch) {
+			throw new IciqlException("@{0} {1}.{2} must have an array or Iterable parameter!",
+					SqlBatch.class.getSimpleName(), method.getDeclaringClass().getSimpleName(), method.getName());
+		}
+
+		/*
+		 * Prepare & execute the batch
+		 */
+		IndexedSql indexedSql = getIndexedSql(method, sql);
+		PreparedStatement statement = db.acquireStatement(method, indexedSql.sql);
+		boolean reusable = false;
+
+		int[] counts = new int[0];
+		Savepoint savepoint = null;
+		try {
+			savepoint = db.prepareSavepoint();
+
+			// bind each row with the elements of the batch arguments
+			Object[] rowArgs = methodArgs.clone();
+			int rows = 0;
+			while (nextRow(method, iterators, rowArgs)) {
+				indexedSql.bind(db, statement, rowArgs);
+				statement.addBatch();
+				if (++rows % batchSize == 0) {
+					counts = concat(counts, statement.executeBatch());
+				}
+			}
+			if (rows % batchSize != 0) {
+				counts = concat(counts, statement.executeBatch());
+			}
+
+			db.commit(savepoint);
+			db.invalidateResults(indexedSql.sql);
+			reusable = true;
+		} catch (SQLException e) {
+			db.rollback(savepoint);
+			throw new IciqlException(e);
+		} catch (IciqlException e) {
+			db.rollback(savepoint);
+			throw e;
+		} finally {
+			releaseStatement(method, indexedSql.sql, statement, reusable);
+		}
+
+		/*
+		 * Return the results
+		 */
+		if (void.class == returnType) {
+
+			// return nothing
+			return null;
 
-		if (methodArgs == null || methodArgs.length == 0) {
-			// no method arguments
-			return new PreparedSql(sql, null);
 		}
 
+		// return the update counts
+		return counts;
+	}
+
+	/**
+	 * Returns true if the argument of a batch method is iterated.
+	 *
+	 * @param method
+	 * @param parameterType
+	 * @return true if the parameter is an array or Iterable batch argument
+	 */
+	private boolean isBatchParameter(Method method, Class<?> parameterType) {
+		if (!method.isAnnotationPresent(SqlBatch.class)) {
+			return false;
+		}
+		return (parameterType.isArray() && byte[].class != parameterType)
+				|| Iterable.class.isAssignableFrom(parameterType);
+	}
+
+	private Iterator<?> iterator(Object arg) {
+		if (arg instanceof Iterable) {
+			return ((Iterable<?>) arg).iterator();
+		}
+		int length = Array.getLength(arg);
+		List<Object> list = new ArrayList<Object>(length);
+		for (int i = 0; i < length; i++) {
+			list.add(Array.get(arg, i));
+		}
+		return list.iterator();
+	}
+
+	/**
+	 * Advances the batch arguments to their next element.
+	 *
+	 * @param method
+	 * @param iterators
+	 * @param rowArgs
+	 * @return true if there is another row
+	 */
+	private boolean nextRow(Method method, Iterator<?>[] iterators, Object[] rowArgs) {
+		Boolean hasNext = null;
+		for (int i = 0; i < iterators.length; i++) {
+			if (iterators[i] == null) {
+				continue;
+			}
+			boolean next = iterators[i].hasNext();
+			if (hasNext != null && hasNext != next) {
+				throw new IciqlException("The batch arguments of {0}.{1} have different lengths!",
+						method.getDeclaringClass().getSimpleName(), method.getName());
+			}
+			hasNext = next;
+			if (next) {
+				rowArgs[i] = iterators[i].next();
+			}
+		}
+		return hasNext;
+	}
+
+	private int[] concat(int[] counts, int[] batch) {
+		int[] result = new int[counts.length + batch.length];
+		System.arraycopy(counts, 0, result, 0, counts.length);
+		System.arraycopy(batch, 0, result, counts.length, batch.length);
+		return result;
+	}
+
+	/**
+	 * Returns a statement to the statement cache of the connection or closes
+	 * it, if the statement failed.
+	 *
+	 * @param method
+	 * @param sql
+	 * @param statement
+	 * @param reusable
+	 */
+	private void releaseStatement(Method method, String sql, PreparedStatement statement, boolean reusable) {
+		if (reusable) {
+			db.releaseStatement(method, sql, statement);
+		} else {
+			JdbcUtils.closeSilently(statement);
+		}
+	}
+
+	/**
+	 * Indexes the statements of all DAO methods and optionally prepares them
+	 * and returns them to the statement cache of the connection.
+	 *
+	 * @param prepare
+	 *            true to prepare the statements
+	 * @param compiled
+	 *            the statements of a generated DAO implementation, which are
+	 *            prepared by the implementation
+	 */
+	void warmUp(boolean prepare, Set<String> compiled) {
+		for (Method method : daoInterface.getMethods()) {
+			String sql;
+			if (method.isAnnotationPresent(SqlQuery.class)) {
+				sql = method.getAnnotation(SqlQuery.class).value();
+			} else if (method.isAnnotationPresent(SqlStatement.class)) {
+				sql = method.getAnnotation(SqlStatement.class).value();
+			} else if (method.isAnnotationPresent(SqlBatch.class)) {
+				sql = method.getAnnotation(SqlBatch.class).value();
+			} else {
+				continue;
+			}
+			String statement = db.getDaoStatementProvider().getStatement(sql, db.getMode());
+			IndexedSql indexedSql = getIndexedSql(method, statement);
+			if (prepare && !compiled.contains(indexedSql.sql)) {
+				db.releaseStatement(method, indexedSql.sql, db.acquireStatement(method, indexedSql.sql));
+			}
+		}
+	}
+
+	/**
+	 * Returns the statement of a DAO method with all parameters bound to null,
+	 * e.g. to explain the statement.
+	 *
+	 * @param method
+	 * @return an sql statement
+	 */
+	SQLStatement getUnboundStatement(Method method) {
+
+		String sql;
+		if (method.isAnnotationPresent(SqlQuery.class)) {
+			sql = method.getAnnotation(SqlQuery.class).value();
+		} else if (method.isAnnotationPresent(SqlStatement.class)) {
+			sql = method.getAnnotation(SqlStatement.class).value();
+		} else {
+			sql = method.getAnnotation(SqlBatch.class).value();
+		}
+		String statement = db.getDaoStatementProvider().getStatement(sql, db.getMode());
+		IndexedSql indexedSql = indexSql(method, statement);
+
+		SQLStatement stat = new SQLStatement(db);
+		stat.setSQL(indexedSql.sql);
+		for (int i = 0; i < indexedSql.indexedArgs.size(); i++) {
+			stat.addParameter(null);
+		}
+		return stat;
+	}
+
+	/**
+	 * Returns the cached indexed sql statement of a method.
+	 *
+	 * @param method
+	 * @param sql
+	 * @return an indexed sql statement and arguments
+	 */
+	private IndexedSql getIndexedSql(Method method, String sql) {
+
 		IndexedSql indexedSql = indexedSqlCache.get(method);
 
-		if (indexedSql == null) {
+		if (indexedSql == null || !indexedSql.source.equals(sql)) {
 
-			// index the sql and method args
-			indexedSql = indexSql(method, sql);
+			if (method.getParameterTypes().length == 0) {
+				// no method arguments
+				indexedSql = new IndexedSql(sql, sql, Collections.<IndexedArgument> emptyList());
+			} else {
+				// index the sql and method args
+				indexedSql = indexSql(method, sql);
+			}
 
 			// cache the indexed sql for re-use
 			indexedSqlCache.put(method, indexedSql);
 		}
 
-		final PreparedSql preparedSql = indexedSql.prepareSql(db, methodArgs);
-		return preparedSql;
+		return indexedSql;
 	}
 
 	/**
@@ -405,7 +864,7 @@ final class DaoProxy<X extends Dao> implements InvocationHandler, Dao {
 		final String statement = buffer.toString();
 
 		// create an IndexedSql container for the statement and indexes
-		return new IndexedSql(statement, Collections.unmodifiableList(indexedArgs));
+		return new IndexedSql(sql, statement, Collections.unmodifiableList(indexedArgs));
 
 	}
 
@@ -432,13 +891,14 @@ final class DaoProxy<X extends Dao> implements InvocationHandler, Dao {
 			BindBean bean = getAnnotation(BindBean.class, annotations);
 			if (bean != null) {
 				final String prefix = bean.value();
-				final Class<?> argumentClass = method.getParameterTypes()[i];
+				final Class<?> argumentClass = getArgumentClass(method, i);
 				Map<String, IndexedArgument> beanIndex = buildBeanIndex(i, prefix, argumentClass);
 				index.putAll(beanIndex);
 			}
 
 			Class<? extends DataTypeAdapter<?>> typeAdapter = Utils.getDataTypeAdapter(annotations);
-			final IndexedArgument indexedArgument = new IndexedArgument(i, typeAdapter);
+			final IndexedArgument indexedArgument = new IndexedArgument(i, typeAdapter,
+					getArgumentClass(method, i));
 
 			// :N - 1-indexed, like JDBC ResultSet
 			index.put("" + (i + 1), indexedArgument);
@@ -474,6 +934,33 @@ final class DaoProxy<X extends Dao> implements InvocationHandler, Dao {
 		return index;
 	}
 
+	/**
+	 * Returns the class of a method argument. The arguments of a batch are
+	 * bound by their element class.
+	 *
+	 * @param method
+	 * @param i
+	 * @return the argument class
+	 */
+	private Class<?> getArgumentClass(Method method, int i) {
+		Class<?> parameterType = method.getParameterTypes()[i];
+		if (!isBatchParameter(method, parameterType)) {
+			return parameterType;
+		} else if (parameterType.isArray()) {
+			return parameterType.getComponentType();
+		}
+		Type type = method.getGenericParameterTypes()[i];
+		if (type instanceof ParameterizedType) {
+			Type argument = ((ParameterizedType) type).getActualTypeArguments()[0];
+			if (argument instanceof Class) {
+				return (Class<?>) argument;
+			} else if (argument instanceof ParameterizedType) {
+				return (Class<?>) ((ParameterizedType) argument).getRawType();
+			}
+		}
+		return Object.class;
+	}
+
 	/**
 	 * Builds an index of parameter name->(position,method) from the method arguments
 	 * array. This index is calculated once per method.
@@ -616,26 +1103,6 @@ final class DaoProxy<X extends Dao> implements InvocationHandler, Dao {
 		db.close();
 	}
 
-	/**
-	 * Container class to hold the prepared JDBC SQL statement and execution
-	 * parameters.
-	 */
-	private class PreparedSql {
-		final String sql;
-		final Object [] parameters;
-
-		PreparedSql(String sql, Object [] parameters) {
-			this.sql = sql;
-			this.parameters = parameters;
-		}
-
-		@Override
-		public String toString() {
-			return sql;
-		}
-
-	}
-
 	/**
 	 * Container class to hold a parsed JDBC SQL statement and
 	 * IndexedParameters.
@@ -645,97 +1112,59 @@ final class DaoProxy<X extends Dao> implements InvocationHandler, Dao {
 	 * and matching to method arguments.
 	 * </p>
 	 */
-	private class IndexedSql {
+	private static class IndexedSql {
+		final String source;
 		final String sql;
 		final List<IndexedArgument> indexedArgs;
 
-		IndexedSql(String sql, List<IndexedArgument> indexedArgs) {
+		IndexedSql(String source, String sql, List<IndexedArgument> indexedArgs) {
+			this.source = source;
 			this.sql = sql;
 			this.indexedArgs = indexedArgs;
 		}
 
 		/**
-		 * Prepares the method arguments for statement execution.
+		 * Binds the method arguments to a statement with the precomputed
+		 * binding plan of the indexed arguments.
 		 *
 		 * @param db
+		 * @param statement
 		 * @param methodArgs
-		 * @return the prepared sql statement and parameters
+		 * @throws SQLException
 		 */
-		PreparedSql prepareSql(Db db, Object [] methodArgs) {
-
-			Object [] parameters = new Object[indexedArgs.size()];
-
+		void bind(Db db, PreparedStatement statement, Object [] methodArgs) throws SQLException {
 			for (int i = 0; i < indexedArgs.size(); i++) {
-
 				IndexedArgument indexedArg = indexedArgs.get(i);
-				Object methodArg = methodArgs[indexedArg.index];
-
-				Object value = methodArg;
-				Class<? extends DataTypeAdapter<?>> typeAdapter = indexedArg.typeAdapter;
-
-				if (indexedArg.method != null) {
-
-					// execute the bean method
-					try {
-
-						value = indexedArg.method.invoke(methodArg);
-						typeAdapter = Utils.getDataTypeAdapter(indexedArg.method.getAnnotations());
-
-					} catch (Exception e) {
-						throw new IciqlException(e);
-					}
-
-				} else if (indexedArg.field != null) {
-
-					// extract the field value
-					try {
-
-						value = indexedArg.field.get(methodArg);
-						typeAdapter = Utils.getDataTypeAdapter(indexedArg.field.getAnnotations());
-
-					} catch (Exception e) {
-						throw new IciqlException(e);
-					}
-
-				} else if (typeAdapter == null) {
-
-					// identify the type adapter for the argument class
-					typeAdapter = Utils.getDataTypeAdapter(methodArg.getClass().getAnnotations());
-				}
-
-				// prepare the parameter
-				parameters[i] = prepareParameter(db, value, typeAdapter);
-
+				indexedArg.parameterType.bind(statement, i + 1, indexedArg.prepareParameter(db, methodArgs));
 			}
-
-			return new PreparedSql(sql, parameters);
-
 		}
 
 		/**
-		 * Prepares a method argument to an sql parameter for transmission to a
-		 * database.
+		 * Prepares the parameters of the method arguments.
 		 *
 		 * @param db
-		 * @param arg
-		 * @param typeAdapter
-		 * @return a prepared parameter
+		 * @param methodArgs
+		 * @return the parameters
 		 */
-		private Object prepareParameter(Db db, Object arg, Class<? extends DataTypeAdapter<?>> typeAdapter) {
-
-			if (typeAdapter != null) {
-
-				// use a type adapter to serialize the method argument
-				Object o = db.getDialect().serialize(arg, typeAdapter);
-				return o;
-
-			} else {
-
-				// use the method argument
-				return arg;
-
+		Object [] prepareParameters(Db db, Object [] methodArgs) {
+			Object [] parameters = new Object[indexedArgs.size()];
+			for (int i = 0; i < parameters.length; i++) {
+				parameters[i] = indexedArgs.get(i).prepareParameter(db, methodArgs);
 			}
+			return parameters;
+		}
 
+		/**
+		 * Binds prepared parameters to a statement.
+		 *
+		 * @param statement
+		 * @param parameters
+		 * @throws SQLException
+		 */
+		void bind(PreparedStatement statement, Object [] parameters) throws SQLException {
+			for (int i = 0; i < parameters.length; i++) {
+				indexedArgs.get(i).parameterType.bind(statement, i + 1, parameters[i]);
+			}
 		}
 
 		@Override
@@ -750,33 +1179,103 @@ final class DaoProxy<X extends Dao> implements InvocationHandler, Dao {
 	 * <p>
 	 * An argument may be passed-through, might be bound to a bean property,
 	 * might be transformed with a type adapter, or a combination of these.
+	 * The type adapters of the argument and of bean properties are resolved
+	 * once, the type adapter of an argument class is cached for the last
+	 * class seen.
 	 * </p>
 	 */
-	private class IndexedArgument {
+	private static class IndexedArgument {
 		final int index;
 		final Class<? extends DataTypeAdapter<?>> typeAdapter;
 		final Method method;
 		final Field field;
+		final ParameterType parameterType;
+		volatile ClassAdapter classAdapter;
 
-		IndexedArgument(int index, Class<? extends DataTypeAdapter<?>> typeAdapter) {
+		IndexedArgument(int index, Class<? extends DataTypeAdapter<?>> typeAdapter, Class<?> argumentClass) {
 			this.index = index;
 			this.typeAdapter = typeAdapter;
 			this.method = null;
 			this.field = null;
+			this.parameterType = typeAdapter == null ? ParameterType.of(argumentClass) : ParameterType.OBJECT;
+			if (typeAdapter == null && !argumentClass.isPrimitive()) {
+				this.classAdapter = new ClassAdapter(argumentClass);
+			}
 		}
 
 		IndexedArgument(int methodArgIndex, Method method) {
 			this.index = methodArgIndex;
-			this.typeAdapter = null;
-			this.method = method;
+			this.typeAdapter = Utils.getDataTypeAdapter(method.getAnnotations());
+			this.method = accessible(method);
 			this.field = null;
+			this.parameterType = typeAdapter == null ? ParameterType.of(method.getReturnType()) : ParameterType.OBJECT;
 		}
 
 		IndexedArgument(int methodArgIndex, Field field) {
 			this.index = methodArgIndex;
-			this.typeAdapter = null;
+			this.typeAdapter = Utils.getDataTypeAdapter(field.getAnnotations());
 			this.method = null;
-			this.field = field;
+			this.field = accessible(field);
+			this.parameterType = typeAdapter == null ? ParameterType.of(field.getType()) : ParameterType.OBJECT;
+		}
+
+		/**
+		 * Prepares the argument or bean property for transmission to a
+		 * database.
+		 *
+		 * @param db
+		 * @param methodArgs
+		 * @return the prepared parameter
+		 */
+		Object prepareParameter(Db db, Object [] methodArgs) {
+
+			Object methodArg = methodArgs[index];
+
+			Object value = methodArg;
+			Class<? extends DataTypeAdapter<?>> adapter = typeAdapter;
+
+			if (method != null) {
+
+				// execute the bean method
+				try {
+					value = method.invoke(methodArg, NO_ARGS);
+				} catch (Exception e) {
+					throw new IciqlException(e);
+				}
+
+			} else if (field != null) {
+
+				// extract the field value
+				try {
+					value = field.get(methodArg);
+				} catch (Exception e) {
+					throw new IciqlException(e);
+				}
+
+			} else if (adapter == null && methodArg != null) {
+
+				// identify the type adapter for the argument class
+				adapter = getClassAdapter(methodArg.getClass());
+			}
+
+			if (adapter == null) {
+
+				// use the method argument
+				return value;
+
+			}
+
+			// use a type adapter to serialize the method argument
+			return db.getDialect().serialize(value, adapter);
+		}
+
+		private Class<? extends DataTypeAdapter<?>> getClassAdapter(Class<?> argumentClass) {
+			ClassAdapter cached = classAdapter;
+			if (cached == null || cached.argumentClass != argumentClass) {
+				cached = new ClassAdapter(argumentClass);
+				classAdapter = cached;
+			}
+			return cached.typeAdapter;
 		}
 
 		@Override
@@ -796,4 +1295,131 @@ final class DaoProxy<X extends Dao> implements InvocationHandler, Dao {
 
 	}
 
+	/**
+	 * The type adapter of an argument class.
+	 */
+	private static class ClassAdapter {
+		final Class<?> argumentClass;
+		final Class<? extends DataTypeAdapter<?>> typeAdapter;
+
+		ClassAdapter(Class<?> argumentClass) {
+			this.argumentClass = argumentClass;
+			this.typeAdapter = Utils.getDataTypeAdapter(argumentClass.getAnnotations());
+		}
+	}
+
+	/**
+	 * Suppresses the access checks of a bean accessor, which are otherwise
+	 * repeated by every reflective call.
+	 *
+	 * @param accessor
+	 * @return the accessor
+	 */
+	private static <A extends AccessibleObject> A accessible(A accessor) {
+		try {
+			accessor.setAccessible(true);
+		} catch (SecurityException e) {
+			// keep the access checks
+		}
+		return accessor;
+	}
+
+	/**
+	 * ParameterType binds a parameter with the JDBC setter of the declared
+	 * argument type. Values of another type, e.g. serialized by a type adapter,
+	 * are bound with setObject.
+	 */
+	private enum ParameterType {
+		OBJECT(Object.class, null, Types.OTHER),
+		STRING(String.class, null, Types.VARCHAR),
+		BOOLEAN(Boolean.class, boolean.class, Types.BOOLEAN),
+		BYTE(Byte.class, byte.class, Types.TINYINT),
+		SHORT(Short.class, short.class, Types.SMALLINT),
+		INT(Integer.class, int.class, Types.INTEGER),
+		LONG(Long.class, long.class, Types.BIGINT),
+		FLOAT(Float.class, float.class, Types.REAL),
+		DOUBLE(Double.class, double.class, Types.DOUBLE),
+		DECIMAL(java.math.BigDecimal.class, null, Types.DECIMAL),
+		BYTES(byte[].class, null, Types.VARBINARY),
+		DATE(java.sql.Date.class, null, Types.DATE),
+		TIME(java.sql.Time.class, null, Types.TIME),
+		TIMESTAMP(java.sql.Timestamp.class, null, Types.TIMESTAMP);
+
+		final Class<?> javaClass;
+		final Class<?> primitiveClass;
+		final int sqlType;
+
+		ParameterType(Class<?> javaClass, Class<?> primitiveClass, int sqlType) {
+			this.javaClass = javaClass;
+			this.primitiveClass = primitiveClass;
+			this.sqlType = sqlType;
+		}
+
+		static ParameterType of(Class<?> type) {
+			for (ParameterType parameterType : values()) {
+				if (parameterType.javaClass == type || parameterType.primitiveClass == type) {
+					return parameterType;
+				}
+			}
+			return OBJECT;
+		}
+
+		void bind(PreparedStatement statement, int i, Object value) throws SQLException {
+			if (value == null) {
+				if (this == OBJECT) {
+					statement.setObject(i, null);
+				} else {
+					statement.setNull(i, sqlType);
+				}
+				return;
+			}
+			if (value.getClass() != javaClass) {
+				statement.setObject(i, value);
+				return;
+			}
+			switch (this) {
+			case STRING:
+				statement.setString(i, (String) value);
+				break;
+			case BOOLEAN:
+				statement.setBoolean(i, (Boolean) value);
+				break;
+			case BYTE:
+				statement.setByte(i, (Byte) value);
+				break;
+			case SHORT:
+				statement.setShort(i, (Short) value);
+				break;
+			case INT:
+				statement.setInt(i, (Integer) value);
+				break;
+			case LONG:
+				statement.setLong(i, (Long) value);
+				break;
+			case FLOAT:
+				statement.setFloat(i, (Float) value);
+				break;
+			case DOUBLE:
+				statement.setDouble(i, (Double) value);
+				break;
+			case DECIMAL:
+				statement.setBigDecimal(i, (java.math.BigDecimal) value);
+				break;
+			case BYTES:
+				statement.setBytes(i, (byte[]) value);
+				break;
+			case DATE:
+				statement.setDate(i, (java.sql.Date) value);
+				break;
+			case TIME:
+				statement.setTime(i, (java.sql.Time) value);
+				break;
+			case TIMESTAMP:
+				statement.setTimestamp(i, (java.sql.Timestamp) value);
+				break;
+			default:
+				statement.setObject(i, value);
+			}
+		}
+	}
 }
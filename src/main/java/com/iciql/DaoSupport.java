@@ -0,0 +1,548 @@
+/*
+ * Copyright 2026 iciql contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iciql;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.iciql.Iciql.DataTypeAdapter;
+import com.iciql.util.JdbcUtils;
+
+/**
+ * DaoSupport is the base class of the DAO implementations generated by the
+ * DaoProcessor. The generated methods bind their parameters with typed JDBC
+ * setters and execute the cached prepared statements of the connection.
+ * <p>
+ * Methods whose statements are resolved by the DaoStatementProvider at
+ * runtime are delegated to a DaoProxy.
+ * </p>
+ */
+public abstract class DaoSupport implements Dao {
+
+	/**
+	 * The suffix of the generated DAO implementation classes.
+	 */
+	public static final String SUFFIX = "_Iciql";
+
+	private static final Map<Class<?>, Constructor<?>> CONSTRUCTORS = Collections
+			.synchronizedMap(new WeakHashMap<Class<?>, Constructor<?>>());
+
+	private final Db db;
+
+	private final Class<? extends Dao> daoInterface;
+
+	private final String[] statements;
+
+	private final boolean statementsResolved;
+
+	private volatile DaoProxy<?> proxy;
+
+	/**
+	 * Creates a DAO implementation.
+	 *
+	 * @param db
+	 * @param daoInterface
+	 * @param sources
+	 *            the annotation values of the compiled statements
+	 * @param statements
+	 *            the statements which have been bound at compile time
+	 */
+	protected DaoSupport(Db db, Class<? extends Dao> daoInterface, String[] sources, String[] statements) {
+		this.db = db;
+		this.daoInterface = daoInterface;
+		this.statements = statements;
+		boolean resolved = true;
+		for (String source : sources) {
+			// the statement provider may replace a statement, like in the DaoProxy
+			resolved &= source.equals(db.getDaoStatementProvider().getStatement(source, db.getMode()));
+		}
+		this.statementsResolved = resolved;
+	}
+
+	/**
+	 * Returns the name of the generated implementation of a DAO interface.
+	 *
+	 * @param binaryName
+	 *            the binary name of the DAO interface
+	 * @return the binary name of the implementation
+	 */
+	static String getImplementationName(String binaryName) {
+		int dot = binaryName.lastIndexOf('.');
+		return binaryName.substring(0, dot + 1) + binaryName.substring(dot + 1).replace('$', '_') + SUFFIX;
+	}
+
+	/**
+	 * Returns a new instance of the generated implementation of a DAO
+	 * interface.
+	 *
+	 * @param db
+	 * @param daoClass
+	 * @return the DAO or null, if no implementation has been generated
+	 */
+	static <X extends Dao> X newInstance(Db db, Class<X> daoClass) {
+		Constructor<?> constructor;
+		synchronized (CONSTRUCTORS) {
+			if (CONSTRUCTORS.containsKey(daoClass)) {
+				constructor = CONSTRUCTORS.get(daoClass);
+			} else {
+				constructor = null;
+				try {
+					Class<?> implementation = Class.forName(getImplementationName(daoClass.getName()), true,
+							daoClass.getClassLoader());
+					if (daoClass.isAssignableFrom(implementation)) {
+						constructor = implementation.getConstructor(Db.class);
+					}
+				} catch (ClassNotFoundException e) {
+					// no generated implementation
+				} catch (NoSuchMethodException e) {
+					throw new IciqlException(e);
+				}
+				CONSTRUCTORS.put(daoClass, constructor);
+			}
+		}
+		if (constructor == null) {
+			return null;
+		}
+		DaoSupport dao;
+		try {
+			dao = (DaoSupport) constructor.newInstance(db);
+		} catch (Exception e) {
+			throw new IciqlException(e);
+		}
+		if (!dao.statementsResolved) {
+			// the statement provider replaces a compiled statement
+			return null;
+		}
+		return daoClass.cast(dao);
+	}
+
+	/**
+	 * Returns the method of a DAO interface.
+	 *
+	 * @param daoClass
+	 * @param name
+	 * @param parameterTypes
+	 * @return the method
+	 */
+	protected static Method method(Class<?> daoClass, String name, Class<?>... parameterTypes) {
+		try {
+			return daoClass.getMethod(name, parameterTypes);
+		} catch (NoSuchMethodException e) {
+			throw new IciqlException(e);
+		}
+	}
+
+	/**
+	 * Returns the cached prepared statement of the connection or prepares a
+	 * new statement. The statement is returned to the cache by the execute
+	 * methods.
+	 *
+	 * @param sql
+	 * @return a prepared statement
+	 */
+	protected final PreparedStatement prepare(String sql) {
+		return db.acquireStatement(sql, sql);
+	}
+
+	/**
+	 * Closes a statement which could not be bound.
+	 *
+	 * @param statement
+	 * @param e
+	 * @return the exception to throw
+	 */
+	protected final RuntimeException failed(PreparedStatement statement, Exception e) {
+		JdbcUtils.closeSilently(statement);
+		if (e instanceof RuntimeException) {
+			return (RuntimeException) e;
+		}
+		return new IciqlException(e);
+	}
+
+	/**
+	 * Serializes a parameter with a type adapter.
+	 *
+	 * @param value
+	 * @param typeAdapter
+	 * @return the serialized parameter
+	 */
+	protected final Object serialize(Object value, Class<? extends DataTypeAdapter<?>> typeAdapter) {
+		return db.getDialect().serialize(value, typeAdapter);
+	}
+
+	/**
+	 * Executes a query and returns the first row.
+	 *
+	 * @param sql
+	 * @param statement
+	 * @param type
+	 *            the model class or the Java type of the first column
+	 * @param model
+	 *            true if the rows are model objects
+	 * @param typeAdapter
+	 *            the type adapter of the first column, may be null
+	 * @return the first row or null
+	 */
+	protected final <T> T queryFirst(String sql, PreparedStatement statement, Class<?> type, boolean model,
+			Class<? extends DataTypeAdapter<?>> typeAdapter) {
+		return this.<T> open(sql, statement, type, model, typeAdapter).first();
+	}
+
+	/**
+	 * Executes a query and returns the rows as an array.
+	 *
+	 * @param sql
+	 * @param statement
+	 * @param type
+	 *            the component type of the array
+	 * @param model
+	 *            true if the rows are model objects
+	 * @param typeAdapter
+	 *            the type adapter of the first column, may be null
+	 * @return the array of rows
+	 */
+	protected final Object queryArray(String sql, PreparedStatement statement, Class<?> type, boolean model,
+			Class<? extends DataTypeAdapter<?>> typeAdapter) {
+		return open(sql, statement, type, model, typeAdapter).toArray(type);
+	}
+
+	/**
+	 * Executes a query and returns the rows as a list.
+	 *
+	 * @param sql
+	 * @param statement
+	 * @param type
+	 *            the model class or the Java type of the first column
+	 * @param model
+	 *            true if the rows are model objects
+	 * @param typeAdapter
+	 *            the type adapter of the first column, may be null
+	 * @return the rows
+	 */
+	protected final <T> List<T> queryList(String sql, PreparedStatement statement, Class<?> type,
+			boolean model, Class<? extends DataTypeAdapter<?>> typeAdapter) {
+		return this.<T> open(sql, statement, type, model, typeAdapter).toList();
+	}
+
+	/**
+	 * Executes a query and returns a cursor which streams the rows.
+	 *
+	 * @param sql
+	 * @param statement
+	 * @param type
+	 *            the model class or the Java type of the first column
+	 * @param model
+	 *            true if the rows are model objects
+	 * @param typeAdapter
+	 *            the type adapter of the first column, may be null
+	 * @return a cursor
+	 */
+	protected final <T> Cursor<T> queryCursor(String sql, PreparedStatement statement, Class<?> type,
+			boolean model, Class<? extends DataTypeAdapter<?>> typeAdapter) {
+		return open(sql, statement, type, model, typeAdapter);
+	}
+
+	/**
+	 * Executes a query and passes the rows to a consumer.
+	 *
+	 * @param sql
+	 * @param statement
+	 * @param type
+	 *            the model class or the Java type of the first column
+	 * @param model
+	 *            true if the rows are model objects
+	 * @param typeAdapter
+	 *            the type adapter of the first column, may be null
+	 * @param consumer
+	 */
+	protected final <T> void queryRows(String sql, PreparedStatement statement, Class<?> type, boolean model,
+			Class<? extends DataTypeAdapter<?>> typeAdapter, RowConsumer<T> consumer) {
+		if (consumer == null) {
+			release(sql, statement, true);
+			throw new IciqlException("The {0} of a query may not be null!", RowConsumer.class.getSimpleName());
+		}
+		this.<T> open(sql, statement, type, model, typeAdapter).each(consumer);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> ResultCursor<T> open(String sql, PreparedStatement statement, Class<?> type, boolean model,
+			Class<? extends DataTypeAdapter<?>> typeAdapter) {
+		DataTypeAdapter<?> adapter = typeAdapter == null ? null : db.getDialect().getAdapter(typeAdapter);
+		return ResultCursor.open(db, sql, sql, statement, (Class<T>) type, model, adapter);
+	}
+
+	/**
+	 * Executes a statement.
+	 *
+	 * @param sql
+	 * @param statement
+	 * @return the number of affected rows
+	 */
+	protected final int executeUpdate(String sql, PreparedStatement statement) {
+		boolean reusable = false;
+		try {
+			int rows = statement.executeUpdate();
+			db.invalidateResults(sql);
+			reusable = true;
+			return rows;
+		} catch (SQLException e) {
+			throw new IciqlException(e);
+		} finally {
+			release(sql, statement, reusable);
+		}
+	}
+
+	private void release(String sql, PreparedStatement statement, boolean reusable) {
+		if (reusable) {
+			db.releaseStatement(sql, sql, statement);
+		} else {
+			JdbcUtils.closeSilently(statement);
+		}
+	}
+
+	/**
+	 * Prepares the compiled statements and the statements of the delegated
+	 * methods and returns them to the statement cache of the connection.
+	 *
+	 * @param prepare
+	 *            true to prepare the statements, false to only index the
+	 *            statements of the delegated methods
+	 */
+	void warmUp(boolean prepare) {
+		if (prepare) {
+			for (String sql : statements) {
+				db.releaseStatement(sql, sql, db.acquireStatement(sql, sql));
+			}
+		}
+		if (proxy == null) {
+			proxy = newProxy(daoInterface);
+		}
+		proxy.warmUp(prepare, new HashSet<String>(Arrays.asList(statements)));
+	}
+
+	/**
+	 * Invokes a DAO method with the dynamic proxy.
+	 *
+	 * @param method
+	 * @param args
+	 * @return the result
+	 */
+	protected final Object invoke(Method method, Object... args) {
+		if (proxy == null) {
+			proxy = newProxy(daoInterface);
+		}
+		try {
+			return proxy.invoke(this, method, args);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new IciqlException(t);
+		}
+	}
+
+	private <X extends Dao> DaoProxy<X> newProxy(Class<X> daoClass) {
+		return new DaoProxy<X>(db, daoClass);
+	}
+
+	/*
+	 *
+	 * Typed parameter binding, null values are bound as typed SQL NULL
+	 *
+	 */
+
+	protected static void bind(PreparedStatement statement, int i, String value) throws SQLException {
+		if (value == null) {
+			statement.setNull(i, Types.VARCHAR);
+		} else {
+			statement.setString(i, value);
+		}
+	}
+
+	protected static void bind(PreparedStatement statement, int i, Boolean value) throws SQLException {
+		if (value == null) {
+			statement.setNull(i, Types.BOOLEAN);
+		} else {
+			statement.setBoolean(i, value);
+		}
+	}
+
+	protected static void bind(PreparedStatement statement, int i, Byte value) throws SQLException {
+		if (value == null) {
+			statement.setNull(i, Types.TINYINT);
+		} else {
+			statement.setByte(i, value);
+		}
+	}
+
+	protected static void bind(PreparedStatement statement, int i, Short value) throws SQLException {
+		if (value == null) {
+			statement.setNull(i, Types.SMALLINT);
+		} else {
+			statement.setShort(i, value);
+		}
+	}
+
+	protected static void bind(PreparedStatement statement, int i, Integer value) throws SQLException {
+		if (value == null) {
+			statement.setNull(i, Types.INTEGER);
+		} else {
+			statement.setInt(i, value);
+		}
+	}
+
+	protected static void bind(PreparedStatement statement, int i, Long value) throws SQLException {
+		if (value == null) {
+			statement.setNull(i, Types.BIGINT);
+		} else {
+			statement.setLong(i, value);
+		}
+	}
+
+	protected static void bind(PreparedStatement statement, int i, Float value) throws SQLException {
+		if (value == null) {
+			statement.setNull(i, Types.REAL);
+		} else {
+			statement.setFloat(i, value);
+		}
+	}
+
+	protected static void bind(PreparedStatement statement, int i, Double value) throws SQLException {
+		if (value == null) {
+			statement.setNull(i, Types.DOUBLE);
+		} else {
+			statement.setDouble(i, value);
+		}
+	}
+
+	protected static void bind(PreparedStatement statement, int i, BigDecimal value) throws SQLException {
+		if (value == null) {
+			statement.setNull(i, Types.DECIMAL);
+		} else {
+			statement.setBigDecimal(i, value);
+		}
+	}
+
+	protected static void bind(PreparedStatement statement, int i, byte[] value) throws SQLException {
+		if (value == null) {
+			statement.setNull(i, Types.VARBINARY);
+		} else {
+			statement.setBytes(i, value);
+		}
+	}
+
+	protected static void bind(PreparedStatement statement, int i, java.sql.Date value) throws SQLException {
+		if (value == null) {
+			statement.setNull(i, Types.DATE);
+		} else {
+			statement.setDate(i, value);
+		}
+	}
+
+	protected static void bind(PreparedStatement statement, int i, java.sql.Time value) throws SQLException {
+		if (value == null) {
+			statement.setNull(i, Types.TIME);
+		} else {
+			statement.setTime(i, value);
+		}
+	}
+
+	protected static void bind(PreparedStatement statement, int i, java.sql.Timestamp value)
+			throws SQLException {
+		if (value == null) {
+			statement.setNull(i, Types.TIMESTAMP);
+		} else {
+			statement.setTimestamp(i, value);
+		}
+	}
+
+	protected static void bind(PreparedStatement statement, int i, Object value) throws SQLException {
+		statement.setObject(i, value);
+	}
+
+	/*
+	 *
+	 * Standard Dao method implementations delegate to the underlying Db
+	 *
+	 */
+
+	@Override
+	public final Db db() {
+		return db;
+	}
+
+	@Override
+	public final <T> boolean insert(T t) {
+		return db.insert(t);
+	}
+
+	@Override
+	public final <T> void insertAll(List<T> t) {
+		db.insertAll(t);
+	}
+
+	@Override
+	public final <T> long insertAndGetKey(T t) {
+		return db.insertAndGetKey(t);
+	}
+
+	@Override
+	public final <T> List<Long> insertAllAndGetKeys(List<T> t) {
+		return db.insertAllAndGetKeys(t);
+	}
+
+	@Override
+	public final <T> boolean update(T t) {
+		return db.update(t);
+	}
+
+	@Override
+	public final <T> void updateAll(List<T> t) {
+		db.updateAll(t);
+	}
+
+	@Override
+	public final <T> void merge(T t) {
+		db.merge(t);
+	}
+
+	@Override
+	public final <T> boolean delete(T t) {
+		return db.delete(t);
+	}
+
+	@Override
+	public final <T> void deleteAll(List<T> t) {
+		db.deleteAll(t);
+	}
+
+	@Override
+	public final void close() {
+		db.close();
+	}
+}
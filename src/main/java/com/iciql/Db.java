@@ -34,6 +34,15 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 import javax.sql.DataSource;
 
@@ -42,11 +51,11 @@ import com.iciql.Iciql.IQTable;
 import com.iciql.Iciql.IQVersion;
 import com.iciql.Iciql.IQView;
 import com.iciql.Iciql.Mode;
+import com.iciql.util.ConcurrentWeakIdentityHashMap;
 import com.iciql.util.IciqlLogger;
 import com.iciql.util.JdbcUtils;
 import com.iciql.util.StringUtils;
 import com.iciql.util.Utils;
-import com.iciql.util.WeakIdentityHashMap;
 
 /**
  * This class represents a connection to a database.
@@ -64,20 +73,45 @@ public class Db implements AutoCloseable {
 
 	private static final Map<String, Class<? extends SQLDialect>> DIALECTS;
 
+	/**
+	 * Statements which write rows and open the read-your-writes window.
+	 * Schema changes, e.g. the creation of a table on first use, do not.
+	 */
+	private static final Pattern DATA_WRITE = Pattern.compile(
+			"^\\s*(insert|update|delete|merge|replace|upsert)\\b", Pattern.CASE_INSENSITIVE);
+
 	private final Connection conn;
 	private final Mode mode;
+	private DataSource dataSource;
 	private final Map<Class<?>, TableDefinition<?>> classMap = Collections
 			.synchronizedMap(new HashMap<Class<?>, TableDefinition<?>>());
 	private final SQLDialect dialect;
+	private final String dialectKey;
 	private DbUpgrader dbUpgrader = new DefaultDbUpgrader();
 	private final Set<Class<?>> upgradeChecked = Collections.synchronizedSet(new HashSet<Class<?>>());
+	private final ConcurrentMap<Object, CachedStatement> statementCache = new ConcurrentHashMap<Object, CachedStatement>();
 
 	private boolean skipCreate;
 	private boolean autoSavePoint = true;
+	private boolean reuseAliases;
+	private int inArrayThreshold = 128;
+	private long slowStatementThreshold = -1;
+	private int multiRowUpdateSize;
 	private DaoStatementProvider daoStatementProvider;
+	private volatile ResultCache resultCache;
+	private volatile EntityCache entityCache;
+	private volatile QueryCache queryCache;
+	private ExecutorService asyncExecutor;
+	private RetryPolicy retryPolicy;
+	private ReplicaSet replicas;
+	private volatile long lastWrite;
+	private int transactionDepth;
+	private boolean rollbackOnly;
+	private boolean transactionAutoCommit;
+	private final List<Object[]> transactionWrites = Utils.newArrayList();
 
 	static {
-		TOKENS = Collections.synchronizedMap(new WeakIdentityHashMap<Object, Token>());
+		TOKENS = new ConcurrentWeakIdentityHashMap<Object, Token>();
 		DIALECTS = Collections.synchronizedMap(new HashMap<String, Class<? extends SQLDialect>>());
 		// can register by...
 		// 1. Connection class name
@@ -103,6 +137,7 @@ public class Db implements AutoCloseable {
 		}
 		dialect = getDialect(databaseName, conn.getClass().getName());
 		dialect.configureDialect(this);
+		dialectKey = dialect.toString();
 		daoStatementProvider = new NoExternalDaoStatements();
 	}
 
@@ -207,12 +242,41 @@ public class Db implements AutoCloseable {
 	 */
 	public static Db open(DataSource ds, Mode mode) {
 		try {
-			return new Db(ds.getConnection(), mode);
+			Db db = new Db(ds.getConnection(), mode);
+			db.dataSource = ds;
+			db.resultCache = ResultCache.shared(ds);
+			db.entityCache = EntityCache.shared(ds);
+			db.queryCache = QueryCache.shared(ds);
+			return db;
 		} catch (SQLException e) {
 			throw new IciqlException(e);
 		}
 	}
 
+	public static Db open(DataSource primary, ReplicaSet replicas) {
+		return open(primary, replicas, Mode.PROD);
+	}
+
+	/**
+	 * Create a new database instance which writes to a primary data source and
+	 * reads from replica data sources. Reads which are executed within a
+	 * transaction or within the read-your-writes window of the replica set
+	 * use the primary.
+	 *
+	 * @param primary
+	 *            the data source of the primary
+	 * @param replicas
+	 *            the replica data sources
+	 * @param mode
+	 *            the runtime mode
+	 * @return the database instance.
+	 */
+	public static Db open(DataSource primary, ReplicaSet replicas, Mode mode) {
+		Db db = open(primary, mode);
+		db.replicas = replicas;
+		return db;
+	}
+
 	public static Db open(Connection conn) {
 		return open(conn, Mode.PROD);
 	}
@@ -231,7 +295,11 @@ public class Db implements AutoCloseable {
 	}
 
 	/**
-	 * Returns a new DAO instance for the specified class.
+	 * Returns a new DAO instance for the specified class. If the DAO
+	 * implementation has been generated by the DaoProcessor, an instance of
+	 * the generated class is returned, otherwise a dynamic proxy. A database
+	 * which reads from replicas always returns a proxy, since the generated
+	 * queries are bound to the primary connection.
 	 *
 	 * @param daoClass
 	 * @return
@@ -239,9 +307,85 @@ public class Db implements AutoCloseable {
 	 */
 	@SuppressWarnings("resource")
 	public <X extends Dao> X open(Class<X> daoClass) {
+		X dao = replicas == null ? DaoSupport.newInstance(this, daoClass) : null;
+		if (dao != null) {
+			return dao;
+		}
 		return new DaoProxy<X>(this, daoClass).build();
 	}
 
+	/**
+	 * Returns a new unit of work session on this database.
+	 *
+	 * @return a new session
+	 */
+	public Session openSession() {
+		return new Session(this);
+	}
+
+	/**
+	 * Warms up models before the first request. Each model is defined, its
+	 * table is created or verified and a query which returns no rows is
+	 * executed, which renders the select statement and maps its columns.
+	 *
+	 * @param modelClasses
+	 *            the model classes
+	 */
+	public void warmUp(Class<?>... modelClasses) {
+		for (Class<?> modelClass : modelClasses) {
+			warmUpModel(modelClass);
+		}
+	}
+
+	private <T> void warmUpModel(Class<T> modelClass) {
+		define(modelClass).createIfRequired(this);
+		T alias = Utils.newObject(modelClass);
+		from(alias).where("1=0", Collections.emptyList()).select();
+	}
+
+	/**
+	 * Warms up DAOs before the first request. The statements of all DAO
+	 * methods are resolved by the statement provider and indexed, and are
+	 * prepared on the connection of this database. Invalid statements fail
+	 * the warm-up rather than the first request.
+	 *
+	 * @param daoClasses
+	 *            the DAO interfaces
+	 */
+	public void warmUpDao(Class<?>... daoClasses) {
+		warmUpDao(true, daoClasses);
+	}
+
+	/**
+	 * Warms up DAOs before the first request. The statements of all DAO
+	 * methods are resolved by the statement provider and indexed. Prepared
+	 * statements are kept in the statement cache of this database and, with
+	 * a pooling DataSource which caches statements, in the cache of the
+	 * pooled connection.
+	 *
+	 * @param prepare
+	 *            true to prepare the statements
+	 * @param daoClasses
+	 *            the DAO interfaces
+	 */
+	public void warmUpDao(boolean prepare, Class<?>... daoClasses) {
+		for (Class<?> daoClass : daoClasses) {
+			if (!daoClass.isInterface() || !Dao.class.isAssignableFrom(daoClass)) {
+				throw new IciqlException("{0} is not a DAO interface!", daoClass.getName());
+			}
+			warmUpDaoInterface(prepare, daoClass.asSubclass(Dao.class));
+		}
+	}
+
+	private <X extends Dao> void warmUpDaoInterface(boolean prepare, Class<X> daoClass) {
+		X dao = open(daoClass);
+		if (dao instanceof DaoSupport) {
+			((DaoSupport) dao).warmUp(prepare);
+		} else {
+			new DaoProxy<X>(this, daoClass).warmUp(prepare, Collections.<String> emptySet());
+		}
+	}
+
 	/**
 	 * Returns the DAO statement provider.
 	 *
@@ -357,6 +501,21 @@ public class Db implements AutoCloseable {
 		return define(clazz).createIfRequired(this).delete(this, t) == 1;
 	}
 
+	/**
+	 * Returns the model object of a primary key. The objects of models which
+	 * are annotated with IQCache are served from the entity cache.
+	 *
+	 * @param clazz
+	 *            the model class
+	 * @param key
+	 *            the value of the primary key field or the list of the values
+	 *            of a composite primary key
+	 * @return the model object or null
+	 */
+	public <T> T get(Class<T> clazz, Object key) {
+		return define(clazz).createIfRequired(this).get(this, key);
+	}
+
 	public <T extends Object> Query<T> from(T alias) {
 		Class<?> clazz = alias.getClass();
 		define(clazz).createIfRequired(this);
@@ -547,12 +706,26 @@ public class Db implements AutoCloseable {
 		return dialect;
 	}
 
+	/**
+	 * Returns the identity of the configured dialect, which is part of the
+	 * structural key of cached statement shapes.
+	 *
+	 * @return the dialect key
+	 */
+	String getDialectKey() {
+		return dialectKey;
+	}
+
 	public Connection getConnection() {
 		return conn;
 	}
 
 	@Override
 	public void close() {
+		for (CachedStatement cached : statementCache.values()) {
+			JdbcUtils.closeSilently(cached.statement);
+		}
+		statementCache.clear();
 		try {
 			conn.close();
 		} catch (Exception e) {
@@ -580,6 +753,7 @@ public class Db implements AutoCloseable {
 					throw new IciqlException("Failed to insert {0}.  Affected rowcount == 0.", t);
 				}
 			}
+			invalidateResults(null, def, null);
 			commit(savepoint);
 		} catch (SQLException e) {
 			rollback(savepoint);
@@ -621,8 +795,12 @@ public class Db implements AutoCloseable {
 			Class<?> clazz = list.get(0).getClass();
 			TableDefinition<?> def = define(clazz).createIfRequired(this);
 			savepoint = prepareSavepoint();
-			for (T t : list) {
-				def.update(this, t);
+			if (multiRowUpdateSize > 1) {
+				def.updateAll(this, list, multiRowUpdateSize);
+			} else {
+				for (T t : list) {
+					def.update(this, t);
+				}
 			}
 			commit(savepoint);
 		} catch (IciqlException e) {
@@ -650,8 +828,10 @@ public class Db implements AutoCloseable {
 		}
 	}
 
-	PreparedStatement prepare(String sql, boolean returnGeneratedKeys) {
-		IciqlException.checkUnmappedField(sql);
+	PreparedStatement prepare(String sql, boolean returnGeneratedKeys, boolean checkUnmappedField) {
+		if (checkUnmappedField) {
+			IciqlException.checkUnmappedField(sql);
+		}
 		try {
 			if (returnGeneratedKeys) {
 				return conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
@@ -662,12 +842,56 @@ public class Db implements AutoCloseable {
 		}
 	}
 
+	/**
+	 * Returns the cached prepared statement of a DAO method or prepares a new
+	 * statement. The statement is removed from the cache until it is released,
+	 * so concurrent and nested executions of a method never share a statement.
+	 *
+	 * @param key
+	 *            the DAO method or statement key
+	 * @param sql
+	 *            the SQL statement
+	 * @return a prepared statement
+	 */
+	PreparedStatement acquireStatement(Object key, String sql) {
+		CachedStatement cached = statementCache.remove(key);
+		if (cached != null) {
+			if (cached.sql.equals(sql)) {
+				return cached.statement;
+			}
+			// the statement provider returned a different statement
+			JdbcUtils.closeSilently(cached.statement);
+		}
+		return prepare(sql, false, false);
+	}
+
+	/**
+	 * Returns a prepared statement of a DAO method to the cache. The statement
+	 * is closed if the cache already holds a statement of the method.
+	 *
+	 * @param key
+	 *            the DAO method or statement key
+	 * @param sql
+	 *            the SQL statement
+	 * @param statement
+	 *            the prepared statement
+	 */
+	void releaseStatement(Object key, String sql, PreparedStatement statement) {
+		if (statementCache.putIfAbsent(key, new CachedStatement(sql, statement)) != null) {
+			JdbcUtils.closeSilently(statement);
+		}
+	}
+
 	Savepoint prepareSavepoint() {
 		// don't change auto-commit mode.
 		// don't create save point.
 		if (!autoSavePoint || !dialect.supportsSavePoints()) {
 			return null;
 		}
+		// the explicit transaction commits or rolls back
+		if (transactionDepth > 0) {
+			return null;
+		}
 		// create a savepoint
 		Savepoint savepoint = null;
 		try {
@@ -703,6 +927,201 @@ public class Db implements AutoCloseable {
 		}
 	}
 
+	/**
+	 * Begins a transaction. If a transaction is already active, the nested
+	 * transaction joins the active transaction. Batch operations within a
+	 * transaction do not create their own savepoints.
+	 */
+	public void begin() {
+		if (transactionDepth == 0) {
+			try {
+				transactionAutoCommit = conn.getAutoCommit();
+				if (transactionAutoCommit) {
+					conn.setAutoCommit(false);
+				}
+			} catch (SQLException e) {
+				throw new IciqlException(e, "Could not begin transaction");
+			}
+			rollbackOnly = false;
+		}
+		transactionDepth++;
+	}
+
+	/**
+	 * Commits the transaction. A nested transaction only ends the nested
+	 * transaction, the outermost transaction commits the connection. If a
+	 * nested transaction has been rolled back, the outermost transaction is
+	 * rolled back and an IciqlException is thrown.
+	 */
+	public void commit() {
+		if (transactionDepth == 0) {
+			throw new IciqlException("There is no active transaction!");
+		}
+		if (transactionDepth > 1) {
+			transactionDepth--;
+			return;
+		}
+		if (rollbackOnly) {
+			rollback();
+			throw new IciqlException("The transaction has been rolled back by a nested transaction!");
+		}
+		try {
+			conn.commit();
+		} catch (SQLException e) {
+			rollback();
+			throw new IciqlException(e, "Failed to commit transaction");
+		}
+		endTransaction();
+	}
+
+	/**
+	 * Rolls back the transaction. A nested transaction marks the outermost
+	 * transaction for rollback, the outermost transaction rolls back the
+	 * connection.
+	 */
+	public void rollback() {
+		if (transactionDepth == 0) {
+			throw new IciqlException("There is no active transaction!");
+		}
+		if (transactionDepth > 1) {
+			transactionDepth--;
+			rollbackOnly = true;
+			return;
+		}
+		try {
+			conn.rollback();
+		} catch (SQLException e) {
+			throw new IciqlException(e, "Failed to rollback transaction");
+		} finally {
+			endTransaction();
+		}
+	}
+
+	private void endTransaction() {
+		transactionDepth = 0;
+		rollbackOnly = false;
+		// results which were read while the transaction was active may be
+		// stale for the other connections now
+		List<Object[]> writes = new ArrayList<Object[]>(transactionWrites);
+		transactionWrites.clear();
+		for (Object[] write : writes) {
+			invalidateResults((String) write[0], (TableDefinition<?>) write[1], write[2]);
+		}
+		try {
+			if (transactionAutoCommit) {
+				conn.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			throw new IciqlException(e, "Could not end transaction");
+		}
+	}
+
+	/**
+	 * Returns true if a transaction has been begun and not ended.
+	 *
+	 * @return true if a transaction is active
+	 */
+	public boolean isInTransaction() {
+		return transactionDepth > 0;
+	}
+
+	/**
+	 * Executes work within a transaction. The transaction is committed if the
+	 * work completes and rolled back if it throws an exception. Nested calls
+	 * join the active transaction. If a retry policy is set, the outermost
+	 * transaction is retried if it fails because of a deadlock or a lock
+	 * timeout, so the work must not have effects outside of the database.
+	 *
+	 * @param work
+	 *            the work
+	 * @return the result of the work
+	 */
+	public <V> V inTransaction(TransactionWork<V> work) {
+		return inTransaction(false, work);
+	}
+
+	/**
+	 * Executes work within a transaction. The transaction is committed if the
+	 * work completes and rolled back if it throws an exception.
+	 *
+	 * @param savepoint
+	 *            if true and a transaction is already active, the work is
+	 *            executed within a savepoint which is rolled back if the work
+	 *            throws an exception, without rolling back the active
+	 *            transaction. If false, nested calls join the active
+	 *            transaction.
+	 * @param work
+	 *            the work
+	 * @return the result of the work
+	 * @throws IciqlException
+	 *             if a savepoint is required and the dialect does not
+	 *             support save points
+	 */
+	public <V> V inTransaction(boolean savepoint, TransactionWork<V> work) {
+		if (transactionDepth > 0 || retryPolicy == null) {
+			return executeTransaction(savepoint, work);
+		}
+		for (int attempt = 1;; attempt++) {
+			retryPolicy.attempted();
+			try {
+				V result = executeTransaction(false, work);
+				retryPolicy.succeeded(attempt);
+				return result;
+			} catch (IciqlException e) {
+				if (!retryPolicy.shouldRetry(this, e, attempt)) {
+					throw e;
+				}
+				long backoff = retryPolicy.backoff(attempt);
+				IciqlLogger.warn("retrying transaction in {0} ms after attempt {1} failed: {2}", backoff,
+						attempt, e.getMessage());
+				try {
+					Thread.sleep(backoff);
+				} catch (InterruptedException x) {
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+			}
+		}
+	}
+
+	private <V> V executeTransaction(boolean savepoint, TransactionWork<V> work) {
+		if (savepoint && transactionDepth > 0) {
+			if (!dialect.supportsSavePoints()) {
+				throw new IciqlException("{0} does not support save points", dialect.getClass()
+						.getSimpleName());
+			}
+			Savepoint sp;
+			try {
+				sp = conn.setSavepoint();
+			} catch (SQLException e) {
+				throw new IciqlException(e, "Could not create save point");
+			}
+			try {
+				return work.execute(this);
+			} catch (RuntimeException e) {
+				try {
+					conn.rollback(sp);
+				} catch (SQLException s) {
+					throw new IciqlException(s, "Failed to rollback transactions");
+				}
+				throw e;
+			}
+		}
+		begin();
+		V result;
+		try {
+			result = work.execute(this);
+		} catch (RuntimeException e) {
+			rollback();
+			throw e;
+		} catch (Error e) {
+			rollback();
+			throw e;
+		}
+		commit();
+		return result;
+	}
+
 	@SuppressWarnings("unchecked")
 	<T> TableDefinition<T> getTableDefinition(Class<T> clazz) {
 		return (TableDefinition<T>) classMap.get(clazz);
@@ -829,6 +1248,7 @@ public class Db implements AutoCloseable {
 				updateCount = ps.executeUpdate();
 				stat = ps;
 			}
+			invalidateResults(sql);
 			return updateCount;
 		} catch (SQLException e) {
 			throw new IciqlException(e);
@@ -865,6 +1285,445 @@ public class Db implements AutoCloseable {
 		return this.autoSavePoint;
 	}
 
+	/**
+	 * Allow to re-use the field values of an alias object in the next query of
+	 * the alias instead of assigning new values on every from() or join().
+	 * The values are re-used if the alias was not modified and the previous
+	 * query of the alias has been executed. Otherwise the alias is initialized
+	 * again.
+	 * Default value is false.
+	 * @param reuseAliases
+	 */
+	public void setReuseAliases(boolean reuseAliases) {
+		this.reuseAliases = reuseAliases;
+	}
+
+	public boolean getReuseAliases() {
+		return this.reuseAliases;
+	}
+
+	/**
+	 * Set the number of values above which an IN or NOT IN list is bound as
+	 * one array parameter, if the dialect supports array parameters. Smaller
+	 * lists are padded to the next power of two.
+	 * Default value is 128, 0 disables array binding.
+	 * @param inArrayThreshold
+	 */
+	public void setInArrayThreshold(int inArrayThreshold) {
+		this.inArrayThreshold = inArrayThreshold;
+	}
+
+	public int getInArrayThreshold() {
+		return this.inArrayThreshold;
+	}
+
+	/**
+	 * Set the execution time in milliseconds above which queries and updates
+	 * are explained by the dialect. The execution plan is logged to the iciql
+	 * listeners with the EXPLAIN statement type, at most once per minute for
+	 * each statement.
+	 * Default value is -1, which disables explaining slow statements.
+	 * @param slowStatementThreshold
+	 */
+	public void setSlowStatementThreshold(long slowStatementThreshold) {
+		this.slowStatementThreshold = slowStatementThreshold;
+	}
+
+	public long getSlowStatementThreshold() {
+		return this.slowStatementThreshold;
+	}
+
+	/**
+	 * Set the maximum number of rows which updateAll updates with one
+	 * set-based UPDATE statement. The rows are matched by their primary keys
+	 * and each statement is also limited by the number of parameters the
+	 * dialect supports.
+	 * Default value is 0, which updates one row per statement.
+	 * @param multiRowUpdateSize
+	 */
+	public void setMultiRowUpdateSize(int multiRowUpdateSize) {
+		this.multiRowUpdateSize = multiRowUpdateSize;
+	}
+
+	public int getMultiRowUpdateSize() {
+		return this.multiRowUpdateSize;
+	}
+
+	/**
+	 * Returns the policy which retries transactions of inTransaction.
+	 *
+	 * @return the retry policy or null if transactions are not retried
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * Set the policy which retries the transactions of inTransaction which
+	 * fail because of a deadlock or a lock timeout. Db instances may share a
+	 * policy, which shares its retry budget and its metrics.
+	 * @param retryPolicy
+	 *            the retry policy or null to not retry transactions
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	/**
+	 * Returns the read replicas of this database.
+	 *
+	 * @return the replica set or null if all reads use the primary
+	 */
+	public ReplicaSet getReplicaSet() {
+		return replicas;
+	}
+
+	/**
+	 * Returns the cache of the DAO methods annotated with @CacheResult. Db
+	 * instances which are opened from the same DataSource share a cache.
+	 *
+	 * @return the result cache
+	 */
+	public ResultCache getResultCache() {
+		if (resultCache == null) {
+			synchronized (this) {
+				if (resultCache == null) {
+					resultCache = new ResultCache();
+				}
+			}
+		}
+		return resultCache;
+	}
+
+	/**
+	 * Set the cache of the DAO methods annotated with @CacheResult, e.g. to
+	 * share one cache between the Db instances of a connection pool. Writes
+	 * through any Db which shares the cache invalidate the cached results.
+	 * @param resultCache
+	 */
+	public void setResultCache(ResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	/**
+	 * Returns the cache of the models annotated with @IQCache. Db instances
+	 * which are opened from the same DataSource share a cache.
+	 *
+	 * @return the entity cache
+	 */
+	public EntityCache getEntityCache() {
+		if (entityCache == null) {
+			synchronized (this) {
+				if (entityCache == null) {
+					entityCache = new EntityCache();
+				}
+			}
+		}
+		return entityCache;
+	}
+
+	/**
+	 * Set the cache of the models annotated with @IQCache, e.g. to share one
+	 * cache between the Db instances of a connection pool. Writes through any
+	 * Db which shares the cache invalidate the cached objects.
+	 * @param entityCache
+	 */
+	public void setEntityCache(EntityCache entityCache) {
+		this.entityCache = entityCache;
+	}
+
+	/**
+	 * Returns the cache of the queries which are marked with Query.cached. Db
+	 * instances which are opened from the same DataSource share a cache.
+	 *
+	 * @return the query cache
+	 */
+	public QueryCache getQueryCache() {
+		if (queryCache == null) {
+			synchronized (this) {
+				if (queryCache == null) {
+					queryCache = new QueryCache();
+				}
+			}
+		}
+		return queryCache;
+	}
+
+	/**
+	 * Set the cache of the queries which are marked with Query.cached, e.g. to
+	 * share one cache between the Db instances of a connection pool. Writes
+	 * through any Db which shares the cache make the cached results of the
+	 * written tables stale.
+	 * @param queryCache
+	 */
+	public void setQueryCache(QueryCache queryCache) {
+		this.queryCache = queryCache;
+	}
+
+	/**
+	 * Invalidates the cached results which depend on the table written by a
+	 * statement.
+	 *
+	 * @param sql
+	 *            the executed statement
+	 */
+	void invalidateResults(String sql) {
+		invalidateResults(sql, null, null);
+	}
+
+	/**
+	 * Invalidates the cached results which depend on the table written by a
+	 * statement and the cached objects of the table. A statement which writes
+	 * one model object only invalidates the cached object of its primary key.
+	 * <p>
+	 * Writes of model objects and queries bump the write versions of their
+	 * table. The written table of other statements is parsed from the SQL and
+	 * statements which may write any table, e.g. CALL or WITH statements,
+	 * invalidate all cached results.
+	 *
+	 * @param sql
+	 *            the executed statement, may be null if the table is known
+	 * @param table
+	 *            the written table or null, if it is parsed from the SQL
+	 * @param entity
+	 *            the written model object or null
+	 */
+	void invalidateResults(String sql, TableDefinition<?> table, Object entity) {
+		if (replicas != null && (table != null || DATA_WRITE.matcher(sql).find())) {
+			lastWrite = System.currentTimeMillis();
+		}
+		if (transactionDepth > 0) {
+			// invalidated again when the transaction ends
+			transactionWrites.add(new Object[] { sql, table, entity });
+		}
+		if (table != null) {
+			// a write of one model object keeps the other cached objects
+			if (entity != null && entityCache != null) {
+				entityCache.invalidate(table, entity);
+			}
+			invalidateTable(table.tableName, entity == null);
+			if (!StringUtils.isNullOrEmpty(table.viewTableName)) {
+				// a write to a view writes its source table
+				invalidateTable(table.viewTableName, true);
+			}
+			return;
+		}
+		if (resultCache != null) {
+			resultCache.invalidateStatement(sql);
+		}
+		if (queryCache != null) {
+			queryCache.invalidateStatement(sql);
+		}
+		if (entityCache != null) {
+			if (entity == null) {
+				entityCache.invalidateStatement(sql);
+			} else {
+				entityCache.invalidate(define(entity.getClass()), entity);
+			}
+		}
+	}
+
+	private void invalidateTable(String table, boolean entities) {
+		if (resultCache != null) {
+			resultCache.invalidateTable(table);
+		}
+		if (queryCache != null) {
+			queryCache.invalidateTable(table);
+		}
+		if (entities && entityCache != null) {
+			entityCache.invalidateTable(table);
+		}
+	}
+
+	/**
+	 * Returns the executor of the asynchronous queries and DAO methods. Unless
+	 * an executor is set, a shared executor is used which runs the calls on
+	 * virtual threads, if the JVM supports them, or on a bounded pool of two
+	 * daemon threads per processor.
+	 *
+	 * @return the executor
+	 */
+	public ExecutorService getAsyncExecutor() {
+		if (asyncExecutor == null) {
+			return DefaultAsyncExecutor.INSTANCE;
+		}
+		return asyncExecutor;
+	}
+
+	/**
+	 * Set the executor of the asynchronous queries and DAO methods. Every
+	 * asynchronous call borrows its own connection from the DataSource, so the
+	 * number of threads should not exceed the size of the connection pool.
+	 * @param asyncExecutor
+	 */
+	public void setAsyncExecutor(ExecutorService asyncExecutor) {
+		this.asyncExecutor = asyncExecutor;
+	}
+
+	/**
+	 * Executes a task on the async executor with a connection which is
+	 * borrowed from the DataSource of this database for the duration of the
+	 * task, so that independent calls can overlap.
+	 *
+	 * @param task
+	 *            the task
+	 * @return the future result of the task
+	 */
+	<V> Future<V> executeAsync(final Task<V> task) {
+		if (dataSource == null) {
+			throw new IciqlException("Asynchronous calls require a Db which is opened from a DataSource!");
+		}
+		return getAsyncExecutor().submit(new Callable<V>() {
+			@Override
+			public V call() {
+				Db db = borrow(dataSource);
+				try {
+					return task.execute(db);
+				} finally {
+					db.close();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Returns true if the reads of this database are executed on a replica,
+	 * which is the case unless a transaction is active or this database has
+	 * written within the read-your-writes window.
+	 *
+	 * @return true if reads are executed on a replica
+	 */
+	boolean isReplicaRead() {
+		if (replicas == null || transactionDepth > 0) {
+			return false;
+		}
+		if (System.currentTimeMillis() - lastWrite < replicas.getReadYourWritesWindow()) {
+			return false;
+		}
+		try {
+			// uncommitted work is only visible on the primary
+			return conn.getAutoCommit();
+		} catch (SQLException e) {
+			throw new IciqlException(e);
+		}
+	}
+
+	/**
+	 * Executes a read on a read-only connection which is borrowed from a
+	 * replica. If the replica is unavailable, the read is executed on this
+	 * database.
+	 *
+	 * @param task
+	 *            the read
+	 * @return the result of the read
+	 */
+	<V> V executeRead(Task<V> task) {
+		int replica = replicas.acquire();
+		try {
+			Db db;
+			try {
+				db = borrow(replicas.getDataSource(replica));
+			} catch (IciqlException e) {
+				IciqlLogger.warn("Replica {0} is unavailable, reading from the primary: {1}", replica,
+						e.getMessage());
+				replicas.fallback();
+				return task.execute(this);
+			}
+			try {
+				db.replicas = null;
+				db.conn.setReadOnly(true);
+				return task.execute(db);
+			} catch (SQLException e) {
+				throw new IciqlException(e);
+			} finally {
+				db.close();
+			}
+		} finally {
+			replicas.release(replica);
+		}
+	}
+
+	/**
+	 * Opens a database on another connection of a DataSource with the
+	 * settings and the table definitions of this database.
+	 *
+	 * @param ds
+	 *            the DataSource of this database or of a replica
+	 * @return the database
+	 */
+	private Db borrow(DataSource ds) {
+		Db db = open(ds, mode);
+		synchronized (classMap) {
+			db.classMap.putAll(classMap);
+		}
+		synchronized (upgradeChecked) {
+			db.upgradeChecked.addAll(upgradeChecked);
+		}
+		db.dbUpgrader = dbUpgrader;
+		db.skipCreate = skipCreate;
+		db.autoSavePoint = autoSavePoint;
+		db.reuseAliases = reuseAliases;
+		db.inArrayThreshold = inArrayThreshold;
+		db.slowStatementThreshold = slowStatementThreshold;
+		db.multiRowUpdateSize = multiRowUpdateSize;
+		db.daoStatementProvider = daoStatementProvider;
+		db.resultCache = resultCache;
+		db.entityCache = entityCache;
+		db.queryCache = queryCache;
+		db.asyncExecutor = asyncExecutor;
+		db.retryPolicy = retryPolicy;
+		db.replicas = replicas;
+		db.lastWrite = lastWrite;
+		return db;
+	}
+
+	/**
+	 * A call which is executed on a borrowed database.
+	 */
+	interface Task<V> {
+		V execute(Db db);
+	}
+
+	/**
+	 * The shared executor of asynchronous calls.
+	 */
+	private static class DefaultAsyncExecutor {
+
+		static final ExecutorService INSTANCE = create();
+
+		private static ExecutorService create() {
+			try {
+				// Java 21+
+				return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			} catch (Exception e) {
+				// use a bounded pool of platform threads
+			}
+			final AtomicInteger count = new AtomicInteger();
+			return Executors.newFixedThreadPool(2 * Runtime.getRuntime().availableProcessors(),
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "iciql-async-" + count.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+	}
+
+	/**
+	 * A prepared statement of a DAO method.
+	 */
+	private static class CachedStatement {
+		final String sql;
+		final PreparedStatement statement;
+
+		CachedStatement(String sql, PreparedStatement statement) {
+			this.sql = sql;
+			this.statement = statement;
+		}
+	}
+
 	/**
 	 * Default DAO statement provider.
 	 */
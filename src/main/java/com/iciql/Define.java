@@ -28,27 +28,22 @@ import com.iciql.Iciql.IndexType;
 
 public class Define {
 
-	private static TableDefinition<?> currentTableDefinition;
-	private static Iciql currentTable;
+	private static final ThreadLocal<TableDefinition<?>> CURRENT = new ThreadLocal<TableDefinition<?>>();
 
 	public static void skipCreate() {
-		checkInDefine();
-		currentTableDefinition.defineSkipCreate();
+		current().defineSkipCreate();
 	}
 
 	public static void index(IndexType type, Object... columns) {
-		checkInDefine();
-		currentTableDefinition.defineIndex(null, type, columns);
+		current().defineIndex(null, type, columns);
 	}
 
 	public static void index(String name, IndexType type, Object... columns) {
-		checkInDefine();
-		currentTableDefinition.defineIndex(name, type, columns);
+		current().defineIndex(name, type, columns);
 	}
 
 	public static void constraintUnique(String name, Object... columns) {
-		checkInDefine();
-		currentTableDefinition.defineConstraintUnique(name, columns);
+		current().defineConstraintUnique(name, columns);
 	}
 
 	/*
@@ -57,95 +52,93 @@ public class Define {
 //	public static void constraintForeignKey(String name, String refTableName,
 //			ConstraintDeleteType deleteType, ConstraintUpdateType updateType,
 //			ConstraintDeferrabilityType deferrabilityType, Object... columns, Object... refColumns) {
-//		checkInDefine();
-//		currentTableDefinition.defineForeignKey(name, columns, refTableName, Columns, deleteType, updateType, deferrabilityType);
+//		current().defineForeignKey(name, columns, refTableName, Columns, deleteType, updateType, deferrabilityType);
 //	}
 
 	public static void primaryKey(Object... columns) {
-		checkInDefine();
-		currentTableDefinition.definePrimaryKey(columns);
+		current().definePrimaryKey(columns);
 	}
 
 	public static void schemaName(String schemaName) {
-		checkInDefine();
-		currentTableDefinition.defineSchemaName(schemaName);
+		current().defineSchemaName(schemaName);
 	}
 
 	public static void tableName(String tableName) {
-		checkInDefine();
-		currentTableDefinition.defineTableName(tableName);
+		current().defineTableName(tableName);
 	}
 
 	public static void viewTableName(String viewTableName) {
-		checkInDefine();
-		currentTableDefinition.defineViewTableName(viewTableName);
+		current().defineViewTableName(viewTableName);
 	}
 
 	public static void memoryTable() {
-		checkInDefine();
-		currentTableDefinition.defineMemoryTable();
+		current().defineMemoryTable();
 	}
 
 	public static void columnName(Object column, String columnName) {
-		checkInDefine();
-		currentTableDefinition.defineColumnName(column, columnName);
+		current().defineColumnName(column, columnName);
 	}
 
 	public static void autoIncrement(Object column) {
-		checkInDefine();
-		currentTableDefinition.defineAutoIncrement(column);
+		current().defineAutoIncrement(column);
 	}
 
 	public static void length(Object column, int length) {
-		checkInDefine();
-		currentTableDefinition.defineLength(column, length);
+		current().defineLength(column, length);
 	}
 
 	public static void scale(Object column, int scale) {
-		checkInDefine();
-		currentTableDefinition.defineScale(column, scale);
+		current().defineScale(column, scale);
 	}
 
 	public static void trim(Object column) {
-		checkInDefine();
-		currentTableDefinition.defineTrim(column);
+		current().defineTrim(column);
 	}
 
 	public static void nullable(Object column, boolean isNullable) {
-		checkInDefine();
-		currentTableDefinition.defineNullable(column, isNullable);
+		current().defineNullable(column, isNullable);
 	}
 
 	public static void defaultValue(Object column, String defaultValue) {
-		checkInDefine();
-		currentTableDefinition.defineDefaultValue(column, defaultValue);
+		current().defineDefaultValue(column, defaultValue);
 	}
 
 	public static void constraint(Object column, String constraint) {
-		checkInDefine();
-		currentTableDefinition.defineConstraint(column, constraint);
+		current().defineConstraint(column, constraint);
 	}
 
 	public static void typeAdapter(Object column, Class<? extends DataTypeAdapter<?>> typeAdapter) {
-		checkInDefine();
-		currentTableDefinition.defineTypeAdapter(column, typeAdapter);
+		current().defineTypeAdapter(column, typeAdapter);
 	}
 
-	static synchronized <T> void define(TableDefinition<T> tableDefinition, Iciql table) {
-		currentTableDefinition = tableDefinition;
-		currentTable = table;
-		tableDefinition.mapObject(table);
-		table.defineIQ();
-		currentTable = null;
-		currentTableDefinition = null;
+	/**
+	 * Maps the table and calls its defineIQ() method. The table definition is
+	 * confined to the calling thread, so different models can be defined in
+	 * parallel.
+	 */
+	static <T> void define(TableDefinition<T> tableDefinition, Iciql table) {
+		TableDefinition<?> previous = CURRENT.get();
+		CURRENT.set(tableDefinition);
+		try {
+			tableDefinition.mapObject(table);
+			table.defineIQ();
+		} finally {
+			if (previous == null) {
+				CURRENT.remove();
+			} else {
+				CURRENT.set(previous);
+			}
+		}
 	}
 
-	private static void checkInDefine() {
-		if (currentTable == null) {
+	private static TableDefinition<?> current() {
+		TableDefinition<?> tableDefinition = CURRENT.get();
+		if (tableDefinition == null) {
 			throw new IciqlException("This method may only be called "
 					+ "from within the define() method, and the define() method "
 					+ "is called by the framework.");
 		}
+		return tableDefinition;
 	}
 
 }
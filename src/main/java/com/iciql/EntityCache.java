@@ -0,0 +1,391 @@
+/*
+ * Copyright 2026 iciql contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.iciql;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.iciql.Iciql.IQCache;
+import com.iciql.util.StringUtils;
+import com.iciql.util.Utils;
+
+/**
+ * EntityCache holds the model objects of the models annotated with &#064;IQCache,
+ * keyed by their model class and primary key. Objects which are looked up by
+ * their primary key with Db.get() or with a query of the primary key which
+ * selects the first row are served from the cache. Each model keeps at most
+ * maxEntries objects, evicting the least recently used object.
+ * <p>
+ * Model updates, deletes and merges invalidate the cached object of their
+ * primary key, other statements which write a table, e.g. query updates and
+ * deletes, invalidate all cached objects of the table. Db instances which are
+ * opened from the same DataSource share a cache, other Db instances may share
+ * a cache with Db.setEntityCache.
+ * </p>
+ * <p>
+ * The cache holds copies of the mapped fields of the model objects, callers
+ * may modify the objects which are returned by the cache.
+ * </p>
+ */
+public class EntityCache {
+
+	/**
+	 * Returned by get if there is no cached object.
+	 */
+	static final Object MISS = new Object();
+
+	private static final Map<Object, EntityCache> SHARED = Collections
+			.synchronizedMap(new WeakHashMap<Object, EntityCache>());
+
+	private final ConcurrentMap<Class<?>, Region> regions = new ConcurrentHashMap<Class<?>, Region>();
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final AtomicLong invalidations = new AtomicLong();
+
+	/**
+	 * Returns the cache which is shared by all Db instances of a factory, e.g.
+	 * a DataSource.
+	 *
+	 * @param factory
+	 * @return the shared cache
+	 */
+	static EntityCache shared(Object factory) {
+		synchronized (SHARED) {
+			EntityCache cache = SHARED.get(factory);
+			if (cache == null) {
+				cache = new EntityCache();
+				SHARED.put(factory, cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Returns true if the objects of a model are cached.
+	 *
+	 * @param def
+	 * @return true if the model is annotated with &#064;IQCache
+	 */
+	static boolean isCached(TableDefinition<?> def) {
+		return def.getModelClass().isAnnotationPresent(IQCache.class);
+	}
+
+	/**
+	 * Returns a copy of the cached object of a primary key.
+	 *
+	 * @param def
+	 *            the model definition
+	 * @param key
+	 *            the primary key
+	 * @return a copy of the cached object or MISS
+	 */
+	<T> Object get(TableDefinition<T> def, Object key) {
+		Object value = region(def).get(normalizeKey(key));
+		if (value == null) {
+			misses.incrementAndGet();
+			return MISS;
+		}
+		hits.incrementAndGet();
+		return def.copy(value);
+	}
+
+	/**
+	 * Returns the current generation of the cached objects of a model. An
+	 * object is only cached if its model has not been invalidated while the
+	 * object was read from the database.
+	 *
+	 * @param def
+	 * @return the generation
+	 */
+	long generation(TableDefinition<?> def) {
+		return region(def).generation;
+	}
+
+	/**
+	 * Caches a copy of an object. Null objects are not cached.
+	 *
+	 * @param def
+	 *            the model definition
+	 * @param key
+	 *            the primary key
+	 * @param value
+	 *            the object
+	 * @param generation
+	 *            the generation of the model when the object was read
+	 */
+	<T> void put(TableDefinition<T> def, Object key, T value, long generation) {
+		if (value != null) {
+			region(def).put(normalizeKey(key), def.copy(value), generation);
+		}
+	}
+
+	private Region region(TableDefinition<?> def) {
+		Region region = regions.get(def.getModelClass());
+		if (region == null) {
+			region = new Region(def);
+			Region existing = regions.putIfAbsent(def.getModelClass(), region);
+			if (existing != null) {
+				region = existing;
+			}
+		}
+		return region;
+	}
+
+	/**
+	 * Invalidates the cached object of a model object, which is written by a
+	 * model update, delete or merge.
+	 *
+	 * @param def
+	 *            the model definition
+	 * @param obj
+	 *            the written model object
+	 */
+	void invalidate(TableDefinition<?> def, Object obj) {
+		Region region = regions.get(def.getModelClass());
+		if (region != null) {
+			region.remove(normalizeKey(def.getPrimaryKey(obj)));
+		}
+	}
+
+	/**
+	 * Invalidates the cached objects of the table written by a statement.
+	 * Statements which do not write, e.g. queries or CREATE statements, are
+	 * ignored.
+	 *
+	 * @param sql
+	 *            the executed statement
+	 */
+	public void invalidateStatement(String sql) {
+		if (regions.isEmpty()) {
+			return;
+		}
+		String table = ResultCache.getWrittenTable(sql);
+		if (table == ResultCache.ANY_TABLE) {
+			invalidateAll();
+		} else if (table != null) {
+			invalidateTable(table);
+		}
+	}
+
+	/**
+	 * Invalidates the cached objects of a table.
+	 *
+	 * @param table
+	 *            the table name, optionally qualified by a schema
+	 */
+	public void invalidateTable(String table) {
+		String name = ResultCache.normalize(table);
+		for (Region region : regions.values()) {
+			if (region.table.equals(name)) {
+				region.clear();
+			}
+		}
+	}
+
+	/**
+	 * Invalidates the cached objects of a model.
+	 *
+	 * @param modelClass
+	 */
+	public void invalidate(Class<?> modelClass) {
+		Region region = regions.get(modelClass);
+		if (region != null) {
+			region.clear();
+		}
+	}
+
+	/**
+	 * Invalidates all cached objects.
+	 */
+	public void invalidateAll() {
+		for (Region region : regions.values()) {
+			region.clear();
+		}
+	}
+
+	/**
+	 * Returns the number of cached objects.
+	 *
+	 * @return the number of cached objects
+	 */
+	public int size() {
+		int size = 0;
+		for (Region region : regions.values()) {
+			size += region.size();
+		}
+		return size;
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the ratio of the lookups which have been served from the cache.
+	 *
+	 * @return the hit rate between 0 and 1
+	 */
+	public double getHitRate() {
+		long hitCount = hits.get();
+		long lookups = hitCount + misses.get();
+		return lookups == 0 ? 0 : ((double) hitCount) / lookups;
+	}
+
+	/**
+	 * Returns the number of objects which have been evicted because their
+	 * model exceeded maxEntries or because they expired.
+	 *
+	 * @return the number of evicted objects
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * Returns the number of objects which have been invalidated by writes.
+	 *
+	 * @return the number of invalidated objects
+	 */
+	public long getInvalidationCount() {
+		return invalidations.get();
+	}
+
+	@Override
+	public String toString() {
+		return "EntityCache[size=" + size() + ", hits=" + hits + ", misses=" + misses + ", evictions="
+				+ evictions + ", invalidations=" + invalidations + "]";
+	}
+
+	/**
+	 * Normalizes integral keys to Long, so that an Integer and a Long key of
+	 * the same value address the same object.
+	 */
+	static Object normalizeKey(Object key) {
+		if (key instanceof List) {
+			List<?> values = (List<?>) key;
+			List<Object> normalized = Utils.newArrayList();
+			for (Object value : values) {
+				normalized.add(normalizeKey(value));
+			}
+			return normalized;
+		} else if (key instanceof Integer || key instanceof Long || key instanceof Short
+				|| key instanceof Byte) {
+			return ((Number) key).longValue();
+		}
+		return key;
+	}
+
+	/**
+	 * The cached objects of one model.
+	 */
+	private class Region {
+		final long ttl;
+		final String table;
+		final LinkedHashMap<Object, CachedEntity> entries;
+		volatile long generation;
+
+		Region(TableDefinition<?> def) {
+			IQCache cache = def.getModelClass().getAnnotation(IQCache.class);
+			this.ttl = cache == null ? 0 : cache.ttl();
+			// views are invalidated by writes to their source table
+			this.table = ResultCache.normalize(StringUtils.isNullOrEmpty(def.viewTableName) ? def.tableName
+					: def.viewTableName);
+			final int maxEntries = Math.max(1, cache == null ? 1000 : cache.maxEntries());
+			this.entries = new LinkedHashMap<Object, CachedEntity>(16, 0.75f, true) {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Object, CachedEntity> eldest) {
+					if (size() > maxEntries) {
+						evictions.incrementAndGet();
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+
+		synchronized Object get(Object key) {
+			CachedEntity entry = entries.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.expires > 0 && entry.expires < System.currentTimeMillis()) {
+				entries.remove(key);
+				evictions.incrementAndGet();
+				return null;
+			}
+			return entry.value;
+		}
+
+		synchronized void put(Object key, Object value, long readGeneration) {
+			if (readGeneration != generation) {
+				// invalidated while the object was read
+				return;
+			}
+			long expires = ttl > 0 ? (System.currentTimeMillis() + ttl) : 0;
+			entries.put(key, new CachedEntity(value, expires));
+		}
+
+		synchronized void remove(Object key) {
+			generation++;
+			if (entries.remove(key) != null) {
+				invalidations.incrementAndGet();
+			}
+		}
+
+		synchronized void clear() {
+			generation++;
+			invalidations.addAndGet(entries.size());
+			entries.clear();
+		}
+
+		synchronized int size() {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * A cached model object.
+	 */
+	private static class CachedEntity {
+		final Object value;
+		final long expires;
+
+		CachedEntity(Object value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+}
@@ -518,6 +518,32 @@ public interface Iciql {
 		IQIndex[] value() default {};
 	}
 
+	/**
+	 * Annotation to cache the objects of a model by their primary key. Objects
+	 * which are looked up with Db.get() or with a query of the primary key
+	 * which selects the first row are served from the entity cache of the Db.
+	 * Model updates, deletes and merges invalidate the cached object, other
+	 * writes to the table invalidate all cached objects of the model.
+	 * <p>
+	 * &#064;IQCache(maxEntries = 1000, ttl = 60000)
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.TYPE)
+	public @interface IQCache {
+
+		/**
+		 * The maximum number of cached objects of the model. The least
+		 * recently used objects are evicted. Default: 1000.
+		 */
+		int maxEntries() default 1000;
+
+		/**
+		 * The time to live of a cached object in milliseconds. Default: 0,
+		 * objects are cached until they are invalidated or evicted.
+		 */
+		long ttl() default 0;
+	}
+
 	/**
 	 * Annotation to define a table.
 	 */
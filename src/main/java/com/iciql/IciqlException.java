@@ -32,9 +32,13 @@ public class IciqlException extends RuntimeException {
 	public static final int CODE_OBJECT_ALREADY_EXISTS = 4;
 	public static final int CODE_CONSTRAINT_VIOLATION = 5;
 	public static final int CODE_UNCHARACTERIZED = 6;
+	public static final int CODE_DEADLOCK = 7;
+	public static final int CODE_LOCK_TIMEOUT = 8;
 
 	private static final String TOKEN_UNMAPPED_FIELD = "\\? (=|\\>|\\<|\\<\\>|!=|\\>=|\\<=|LIKE|BETWEEN) \\?";
 
+	private static final Pattern UNMAPPED_FIELD = Pattern.compile(TOKEN_UNMAPPED_FIELD);
+
 	private static final long serialVersionUID = 1L;
 
 	private String sql;
@@ -56,7 +60,7 @@ public class IciqlException extends RuntimeException {
 	}
 
 	public static void checkUnmappedField(String sql) {
-		if (Pattern.compile(IciqlException.TOKEN_UNMAPPED_FIELD).matcher(sql).find()) {
+		if (UNMAPPED_FIELD.matcher(sql).find()) {
 			IciqlException e = new IciqlException("unmapped field in statement!");
 			e.sql = sql;
 			e.iciqlCode = CODE_UNMAPPED_FIELD;
@@ -65,7 +69,7 @@ public class IciqlException extends RuntimeException {
 	}
 
 	public static IciqlException fromSQL(String sql, Throwable t) {
-		if (Pattern.compile(TOKEN_UNMAPPED_FIELD).matcher(sql).find()) {
+		if (UNMAPPED_FIELD.matcher(sql).find()) {
 			IciqlException e = new IciqlException(t, "unmapped field in statement!");
 			e.sql = sql;
 			e.iciqlCode = CODE_UNMAPPED_FIELD;
@@ -154,6 +158,21 @@ public class IciqlException extends RuntimeException {
 			} else if ("X0Y25".equals(state)) {
 				// Derby constraint violation
 				iciqlCode = CODE_CONSTRAINT_VIOLATION;
+			} else if ("40001".equals(state)) {
+				// H2, Derby, HSQL, MySQL, PostgreSQL and SQL Server deadlock or serialization failure
+				iciqlCode = CODE_DEADLOCK;
+			} else if ("40P01".equals(state)) {
+				// PostgreSQL deadlock
+				iciqlCode = CODE_DEADLOCK;
+			} else if ("40XL1".equals(state)) {
+				// Derby lock timeout
+				iciqlCode = CODE_LOCK_TIMEOUT;
+			} else if ("HYT00".equals(state)) {
+				// H2 lock timeout
+				iciqlCode = CODE_LOCK_TIMEOUT;
+			} else if ("55P03".equals(state)) {
+				// PostgreSQL lock not available
+				iciqlCode = CODE_LOCK_TIMEOUT;
 			} else if (s.getMessage().startsWith("[SQLITE")) {
 				// SQLite error codes
 				final String msg = s.getMessage();
@@ -168,6 +187,11 @@ public class IciqlException extends RuntimeException {
 						iciqlCode = CODE_CONSTRAINT_VIOLATION;
 					}
 					break;
+				case 5:
+				case 6:
+					// SQLITE_BUSY and SQLITE_LOCKED
+					iciqlCode = CODE_LOCK_TIMEOUT;
+					break;
 				default:
 					iciqlCode = s.getErrorCode();
 					break;
@@ -52,4 +52,9 @@ class OrderExpression<T> {
 		}
 	}
 
+	boolean appendKey(SQLStatement.Key key) {
+		key.add(desc).add(nullsLast).add(nullsFirst);
+		return query.appendKey(key, null, expression);
+	}
+
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2026 iciql contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iciql;
+
+import com.iciql.ValidationRemark.Level;
+import com.iciql.util.StringUtils;
+
+/**
+ * A plan remark is a result of validating the execution plans of a
+ * QueryPlanInspector. Each remark has a level, the name of the statement and
+ * a message.
+ */
+public class PlanRemark {
+
+	public final Level level;
+	public final String statement;
+	public final String message;
+
+	private PlanRemark(Level level, String statement, String message) {
+		this.level = level;
+		this.statement = statement;
+		this.message = message;
+	}
+
+	public static PlanRemark consider(String statement, String message) {
+		return new PlanRemark(Level.CONSIDER, statement, message);
+	}
+
+	public static PlanRemark warn(String statement, String message) {
+		return new PlanRemark(Level.WARN, statement, message);
+	}
+
+	public static PlanRemark error(String statement, String message) {
+		return new PlanRemark(Level.ERROR, statement, message);
+	}
+
+	public boolean isError() {
+		return level.equals(Level.ERROR);
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(StringUtils.pad(level.name(), 9, " ", true));
+		sb.append(StringUtils.pad(statement, 25, " ", true));
+		sb.append(' ');
+		sb.append(message);
+		return sb.toString();
+	}
+
+}
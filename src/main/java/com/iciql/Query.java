@@ -24,16 +24,23 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
 
 import com.iciql.Iciql.EnumType;
 import com.iciql.NestedConditions.And;
 import com.iciql.NestedConditions.Or;
+import com.iciql.TableDefinition.FieldDefinition;
 import com.iciql.bytecode.ClassReader;
 import com.iciql.util.IciqlLogger;
 import com.iciql.util.JdbcUtils;
+import com.iciql.util.StringUtils;
 import com.iciql.util.Utils;
 
 /**
@@ -52,10 +59,14 @@ public class Query<T> {
 	private int conditionDepth = 0;
 	private ArrayList<SelectTable<T>> joins = Utils.newArrayList();
 	private final IdentityHashMap<Object, SelectColumn<T>> aliasMap = Utils.newIdentityHashMap();
+	private final HashMap<Object, Object> primitiveAliasMap = Utils.newHashMap();
 	private ArrayList<OrderExpression<T>> orderByList = Utils.newArrayList();
 	private ArrayList<Object> groupByExpressions = Utils.newArrayList();
 	private long limit;
 	private long offset;
+	private int asCount;
+	private boolean cached;
+	private long cacheTtl;
 
 	private Query(Db db) {
 		this.db = db;
@@ -73,7 +84,8 @@ public class Query<T> {
 		Query<T> query = new Query<T>(db);
 		TableDefinition<T> def = (TableDefinition<T>) db.define(alias.getClass());
 		query.from = new SelectTable<T>(db, query, alias, false);
-		def.initSelectObject(query.from, alias, query.aliasMap, false);
+		query.from.setAliasValues(def.initSelectObject(query.from, alias, query.aliasMap,
+				query.primitiveAliasMap, false, db.getReuseAliases()));
 		return query;
 	}
 
@@ -82,24 +94,38 @@ public class Query<T> {
 		Query<T> query = new Query<T>(db);
 		TableDefinition<T> def = (TableDefinition<T>) db.define(alias.getClass());
 		query.from = new SelectTable<T>(db, query, alias, false);
-		def.initSelectObject(query.from, alias, query.aliasMap, true);
+		def.initSelectObject(query.from, alias, query.aliasMap, query.primitiveAliasMap, true, false);
 		return query;
 	}
 
 	public long selectCount() {
-		SQLStatement stat = getSelectStatement(false);
-		stat.appendSQL("COUNT(*) ");
-		appendFromWhere(stat);
-		ResultSet rs = stat.executeQuery();
-		try {
-			rs.next();
-			long value = rs.getLong(1);
-			return value;
-		} catch (SQLException e) {
-			throw IciqlException.fromSQL(stat.getSQL(), e);
-		} finally {
-			JdbcUtils.closeSilently(rs, true);
+		SQLStatement.Key key = newKey(KeyPart.COUNT);
+		if (!appendFromWhereKey(key)) {
+			key = null;
 		}
+		SQLStatement stat = SQLStatement.forKey(db, key);
+		if (stat == null) {
+			stat = getSelectStatement(false);
+			stat.appendSQL("COUNT(*) ");
+			appendFromWhere(stat, false);
+			stat.cacheShape(key);
+		}
+		IciqlLogger.select(stat.getSQL());
+		return load(stat, Long.class, new ResultLoader<Long>() {
+			@Override
+			public Long load(SQLStatement stat) {
+				ResultSet rs = stat.executeQuery();
+				try {
+					rs.next();
+					long value = rs.getLong(1);
+					return value;
+				} catch (SQLException e) {
+					throw IciqlException.fromSQL(stat.getSQL(), e);
+				} finally {
+					JdbcUtils.closeSilently(rs, true);
+				}
+			}
+		});
 	}
 
 	public List<T> select() {
@@ -107,14 +133,50 @@ public class Query<T> {
 	}
 
 	public T selectFirst() {
+		TableDefinition<T> def = from.getAliasDefinition();
+		Object key = EntityCache.isCached(def) ? getPrimaryKeyLookup() : null;
+		if (key == null) {
+			List<T> list = limit(1).select(false);
+			return list.isEmpty() ? null : list.get(0);
+		}
+		// primary key lookup of a cached model
+		EntityCache cache = db.getEntityCache();
+		Object cached = cache.get(def, key);
+		if (cached != EntityCache.MISS) {
+			return def.getModelClass().cast(cached);
+		}
+		long generation = cache.generation(def);
 		List<T> list = limit(1).select(false);
-		return list.isEmpty() ? null : list.get(0);
+		T item = list.isEmpty() ? null : list.get(0);
+		cache.put(def, key, item, generation);
+		return item;
 	}
 
 	public List<T> selectDistinct() {
 		return select(true);
 	}
 
+	/**
+	 * Executes the query asynchronously on a connection which is borrowed from
+	 * the DataSource of the database. The statement is built by the calling
+	 * thread, so the query may be modified once this method returns.
+	 *
+	 * @return the future result
+	 */
+	public Future<List<T>> selectAsync() {
+		return execute(prepareSelect(false, true), new ResultLoader<Future<List<T>>>() {
+			@Override
+			public Future<List<T>> load(final SQLStatement stat) {
+				return db.executeAsync(new Db.Task<List<T>>() {
+					@Override
+					public List<T> execute(Db borrowed) {
+						return readRows(stat.copy(borrowed));
+					}
+				});
+			}
+		});
+	}
+
 	@SuppressWarnings("unchecked")
 	public <X, Z> X selectFirst(Z x) {
 		List<X> list = limit(1).select(x);
@@ -145,6 +207,40 @@ public class Query<T> {
 		return stat.getSQL().trim();
 	}
 
+	/**
+	 * explain returns the execution plan of the select statement of this query
+	 * as reported by the database.
+	 *
+	 * @return the execution plan, or null if the dialect can not explain
+	 *         statements
+	 */
+	public String explain() {
+		return db.getDialect().explain(prepareSelect());
+	}
+
+	SQLStatement prepareSelect() {
+		return prepareSelect(false, false);
+	}
+
+	private SQLStatement prepareSelect(boolean distinct, boolean log) {
+		SQLStatement.Key key = newKey(KeyPart.SELECT, distinct);
+		if (!appendFromWhereKey(key)) {
+			key = null;
+		}
+		SQLStatement stat = SQLStatement.forKey(db, key);
+		if (stat == null) {
+			TableDefinition<T> def = from.getAliasDefinition();
+			stat = getSelectStatement(distinct);
+			def.appendSelectList(stat);
+			appendFromWhere(stat, false);
+			stat.cacheShape(key);
+		}
+		if (log) {
+			IciqlLogger.select(stat.getSQL());
+		}
+		return stat;
+	}
+
 	/**
 	 * toSQL returns a static string version of the query with runtime variables
 	 * properly encoded. This method is also useful when combined with the where
@@ -243,17 +339,158 @@ public class Query<T> {
 	}
 
 	private List<T> select(boolean distinct) {
+		return load(prepareSelect(distinct, true), from.getAliasDefinition().getModelClass(),
+				new ResultLoader<List<T>>() {
+					@Override
+					public List<T> load(SQLStatement stat) {
+						return readRows(stat);
+					}
+				});
+	}
+
+	/**
+	 * Caches the results of this query in the query cache of the database.
+	 * The results are reused by equal queries with equal parameters until a
+	 * table of the query is written through iciql or the ttl expires.
+	 *
+	 * @param ttl
+	 *            the time to live in milliseconds, 0 to keep the results until
+	 *            a table of the query is written
+	 * @return the query
+	 */
+	public Query<T> cached(long ttl) {
+		this.cached = true;
+		this.cacheTtl = ttl;
+		return this;
+	}
+
+	/**
+	 * Executes a statement and returns its result.
+	 *
+	 * @param <V>
+	 *            the result type
+	 */
+	private interface ResultLoader<V> {
+		V load(SQLStatement stat);
+	}
+
+	private static final ResultLoader<Integer> UPDATE_COUNT = new ResultLoader<Integer>() {
+		@Override
+		public Integer load(SQLStatement stat) {
+			return stat.executeUpdate();
+		}
+	};
+
+	/**
+	 * Executes a statement of this query. The field values of the aliases
+	 * are released once the statement has been executed.
+	 *
+	 * @param stat
+	 *            the statement
+	 * @param loader
+	 *            executes the statement
+	 * @return the result
+	 */
+	private <V> V execute(SQLStatement stat, ResultLoader<V> loader) {
+		try {
+			return loader.load(stat);
+		} finally {
+			releaseAliases();
+		}
+	}
+
+	/**
+	 * Returns the result of a select statement, which is served from the
+	 * query cache if this query is cached and read from a replica if the
+	 * database reads from replicas.
+	 *
+	 * @param stat
+	 *            the select statement
+	 * @param type
+	 *            the result type, which is part of the cache key
+	 * @param loader
+	 *            reads the result from the database
+	 * @return the result
+	 */
+	private <V> V load(SQLStatement stat, final Object type, final ResultLoader<V> loader) {
+		return execute(stat, new ResultLoader<V>() {
+			@Override
+			public V load(SQLStatement stat) {
+				return cached ? readCached(stat, type, loader) : read(stat, loader);
+			}
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private <V> V readCached(SQLStatement stat, Object type, ResultLoader<V> loader) {
+		QueryCache cache = db.getQueryCache();
+		Object value = cache.get(stat, type);
+		if (value != QueryCache.MISS) {
+			return (V) value;
+		}
+		String[] tables = getReadTables();
+		long[] versions = cache.versions(tables);
+		V result = read(stat, loader);
+		if (result instanceof List) {
+			// the cached list is shared by all callers
+			result = (V) Collections.unmodifiableList((List<?>) result);
+		}
+		cache.put(stat, type, tables, versions, result, cacheTtl);
+		return result;
+	}
+
+	private <V> V read(final SQLStatement stat, final ResultLoader<V> loader) {
+		if (!db.isReplicaRead()) {
+			return loader.load(stat);
+		}
+		return db.executeRead(new Db.Task<V>() {
+			@Override
+			public V execute(Db replica) {
+				return loader.load(stat.copy(replica));
+			}
+		});
+	}
+
+	/**
+	 * Returns the normalized names of the tables which are read by this query,
+	 * including the source tables of views and the tables of subqueries.
+	 *
+	 * @return the table names
+	 */
+	private String[] getReadTables() {
+		Set<String> tables = new LinkedHashSet<String>();
+		addReadTables(tables);
+		return tables.toArray(new String[tables.size()]);
+	}
+
+	private void addReadTables(Set<String> tables) {
+		addReadTable(tables, from.getAliasDefinition());
+		for (SelectTable<T> join : joins) {
+			addReadTable(tables, join.getAliasDefinition());
+		}
+		for (Token token : conditions) {
+			if (token instanceof SubQueryCondition) {
+				((SubQueryCondition<?, ?, ?>) token).subquery.query.addReadTables(tables);
+			}
+		}
+	}
+
+	private static void addReadTable(Set<String> tables, TableDefinition<?> def) {
+		tables.add(ResultCache.normalize(def.tableName));
+		if (!StringUtils.isNullOrEmpty(def.viewTableName)) {
+			tables.add(ResultCache.normalize(def.viewTableName));
+		}
+	}
+
+	private List<T> readRows(SQLStatement stat) {
 		List<T> result = Utils.newArrayList();
 		TableDefinition<T> def = from.getAliasDefinition();
-		SQLStatement stat = getSelectStatement(distinct);
-		def.appendSelectList(stat);
-		appendFromWhere(stat);
 		ResultSet rs = stat.executeQuery();
 		try {
 			int[] columns = def.mapColumns(false, rs);
 			while (rs.next()) {
 				T item = from.newObject();
-				def.readRow(db.getDialect(), item, rs, columns);
+				def.readRow(stat.getDb().getDialect(), item, rs, columns);
 				result.add(item);
 			}
 		} catch (SQLException e) {
@@ -265,12 +502,35 @@ public class Query<T> {
 	}
 
 	public int delete() {
-		SQLStatement stat = new SQLStatement(db);
-		stat.appendSQL("DELETE FROM ");
-		from.appendSQL(stat);
-		appendWhere(stat);
+		return execute(prepareDelete(), UPDATE_COUNT);
+	}
+
+	/**
+	 * Executes the delete statement asynchronously on a connection which is
+	 * borrowed from the DataSource of the database.
+	 *
+	 * @return the future number of deleted rows
+	 */
+	public Future<Integer> deleteAsync() {
+		return executeAsync(prepareDelete());
+	}
+
+	private SQLStatement prepareDelete() {
+		SQLStatement.Key key = newKey(KeyPart.DELETE);
+		appendTableKey(key, from);
+		if (!appendWhereKey(key)) {
+			key = null;
+		}
+		SQLStatement stat = SQLStatement.forKey(db, key);
+		if (stat == null) {
+			stat = new SQLStatement(db);
+			stat.appendSQL("DELETE FROM ");
+			from.appendSQL(stat);
+			appendWhere(stat);
+			stat.cacheShape(key);
+		}
 		IciqlLogger.delete(stat.getSQL());
-		return stat.executeUpdate();
+		return stat.forTable(from.getAliasDefinition());
 	}
 
 	public <A> UpdateColumnSet<T, A> set(A field) {
@@ -354,23 +614,59 @@ public class Query<T> {
 	}
 
 	public int update() {
+		return execute(prepareUpdate(), UPDATE_COUNT);
+	}
+
+	/**
+	 * Executes the update statement asynchronously on a connection which is
+	 * borrowed from the DataSource of the database.
+	 *
+	 * @return the future number of updated rows
+	 */
+	public Future<Integer> updateAsync() {
+		return executeAsync(prepareUpdate());
+	}
+
+	private SQLStatement prepareUpdate() {
 		if (updateColumnDeclarations.size() == 0) {
 			throw new IciqlException("Missing set or increment call.");
 		}
-		SQLStatement stat = new SQLStatement(db);
-		stat.appendSQL("UPDATE ");
-		from.appendSQL(stat);
-		stat.appendSQL(" SET ");
-		int i = 0;
-		for (UpdateColumn declaration : updateColumnDeclarations) {
-			if (i++ > 0) {
-				stat.appendSQL(", ");
+		SQLStatement.Key key = newKey(KeyPart.UPDATE);
+		if (!appendUpdateKey(key) || !appendWhereKey(key)) {
+			key = null;
+		}
+		SQLStatement stat = SQLStatement.forKey(db, key);
+		if (stat == null) {
+			stat = new SQLStatement(db);
+			stat.appendSQL("UPDATE ");
+			from.appendSQL(stat);
+			stat.appendSQL(" SET ");
+			int i = 0;
+			for (UpdateColumn declaration : updateColumnDeclarations) {
+				if (i++ > 0) {
+					stat.appendSQL(", ");
+				}
+				declaration.appendSQL(stat);
 			}
-			declaration.appendSQL(stat);
+			appendWhere(stat);
+			stat.cacheShape(key);
 		}
-		appendWhere(stat);
 		IciqlLogger.update(stat.getSQL());
-		return stat.executeUpdate();
+		return stat.forTable(from.getAliasDefinition());
+	}
+
+	private Future<Integer> executeAsync(SQLStatement stat) {
+		return execute(stat, new ResultLoader<Future<Integer>>() {
+			@Override
+			public Future<Integer> load(final SQLStatement stat) {
+				return db.executeAsync(new Db.Task<Integer>() {
+					@Override
+					public Integer execute(Db borrowed) {
+						return stat.copy(borrowed).executeUpdate();
+					}
+				});
+			}
+		});
 	}
 
 	public <X, Z> List<X> selectDistinct(Z x) {
@@ -395,55 +691,74 @@ public class Query<T> {
 		return select((Class<X>) clazz, (X) x, distinct);
 	}
 
-	private <X> List<X> select(Class<X> clazz, X x, boolean distinct) {
-		List<X> result = Utils.newArrayList();
-		TableDefinition<X> def = db.define(clazz);
+	private <X> List<X> select(final Class<X> clazz, X x, boolean distinct) {
+		final TableDefinition<X> def = db.define(clazz);
 		SQLStatement stat = getSelectStatement(distinct);
 		def.appendSelectList(stat, this, x);
 		appendFromWhere(stat);
-		ResultSet rs = stat.executeQuery();
-		try {
-			int[] columns = def.mapColumns(false, rs);
-			while (rs.next()) {
-				X row = Utils.newObject(clazz);
-				def.readRow(db.getDialect(), row, rs, columns);
-				result.add(row);
+		return load(stat, clazz, new ResultLoader<List<X>>() {
+			@Override
+			public List<X> load(SQLStatement stat) {
+				List<X> result = Utils.newArrayList();
+				ResultSet rs = stat.executeQuery();
+				try {
+					int[] columns = def.mapColumns(false, rs);
+					while (rs.next()) {
+						X row = Utils.newObject(clazz);
+						def.readRow(db.getDialect(), row, rs, columns);
+						result.add(row);
+					}
+				} catch (SQLException e) {
+					throw IciqlException.fromSQL(stat.getSQL(), e);
+				} finally {
+					JdbcUtils.closeSilently(rs, true);
+				}
+				return result;
 			}
-		} catch (SQLException e) {
-			throw IciqlException.fromSQL(stat.getSQL(), e);
-		} finally {
-			JdbcUtils.closeSilently(rs, true);
-		}
-		return result;
+		});
 	}
 
-	@SuppressWarnings("unchecked")
 	private <X> List<X> selectSimple(X x, boolean distinct) {
-		SQLStatement stat = getSelectStatement(distinct);
-		appendSQL(stat, null, x);
-		appendFromWhere(stat);
-		ResultSet rs = stat.executeQuery();
-		List<X> result = Utils.newArrayList();
-		try {
-			while (rs.next()) {
-				X value;
-				Object o = rs.getObject(1);
-				// Convert CLOB and BLOB now because we close the resultset
-				if (Clob.class.isAssignableFrom(o.getClass())) {
-					value = (X) Utils.convert(o, String.class);
-				} else if (Blob.class.isAssignableFrom(o.getClass())) {
-					value = (X) Utils.convert(o, byte[].class);
-				} else {
-					value = (X) o;
+		SQLStatement.Key key = newKey(KeyPart.SIMPLE, distinct);
+		if (!appendKey(key, null, x) || !appendFromWhereKey(key)) {
+			key = null;
+		}
+		SQLStatement stat = SQLStatement.forKey(db, key);
+		if (stat == null) {
+			stat = getSelectStatement(distinct);
+			appendSQL(stat, null, x);
+			appendFromWhere(stat, false);
+			stat.cacheShape(key);
+		}
+		IciqlLogger.select(stat.getSQL());
+		return load(stat, x.getClass(), new ResultLoader<List<X>>() {
+			@Override
+			@SuppressWarnings("unchecked")
+			public List<X> load(SQLStatement stat) {
+				ResultSet rs = stat.executeQuery();
+				List<X> result = Utils.newArrayList();
+				try {
+					while (rs.next()) {
+						X value;
+						Object o = rs.getObject(1);
+						// Convert CLOB and BLOB now because we close the resultset
+						if (Clob.class.isAssignableFrom(o.getClass())) {
+							value = (X) Utils.convert(o, String.class);
+						} else if (Blob.class.isAssignableFrom(o.getClass())) {
+							value = (X) Utils.convert(o, byte[].class);
+						} else {
+							value = (X) o;
+						}
+						result.add(value);
+					}
+				} catch (Exception e) {
+					throw IciqlException.fromSQL(stat.getSQL(), e);
+				} finally {
+					JdbcUtils.closeSilently(rs, true);
 				}
-				result.add(value);
+				return result;
 			}
-		} catch (Exception e) {
-			throw IciqlException.fromSQL(stat.getSQL(), e);
-		} finally {
-			JdbcUtils.closeSilently(rs, true);
-		}
-		return result;
+		});
 	}
 
 	private SQLStatement getSelectStatement(boolean distinct) {
@@ -824,38 +1139,264 @@ public class Query<T> {
 		addParameter(stat, alias, valueRight);
 	}
 
+	/**
+	 * INTERNAL
+	 * <p>
+	 * Appends an IN or NOT IN condition. Lists larger than the array threshold
+	 * of the database are bound as one array parameter if the dialect supports
+	 * it. Otherwise the list is padded to the next power of two by repeating
+	 * its last value so that the number of distinct statement shapes stays
+	 * small, unless the padded list would exceed the parameter limit of the
+	 * dialect.
+	 *
+	 * @param stat
+	 *            the statement
+	 * @param alias
+	 *            the alias object (can be null)
+	 * @param values
+	 *            the values
+	 * @param compareType
+	 *            IN or NOT IN
+	 */
 	public void appendSQL(SQLStatement stat, Object alias, Iterable<Object> values,
 			CompareType compareType) {
-		boolean first = true;
-		stat.appendSQL("(");
+		List<Object> list = Utils.newArrayList();
 		for (Object value : values) {
-			if (first) {
-				first = false;
-			} else {
+			list.add(value);
+		}
+		SelectColumn<T> col = getColumnByReference(alias);
+		int threshold = db.getInArrayThreshold();
+		if (col != null && threshold > 0 && list.size() > threshold) {
+			Object[] array = new Object[list.size()];
+			for (int i = 0; i < array.length; i++) {
+				array[i] = toParameter(col, list.get(i));
+			}
+			if (db.getDialect().prepareInArray(stat, compareType, col.getFieldDefinition().dataType, array)) {
+				return;
+			}
+		}
+		int size = padInList(stat.getParameterCount(), list.size());
+		stat.appendSQL(" ");
+		stat.appendSQL(compareType.getString());
+		stat.appendSQL("(");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
 				stat.appendSQL(", ");
 			}
 			stat.appendSQL("?");
-			addParameter(stat, alias, value);
+			stat.addParameter(toParameter(col, list.get(Math.min(i, list.size() - 1))));
 		}
 		stat.appendSQL(")");
 	}
 
-	private void addParameter(SQLStatement stat, Object alias, Object value) {
+	/**
+	 * Returns the padded size of an IN list: the next power of two, or the
+	 * unpadded size if the padding would push the statement over the
+	 * parameter limit of the dialect.
+	 */
+	private int padInList(int parameterCount, int size) {
+		if (size <= 1) {
+			return size;
+		}
+		int padded = Integer.highestOneBit(size - 1) << 1;
+		if (padded < 0 || parameterCount + padded > db.getDialect().getMaxParameters()) {
+			return size;
+		}
+		return padded;
+	}
+
+	/**
+	 * INTERNAL
+	 * <p>
+	 * Appends the structure of a value to a statement key, like
+	 * appendSQL(stat, alias, value) appends its SQL.
+	 *
+	 * @param key
+	 *            the statement key
+	 * @param alias
+	 *            the alias object (can be null)
+	 * @param value
+	 *            the value
+	 * @return false if the value is rendered on every execution
+	 */
+	boolean appendKey(SQLStatement.Key key, Object alias, Object value) {
+		if (Function.count() == value) {
+			key.add(KeyPart.COUNT);
+			return true;
+		}
+		if (value == null) {
+			return false;
+		}
+		if (RuntimeParameter.PARAMETER != value) {
+			Token token = Db.getToken(value);
+			if (token != null) {
+				return appendKey(key, token);
+			}
+			SelectColumn<T> col = alias != null && value.getClass().isEnum() ? null : getColumnByReference(value);
+			if (col != null) {
+				key.add(KeyPart.COLUMN).add(col.getSelectTable().getAs()).add(col.getFieldDefinition().columnName);
+				return true;
+			}
+		}
+		key.add(KeyPart.PARAMETER);
+		key.addParameter(toParameter(getColumnByReference(alias), value));
+		return true;
+	}
+
+	/**
+	 * INTERNAL
+	 * <p>
+	 * Appends the structure of a BETWEEN condition to a statement key.
+	 *
+	 * @param key
+	 *            the statement key
+	 * @param alias
+	 *            the alias object (can be null)
+	 * @param valueLeft
+	 *            the value on the left of the compound clause
+	 * @param valueRight
+	 *            the value on the right of the compound clause
+	 * @return false if the condition is rendered on every execution
+	 */
+	boolean appendKey(SQLStatement.Key key, Object alias, Object valueLeft, Object valueRight) {
+		if (valueLeft == null || valueRight == null) {
+			return false;
+		}
+		SelectColumn<T> col = getColumnByReference(alias);
+		key.add(KeyPart.BETWEEN);
+		key.addParameter(toParameter(col, valueLeft));
+		key.addParameter(toParameter(col, valueRight));
+		return true;
+	}
+
+	/**
+	 * INTERNAL
+	 * <p>
+	 * Appends the structure of an IN or NOT IN condition to a statement key.
+	 * The structure is the padded size of the list. Lists which may be bound
+	 * as an array are rendered on every execution.
+	 *
+	 * @param key
+	 *            the statement key
+	 * @param alias
+	 *            the alias object (can be null)
+	 * @param values
+	 *            the values
+	 * @param compareType
+	 *            IN or NOT IN
+	 * @return false if the condition is rendered on every execution
+	 */
+	boolean appendKey(SQLStatement.Key key, Object alias, Iterable<Object> values, CompareType compareType) {
+		List<Object> list = Utils.newArrayList();
+		for (Object value : values) {
+			if (value == null) {
+				return false;
+			}
+			list.add(value);
+		}
 		SelectColumn<T> col = getColumnByReference(alias);
+		int threshold = db.getInArrayThreshold();
+		if (col != null && threshold > 0 && list.size() > threshold) {
+			return false;
+		}
+		int size = padInList(key.getParameterCount(), list.size());
+		key.add(KeyPart.IN).add(compareType).add(size);
+		for (int i = 0; i < size; i++) {
+			key.addParameter(toParameter(col, list.get(Math.min(i, list.size() - 1))));
+		}
+		return true;
+	}
+
+	/**
+	 * Appends the structure of a token to a statement key. Functions,
+	 * subqueries, decompiled filters and custom tokens are rendered on every
+	 * execution.
+	 *
+	 * @param key
+	 *            the statement key
+	 * @param token
+	 *            the token
+	 * @return false if the token is rendered on every execution
+	 */
+	private boolean appendKey(SQLStatement.Key key, Token token) {
+		Class<?> type = token.getClass();
+		if (type == Condition.class) {
+			return ((Condition<?>) token).appendKey(key, this);
+		} else if (type == RuntimeParameter.class) {
+			return ((RuntimeParameter<?>) token).appendKey(key, this);
+		} else if (type == RuntimeToken.class) {
+			return ((RuntimeToken) token).appendKey(key);
+		} else if (token instanceof ConditionAndOr || token instanceof ConditionOpenClose) {
+			key.add(token);
+			return true;
+		}
+		return false;
+	}
+
+	private void addParameter(SQLStatement stat, Object alias, Object value) {
+		stat.addParameter(toParameter(getColumnByReference(alias), value));
+	}
+
+	private Object toParameter(SelectColumn<T> col, Object value) {
 		if (col != null && value.getClass().isEnum()) {
 			// enum
 			EnumType type = col.getFieldDefinition().enumType;
 			Enum<?> anEnum = (Enum<?>) value;
-			Object y = Utils.convertEnum(anEnum, type);
-			stat.addParameter(y);
+			return Utils.convertEnum(anEnum, type);
 		} else if (col != null) {
 			// object
-			Object parameter = db.getDialect().serialize(value, col.getFieldDefinition().typeAdapter);
-			stat.addParameter(parameter);
+			return db.getDialect().serialize(value, col.getFieldDefinition().typeAdapter);
 		} else {
 			// primitive
-			stat.addParameter(value);
+			return value;
+		}
+	}
+
+	/**
+	 * Returns the primary key of a query which selects a model object by the
+	 * values of all of its primary key fields.
+	 *
+	 * @return the primary key or null, if the query is not a primary key
+	 *         lookup
+	 */
+	private Object getPrimaryKeyLookup() {
+		if (!joins.isEmpty() || !groupByExpressions.isEmpty() || offset > 0 || conditions.isEmpty()) {
+			return null;
 		}
+		Map<FieldDefinition, Object> values = new IdentityHashMap<FieldDefinition, Object>();
+		for (int i = 0; i < conditions.size(); i++) {
+			Token token = conditions.get(i);
+			if (i % 2 == 1) {
+				if (token != ConditionAndOr.AND) {
+					return null;
+				}
+				continue;
+			}
+			if (!(token instanceof Condition)) {
+				return null;
+			}
+			Condition<?> condition = (Condition<?>) token;
+			if (condition.compareType != CompareType.EQUAL || condition.y == null || condition.z != null
+					|| condition.i != null || condition.y == RuntimeParameter.PARAMETER
+					|| condition.y instanceof Token || aliasMap.containsKey(condition.y)) {
+				return null;
+			}
+			SelectColumn<T> col = aliasMap.get(condition.x);
+			if (col == null || col.getSelectTable() != from || !col.getFieldDefinition().isPrimaryKey
+					|| values.put(col.getFieldDefinition(), condition.y) != null) {
+				return null;
+			}
+		}
+		List<Object> key = Utils.newArrayList();
+		for (FieldDefinition field : from.getAliasDefinition().getFields()) {
+			if (field.isPrimaryKey) {
+				if (!values.containsKey(field)) {
+					return null;
+				}
+				key.add(values.get(field));
+			}
+		}
+		return key.size() == 1 ? key.get(0) : key;
 	}
 
 	void addConditionToken(Token condition) {
@@ -876,6 +1417,121 @@ public class Query<T> {
 		}
 	}
 
+	/**
+	 * Releases the field values of the aliases once a statement has been
+	 * executed, so that the next query of an alias may re-use them.
+	 */
+	private void releaseAliases() {
+		from.releaseAlias();
+		for (SelectTable<T> join : joins) {
+			join.releaseAlias();
+		}
+	}
+
+	/**
+	 * Returns a new statement key of this query.
+	 *
+	 * @param header
+	 *            the kind of statement
+	 * @return the statement key
+	 */
+	private SQLStatement.Key newKey(Object... header) {
+		return new SQLStatement.Key(header).add(db.getDialectKey());
+	}
+
+	private void appendTableKey(SQLStatement.Key key, SelectTable<T> table) {
+		TableDefinition<T> def = table.getAliasDefinition();
+		key.add(def.getModelClass()).add(def.schemaName).add(def.tableName);
+	}
+
+	/**
+	 * Appends the structure of the SET clause of an update to a statement key,
+	 * like prepareUpdate() renders it.
+	 *
+	 * @param key
+	 *            the statement key
+	 * @return false if the statement is rendered on every execution
+	 */
+	private boolean appendUpdateKey(SQLStatement.Key key) {
+		appendTableKey(key, from);
+		key.add(updateColumnDeclarations.size());
+		for (UpdateColumn declaration : updateColumnDeclarations) {
+			Class<?> type = declaration.getClass();
+			if (type == UpdateColumnSet.class) {
+				if (!((UpdateColumnSet<?, ?>) declaration).appendKey(key)) {
+					return false;
+				}
+			} else if (type == UpdateColumnIncrement.class) {
+				if (!((UpdateColumnIncrement<?, ?>) declaration).appendKey(key)) {
+					return false;
+				}
+			} else {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Appends the structure of the WHERE clause to a statement key, like
+	 * appendWhere(stat) renders it.
+	 *
+	 * @param key
+	 *            the statement key
+	 * @return false if the statement is rendered on every execution
+	 */
+	private boolean appendWhereKey(SQLStatement.Key key) {
+		if (conditionDepth != 0) {
+			throw new IciqlException("unmatch condition open-close count");
+		}
+		key.add(KeyPart.WHERE).add(conditions.size());
+		for (Token token : conditions) {
+			if (!appendKey(key, token)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Appends the structure of the FROM, WHERE, GROUP BY, ORDER BY and LIMIT
+	 * clauses to a statement key, like appendFromWhere(stat) renders them.
+	 *
+	 * @param key
+	 *            the statement key
+	 * @return false if the statement is rendered on every execution
+	 */
+	private boolean appendFromWhereKey(SQLStatement.Key key) {
+		appendTableKey(key, from);
+		for (SelectTable<T> join : joins) {
+			key.add(KeyPart.JOIN).add(join.getOuterJoin());
+			appendTableKey(key, join);
+			key.add(join.getJoinConditions().size());
+			for (Token token : join.getJoinConditions()) {
+				if (!appendKey(key, token)) {
+					return false;
+				}
+			}
+		}
+		if (!appendWhereKey(key)) {
+			return false;
+		}
+		key.add(KeyPart.GROUP_BY).add(groupByExpressions.size());
+		for (Object obj : groupByExpressions) {
+			if (!appendKey(key, null, obj)) {
+				return false;
+			}
+		}
+		key.add(KeyPart.ORDER_BY).add(orderByList.size());
+		for (OrderExpression<T> o : orderByList) {
+			if (!o.appendKey(key)) {
+				return false;
+			}
+		}
+		key.add(limit).add(offset);
+		return true;
+	}
+
 	void addUpdateColumnDeclaration(UpdateColumn declaration) {
 		updateColumnDeclarations.add(declaration);
 	}
@@ -965,7 +1621,8 @@ public class Query<T> {
     private <A> QueryJoin<T> join(A alias, boolean outerJoin) {
         TableDefinition<T> def = (TableDefinition<T>) db.define(alias.getClass());
         SelectTable<T> join = new SelectTable(db, this, alias, outerJoin);
-        def.initSelectObject(join, alias, aliasMap, false);
+        join.setAliasValues(def.initSelectObject(join, alias, aliasMap, primitiveAliasMap, false,
+                db.getReuseAliases()));
         joins.add(join);
         return new QueryJoin(this, join);
     }
@@ -974,6 +1631,16 @@ public class Query<T> {
 		return db;
 	}
 
+	/**
+	 * Returns the next table alias of this query. Aliases are assigned in join
+	 * order so that identical joins always produce identical SQL.
+	 *
+	 * @return the table alias
+	 */
+	String nextAs() {
+		return "T" + (++asCount);
+	}
+
 	SelectTable<T> getFrom() {
 		return from;
 	}
@@ -1008,25 +1675,27 @@ public class Query<T> {
 
 	/**
 	 * This method returns the alias of a mapped primitive field by its value.
+	 * The primitive aliases are indexed by value when the alias objects are
+	 * initialized.
 	 *
 	 * @param obj
 	 * @return
 	 */
 	@SuppressWarnings("unchecked")
 	<A> A getPrimitiveAliasByValue(A obj) {
-		for (Object alias : aliasMap.keySet()) {
-			if (alias.equals(obj)) {
-				SelectColumn<T> match = aliasMap.get(alias);
-				if (match.getFieldDefinition().isPrimitive) {
-					return (A) alias;
-				}
-			}
-		}
-		return null;
+		return (A) primitiveAliasMap.get(obj);
 	}
 
 	void addOrderBy(OrderExpression<T> expr) {
 		orderByList.add(expr);
 	}
 
+	/**
+	 * The parts of a statement key which are not tables, columns, operators
+	 * or SQL fragments.
+	 */
+	private enum KeyPart {
+		SELECT, COUNT, SIMPLE, DELETE, UPDATE, JOIN, WHERE, GROUP_BY, ORDER_BY, COLUMN, PARAMETER, BETWEEN, IN
+	}
+
 }
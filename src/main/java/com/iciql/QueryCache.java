@@ -0,0 +1,356 @@
+/*
+ * Copyright 2026 iciql contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iciql;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * QueryCache holds the results of queries which are marked with
+ * Query.cached(ttl). Results are keyed by the rendered statement, the bound
+ * parameters and the result type. The cache keeps at most maxEntries results,
+ * evicting the least recently used result.
+ * <p>
+ * Every table has a write version which is incremented by each statement
+ * which writes to the table through a Db that shares the cache. A cached
+ * result remembers the versions of the tables it was read from and is stale
+ * once one of these versions changes, so writes never have to search the
+ * cache. Db instances which are opened from the same DataSource share a cache,
+ * other Db instances may share a cache with Db.setQueryCache.
+ * </p>
+ * <p>
+ * Writes by other applications and tables which are only referenced by string
+ * fragments of a query are not observed by the cache, use a ttl for such
+ * queries. Cached lists are unmodifiable and their objects are shared by all
+ * callers and must not be modified.
+ * </p>
+ */
+public class QueryCache {
+
+	/**
+	 * Returned by get if there is no current result.
+	 */
+	static final Object MISS = new Object();
+
+	private static final Map<Object, QueryCache> SHARED = Collections
+			.synchronizedMap(new WeakHashMap<Object, QueryCache>());
+
+	private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<String, AtomicLong>();
+
+	/**
+	 * The version of statements which may write to any table.
+	 */
+	private final AtomicLong anyVersion = new AtomicLong();
+
+	private final LinkedHashMap<Key, CachedResult> entries;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final AtomicLong invalidations = new AtomicLong();
+
+	/**
+	 * Writes are only versioned once a query has been cached.
+	 */
+	private volatile boolean active;
+
+	/**
+	 * Returns the cache which is shared by all Db instances of a factory, e.g.
+	 * a DataSource.
+	 *
+	 * @param factory
+	 * @return the shared cache
+	 */
+	static QueryCache shared(Object factory) {
+		synchronized (SHARED) {
+			QueryCache cache = SHARED.get(factory);
+			if (cache == null) {
+				cache = new QueryCache();
+				SHARED.put(factory, cache);
+			}
+			return cache;
+		}
+	}
+
+	public QueryCache() {
+		this(1000);
+	}
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param maxEntries
+	 *            the maximum number of cached results
+	 */
+	public QueryCache(final int maxEntries) {
+		this.entries = new LinkedHashMap<Key, CachedResult>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, CachedResult> eldest) {
+				if (size() > Math.max(1, maxEntries)) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the current result of a statement.
+	 *
+	 * @param stat
+	 *            the select statement
+	 * @param type
+	 *            the result type
+	 * @return the cached result or MISS
+	 */
+	Object get(SQLStatement stat, Object type) {
+		Key key = new Key(stat, type);
+		synchronized (entries) {
+			CachedResult entry = entries.get(key);
+			if (entry != null) {
+				if (entry.expires > 0 && entry.expires < System.currentTimeMillis()) {
+					entries.remove(key);
+					evictions.incrementAndGet();
+				} else if (!Arrays.equals(entry.versions, versions(entry.tables))) {
+					// a table has been written since the result was read
+					entries.remove(key);
+					invalidations.incrementAndGet();
+				} else {
+					hits.incrementAndGet();
+					return entry.value;
+				}
+			}
+		}
+		misses.incrementAndGet();
+		return MISS;
+	}
+
+	/**
+	 * Returns the current write versions of tables. A result is cached with
+	 * the versions which were current before it was read, so writes which
+	 * happen while the result is read make the result stale.
+	 *
+	 * @param tables
+	 *            the normalized table names
+	 * @return the versions of the tables followed by the version of
+	 *         statements which may write to any table
+	 */
+	long[] versions(String[] tables) {
+		active = true;
+		long[] current = new long[tables.length + 1];
+		for (int i = 0; i < tables.length; i++) {
+			AtomicLong version = versions.get(tables[i]);
+			current[i] = version == null ? 0 : version.get();
+		}
+		current[tables.length] = anyVersion.get();
+		return current;
+	}
+
+	/**
+	 * Caches the result of a statement.
+	 *
+	 * @param stat
+	 *            the select statement
+	 * @param type
+	 *            the result type
+	 * @param tables
+	 *            the normalized names of the tables which are read
+	 * @param readVersions
+	 *            the versions of the tables before the result was read
+	 * @param value
+	 *            the result
+	 * @param ttl
+	 *            the time to live in milliseconds, 0 to keep the result until
+	 *            it is stale or evicted
+	 */
+	void put(SQLStatement stat, Object type, String[] tables, long[] readVersions, Object value, long ttl) {
+		long expires = ttl > 0 ? (System.currentTimeMillis() + ttl) : 0;
+		synchronized (entries) {
+			entries.put(new Key(stat, type), new CachedResult(value, tables, readVersions, expires));
+		}
+	}
+
+	/**
+	 * Increments the write version of the table written by a statement.
+	 * Statements which do not write, e.g. queries or CREATE statements, are
+	 * ignored.
+	 *
+	 * @param sql
+	 *            the executed statement
+	 */
+	public void invalidateStatement(String sql) {
+		if (!active) {
+			return;
+		}
+		String table = ResultCache.getWrittenTable(sql);
+		if (table == ResultCache.ANY_TABLE) {
+			invalidateAll();
+		} else if (table != null) {
+			invalidateTable(table);
+		}
+	}
+
+	/**
+	 * Increments the write version of a table, which makes all cached results
+	 * which were read from the table stale.
+	 *
+	 * @param table
+	 *            the table name, optionally qualified by a schema
+	 */
+	public void invalidateTable(String table) {
+		if (!active) {
+			return;
+		}
+		String name = ResultCache.normalize(table);
+		AtomicLong version = versions.get(name);
+		if (version == null) {
+			version = new AtomicLong();
+			AtomicLong existing = versions.putIfAbsent(name, version);
+			if (existing != null) {
+				version = existing;
+			}
+		}
+		version.incrementAndGet();
+	}
+
+	/**
+	 * Makes all cached results stale.
+	 */
+	public void invalidateAll() {
+		anyVersion.incrementAndGet();
+	}
+
+	/**
+	 * Returns the write version of a table.
+	 *
+	 * @param table
+	 *            the table name, optionally qualified by a schema
+	 * @return the number of observed writes to the table
+	 */
+	public long getVersion(String table) {
+		AtomicLong version = versions.get(ResultCache.normalize(table));
+		return version == null ? 0 : version.get();
+	}
+
+	/**
+	 * Returns the number of cached results, including stale results which
+	 * have not been looked up since they became stale.
+	 *
+	 * @return the number of cached results
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of results which have been evicted because the cache
+	 * exceeded maxEntries or because they expired.
+	 *
+	 * @return the number of evicted results
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * Returns the number of stale results which have been discarded.
+	 *
+	 * @return the number of invalidated results
+	 */
+	public long getInvalidationCount() {
+		return invalidations.get();
+	}
+
+	@Override
+	public String toString() {
+		return "QueryCache[size=" + size() + ", hits=" + hits + ", misses=" + misses + ", evictions="
+				+ evictions + ", invalidations=" + invalidations + "]";
+	}
+
+	/**
+	 * A cached result and the table versions it was read at.
+	 */
+	private static class CachedResult {
+		final Object value;
+		final String[] tables;
+		final long[] versions;
+		final long expires;
+
+		CachedResult(Object value, String[] tables, long[] versions, long expires) {
+			this.value = value;
+			this.tables = tables;
+			this.versions = versions;
+			this.expires = expires;
+		}
+	}
+
+	/**
+	 * The statement, the bound parameters and the result type of a cached
+	 * result.
+	 */
+	private static class Key {
+		final String sql;
+		final Object[] parameters;
+		final Object type;
+		final int hash;
+
+		Key(SQLStatement stat, Object type) {
+			this.sql = stat.getSQL();
+			this.parameters = stat.getParameters();
+			this.type = type;
+			this.hash = (sql.hashCode() * 31 + Arrays.deepHashCode(parameters)) * 31 + type.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return sql.equals(other.sql) && type.equals(other.type)
+					&& Arrays.deepEquals(parameters, other.parameters);
+		}
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2026 iciql contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iciql;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import com.iciql.Dao.SqlBatch;
+import com.iciql.Dao.SqlQuery;
+import com.iciql.Dao.SqlStatement;
+import com.iciql.util.Utils;
+
+/**
+ * Class to explain DAO statements and queries against a seeded database and to
+ * compare their execution plans with a baseline. This is intended to be used
+ * by tests to catch missing indexes and plan regressions.
+ * <p>
+ * DAO statements are resolved through the statement provider of the database,
+ * e.g. a DaoClasspathStatementProvider, and explained with all parameters bound
+ * to null. Queries are explained with their parameters.
+ */
+public class QueryPlanInspector {
+
+	/**
+	 * The plan markers of a full table scan in H2, HSQL, Derby, PostgreSQL
+	 * and SQLite.
+	 */
+	private static final Pattern FULL_SCAN = Pattern
+			.compile("tableScan|FULL SCAN|Table Scan|Seq Scan|SCAN TABLE");
+
+	/**
+	 * The lines of a Derby plan which are statistics of the explaining run:
+	 * timings, timestamps and the counts of opened, seen and visited rows.
+	 */
+	private static final Pattern DERBY_STATISTICS = Pattern.compile("(?m)^[ \\t]*(.*\\b(Time|time|Timestamp)\\b.*"
+			+ "|Number of (opens|rows|deleted rows|pages) .*|Rows (seen|filtered) .*|Fetch Size .*)(\\r?\\n|\\z)");
+
+	/**
+	 * The timestamp based names of generated Derby constraints.
+	 */
+	private static final Pattern DERBY_GENERATED_NAME = Pattern.compile("\\bSQL\\d{15}\\b");
+
+	private final Db db;
+	private final Map<String, SQLStatement> statements = new TreeMap<String, SQLStatement>();
+
+	public QueryPlanInspector(Db db) {
+		this.db = db;
+	}
+
+	/**
+	 * Adds every @SqlQuery, @SqlStatement and @SqlBatch method of a DAO
+	 * interface. The statements are named DaoName.methodName.
+	 *
+	 * @param daoClass
+	 *            the DAO interface
+	 * @return this inspector
+	 */
+	public <X extends Dao> QueryPlanInspector addDao(Class<X> daoClass) {
+		DaoProxy<X> proxy = new DaoProxy<X>(db, daoClass);
+		for (Method method : daoClass.getMethods()) {
+			if (method.isAnnotationPresent(SqlQuery.class) || method.isAnnotationPresent(SqlStatement.class)
+					|| method.isAnnotationPresent(SqlBatch.class)) {
+				String name = daoClass.getSimpleName() + "." + method.getName();
+				statements.put(name, proxy.getUnboundStatement(method));
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Adds the select statement of a query.
+	 *
+	 * @param name
+	 *            the name of the statement in the baseline
+	 * @param query
+	 *            the query
+	 * @return this inspector
+	 */
+	public QueryPlanInspector addQuery(String name, Query<?> query) {
+		statements.put(name, query.prepareSelect());
+		return this;
+	}
+
+	/**
+	 * Adds the select statement of a query.
+	 *
+	 * @param name
+	 *            the name of the statement in the baseline
+	 * @param query
+	 *            the query
+	 * @return this inspector
+	 */
+	public QueryPlanInspector addQuery(String name, QueryWhere<?> query) {
+		return addQuery(name, query.query);
+	}
+
+	/**
+	 * Explains all statements.
+	 *
+	 * @return the execution plans by statement name, statements which the
+	 *         dialect can not explain are omitted
+	 */
+	public Map<String, String> explain() {
+		Map<String, String> plans = new TreeMap<String, String>();
+		for (Map.Entry<String, SQLStatement> entry : statements.entrySet()) {
+			String plan = explain(entry.getValue());
+			if (plan != null) {
+				plans.put(entry.getKey(), plan);
+			}
+		}
+		return plans;
+	}
+
+	/**
+	 * Explains all statements and validates the plans against a baseline file.
+	 * If the baseline file does not exist, the current plans are written to it.
+	 *
+	 * @param baseline
+	 *            the baseline properties file
+	 * @return a list of plan remarks
+	 */
+	public List<PlanRemark> validatePlans(File baseline) {
+		if (!baseline.exists()) {
+			Properties props = new Properties();
+			props.putAll(explain());
+			store(props, baseline);
+			return validatePlans(props);
+		}
+		return validatePlans(load(baseline));
+	}
+
+	/**
+	 * Explains all statements and validates the plans. Full table scans are
+	 * reported as warnings, plans which differ from the baseline and
+	 * statements which fail to explain are reported as errors. Statements
+	 * which the dialect does not explain and statements without a baseline
+	 * plan are reported as considerations.
+	 *
+	 * @param baseline
+	 *            the baseline plans by statement name
+	 * @return a list of plan remarks
+	 */
+	public List<PlanRemark> validatePlans(Properties baseline) {
+		List<PlanRemark> remarks = Utils.newArrayList();
+		for (Map.Entry<String, SQLStatement> entry : statements.entrySet()) {
+			String name = entry.getKey();
+			String plan;
+			try {
+				plan = explain(entry.getValue());
+			} catch (IciqlException e) {
+				remarks.add(PlanRemark.error(name, e.getMessage()));
+				continue;
+			}
+			if (plan == null) {
+				remarks.add(PlanRemark.consider(name, "statement can not be explained by "
+						+ db.getDialect().getClass().getSimpleName()));
+				continue;
+			}
+			if (FULL_SCAN.matcher(plan).find()) {
+				remarks.add(PlanRemark.warn(name, "full table scan: " + plan));
+			}
+			String expected = baseline.getProperty(name);
+			if (expected == null) {
+				remarks.add(PlanRemark.consider(name, "no baseline plan"));
+			} else if (!expected.equals(plan)) {
+				remarks.add(PlanRemark.error(name, "plan changed from \"" + expected + "\" to \"" + plan
+						+ "\""));
+			}
+		}
+		return remarks;
+	}
+
+	/**
+	 * Explains a statement. The run statistics of Derby plans are removed, so
+	 * that the plans can be compared with the baseline.
+	 *
+	 * @param stat
+	 * @return the plan or null, if the dialect can not explain the statement
+	 */
+	private String explain(SQLStatement stat) {
+		String plan = db.getDialect().explain(stat);
+		if (plan != null && db.getDialect() instanceof SQLDialectDerby) {
+			plan = DERBY_STATISTICS.matcher(plan).replaceAll("");
+			plan = DERBY_GENERATED_NAME.matcher(plan).replaceAll("SQL");
+		}
+		return plan;
+	}
+
+	private Properties load(File file) {
+		Properties props = new Properties();
+		InputStream is = null;
+		try {
+			is = new FileInputStream(file);
+			props.load(is);
+		} catch (IOException e) {
+			throw new IciqlException(e, "Failed to load {0}", file);
+		} finally {
+			try {
+				if (is != null) {
+					is.close();
+				}
+			} catch (IOException e) {
+			}
+		}
+		return props;
+	}
+
+	private void store(Properties props, File file) {
+		OutputStream os = null;
+		try {
+			os = new FileOutputStream(file);
+			props.store(os, "iciql query plans");
+		} catch (IOException e) {
+			throw new IciqlException(e, "Failed to store {0}", file);
+		} finally {
+			try {
+				if (os != null) {
+					os.close();
+				}
+			} catch (IOException e) {
+			}
+		}
+	}
+}
@@ -18,6 +18,7 @@
 package com.iciql;
 
 import java.util.List;
+import java.util.concurrent.Future;
 
 import com.iciql.NestedConditions.And;
 import com.iciql.NestedConditions.Or;
@@ -282,6 +283,31 @@ public class QueryWhere<T> {
 		return this;
 	}
 
+	/**
+	 * Caches the results of this query in the query cache of the database.
+	 *
+	 * @param ttl
+	 *            the time to live in milliseconds, 0 to keep the results until
+	 *            a table of the query is written
+	 * @return the query
+	 * @see Query#cached(long)
+	 */
+	public QueryWhere<T> cached(long ttl) {
+		query.cached(ttl);
+		return this;
+	}
+
+	/**
+	 * explain returns the execution plan of the select statement of this query
+	 * as reported by the database.
+	 *
+	 * @return the execution plan, or null if the dialect can not explain
+	 *         statements
+	 */
+	public String explain() {
+		return query.explain();
+	}
+
 	public String getSQL() {
 		SQLStatement stat = new SQLStatement(query.getDb());
 		stat.appendSQL("SELECT *");
@@ -386,6 +412,10 @@ public class QueryWhere<T> {
 	}
 
 	public T selectFirst() {
+		if (EntityCache.isCached(query.getFrom().getAliasDefinition())) {
+			// primary key lookups of cached models are served by the cache
+			return query.selectFirst();
+		}
 		List<T> list = select();
 		return list.isEmpty() ? null : list.get(0);
 	}
@@ -394,6 +424,10 @@ public class QueryWhere<T> {
 		return query.selectDistinct();
 	}
 
+	public Future<List<T>> selectAsync() {
+		return query.selectAsync();
+	}
+
 	public void createView(Class<?> viewClass) {
 		query.createView(viewClass);
 	}
@@ -540,6 +574,14 @@ public class QueryWhere<T> {
 		return query.update();
 	}
 
+	public Future<Integer> deleteAsync() {
+		return query.deleteAsync();
+	}
+
+	public Future<Integer> updateAsync() {
+		return query.updateAsync();
+	}
+
 	public long selectCount() {
 		return query.selectCount();
 	}
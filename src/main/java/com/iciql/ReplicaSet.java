@@ -0,0 +1,205 @@
+/*
+ * Copyright 2026 iciql contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iciql;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+/**
+ * ReplicaSet holds the read replicas of a primary database. A Db which is
+ * opened with Db.open(primary, replicas) executes the selects of queries and
+ * the read-only @SqlQuery methods of DAO proxies on a connection which is
+ * borrowed from a replica, while statements, transactions and reads of
+ * uncommitted work use the primary connection.
+ * <p>
+ * Replicas usually lag behind the primary, so a Db reads from the primary
+ * for the read-your-writes window after each of its writes. Writes of other
+ * Db instances are not observed by the window.
+ * </p>
+ */
+public class ReplicaSet {
+
+	/**
+	 * The selection of the replica of a read.
+	 */
+	public enum Balancing {
+		/**
+		 * Replicas are used in turn.
+		 */
+		ROUND_ROBIN,
+
+		/**
+		 * The replica with the fewest active reads is used.
+		 */
+		LEAST_LOADED;
+	}
+
+	private final DataSource[] replicas;
+
+	private final Balancing balancing;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	private final AtomicInteger[] active;
+
+	private final AtomicLong[] reads;
+
+	private final AtomicLong fallbacks = new AtomicLong();
+
+	private volatile long readYourWritesWindow = 1000;
+
+	public ReplicaSet(DataSource... replicas) {
+		this(Balancing.ROUND_ROBIN, replicas);
+	}
+
+	public ReplicaSet(Balancing balancing, DataSource... replicas) {
+		if (replicas == null || replicas.length == 0) {
+			throw new IciqlException("A ReplicaSet requires at least one replica DataSource!");
+		}
+		this.balancing = balancing;
+		this.replicas = replicas.clone();
+		this.active = new AtomicInteger[replicas.length];
+		this.reads = new AtomicLong[replicas.length];
+		for (int i = 0; i < replicas.length; i++) {
+			active[i] = new AtomicInteger();
+			reads[i] = new AtomicLong();
+		}
+	}
+
+	/**
+	 * Set the time after a write during which a Db reads from the primary.
+	 * The default is 1000 milliseconds.
+	 *
+	 * @param millis
+	 *            the window in milliseconds, 0 reads from replicas right after
+	 *            a write
+	 * @return this replica set
+	 */
+	public ReplicaSet setReadYourWritesWindow(long millis) {
+		this.readYourWritesWindow = millis;
+		return this;
+	}
+
+	public long getReadYourWritesWindow() {
+		return readYourWritesWindow;
+	}
+
+	public Balancing getBalancing() {
+		return balancing;
+	}
+
+	/**
+	 * Returns the number of replicas.
+	 *
+	 * @return the number of replicas
+	 */
+	public int size() {
+		return replicas.length;
+	}
+
+	/**
+	 * Selects the replica of a read. Each acquired replica must be released.
+	 *
+	 * @return the index of the replica
+	 */
+	int acquire() {
+		int start = (next.getAndIncrement() & Integer.MAX_VALUE) % replicas.length;
+		int index = start;
+		if (balancing == Balancing.LEAST_LOADED) {
+			// ties are broken in turn
+			int min = Integer.MAX_VALUE;
+			for (int i = 0; i < replicas.length; i++) {
+				int candidate = (start + i) % replicas.length;
+				int load = active[candidate].get();
+				if (load < min) {
+					min = load;
+					index = candidate;
+				}
+			}
+		}
+		active[index].incrementAndGet();
+		reads[index].incrementAndGet();
+		return index;
+	}
+
+	/**
+	 * Releases an acquired replica.
+	 *
+	 * @param index
+	 *            the index of the replica
+	 */
+	void release(int index) {
+		active[index].decrementAndGet();
+	}
+
+	DataSource getDataSource(int index) {
+		return replicas[index];
+	}
+
+	/**
+	 * Counts a read which used the primary because a replica was unavailable.
+	 */
+	void fallback() {
+		fallbacks.incrementAndGet();
+	}
+
+	/**
+	 * Returns the number of reads which have been routed to a replica.
+	 *
+	 * @param index
+	 *            the index of the replica
+	 * @return the number of reads
+	 */
+	public long getReadCount(int index) {
+		return reads[index].get();
+	}
+
+	/**
+	 * Returns the number of reads which are executing on a replica.
+	 *
+	 * @param index
+	 *            the index of the replica
+	 * @return the number of active reads
+	 */
+	public int getActiveCount(int index) {
+		return active[index].get();
+	}
+
+	/**
+	 * Returns the number of reads which used the primary because the
+	 * connection to the selected replica failed.
+	 *
+	 * @return the number of fallback reads
+	 */
+	public long getFallbackCount() {
+		return fallbacks.get();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("ReplicaSet[balancing=").append(balancing).append(", reads=[");
+		for (int i = 0; i < replicas.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(reads[i]);
+		}
+		return sb.append("], fallbacks=").append(fallbacks).append("]").toString();
+	}
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright 2026 iciql contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iciql;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.iciql.Dao.CacheResult;
+
+/**
+ * ResultCache holds the results of DAO query methods annotated with
+ * &#064;CacheResult. Results are keyed by the method and the bound parameters
+ * and each method keeps at most maxEntries results, evicting the least recently
+ * used result.
+ * <p>
+ * Every statement which is executed by a Db that shares the cache invalidates
+ * the results of the methods which read the written table. Db instances which
+ * are opened from the same DataSource share a cache, other Db instances may
+ * share a cache with Db.setResultCache.
+ * </p>
+ * <p>
+ * Cached model objects are shared by all callers and must not be modified.
+ * </p>
+ */
+public class ResultCache {
+
+	/**
+	 * Returned by get if there is no cached result.
+	 */
+	static final Object MISS = new Object();
+
+	/**
+	 * Returned by getWrittenTable for statements which may write to any
+	 * table.
+	 */
+	static final String ANY_TABLE = "";
+
+	private static final Object NULL = new Object();
+
+	private static final Map<Object, ResultCache> SHARED = Collections
+			.synchronizedMap(new WeakHashMap<Object, ResultCache>());
+
+	/**
+	 * Matches the verb and the written table of a statement.
+	 */
+	private static final Pattern WRITE = Pattern.compile(
+			"^\\s*(insert|update|delete|merge|replace|upsert|truncate|drop|alter)\\s+"
+					+ "(?:(?:into|from|table|view)\\s+)?(?:if\\s+exists\\s+)?([^\\s(,;]+)?",
+			Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * Matches statements which may write to any table.
+	 */
+	private static final Pattern UNKNOWN_WRITE = Pattern.compile("^\\s*(with|call|exec|execute)\\b",
+			Pattern.CASE_INSENSITIVE);
+
+	private final ConcurrentMap<Method, Region> regions = new ConcurrentHashMap<Method, Region>();
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final AtomicLong invalidations = new AtomicLong();
+
+	/**
+	 * Returns the cache which is shared by all Db instances of a factory, e.g.
+	 * a DataSource.
+	 *
+	 * @param factory
+	 * @return the shared cache
+	 */
+	static ResultCache shared(Object factory) {
+		synchronized (SHARED) {
+			ResultCache cache = SHARED.get(factory);
+			if (cache == null) {
+				cache = new ResultCache();
+				SHARED.put(factory, cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Returns the cached result of a method.
+	 *
+	 * @param method
+	 * @param cacheResult
+	 * @param parameters
+	 *            the bound parameters
+	 * @return the cached result or MISS
+	 */
+	Object get(Method method, CacheResult cacheResult, Object[] parameters) {
+		Object value = region(method, cacheResult).get(new Key(parameters));
+		if (value == null) {
+			misses.incrementAndGet();
+			return MISS;
+		}
+		hits.incrementAndGet();
+		return value == NULL ? null : value;
+	}
+
+	/**
+	 * Returns the current generation of the results of a method. A result is
+	 * only cached if its method has not been invalidated while the result was
+	 * read from the database.
+	 *
+	 * @param method
+	 * @param cacheResult
+	 * @return the generation
+	 */
+	long generation(Method method, CacheResult cacheResult) {
+		return region(method, cacheResult).generation;
+	}
+
+	/**
+	 * Caches the result of a method.
+	 *
+	 * @param method
+	 * @param cacheResult
+	 * @param parameters
+	 *            the bound parameters
+	 * @param value
+	 *            the result
+	 * @param generation
+	 *            the generation of the method when the result was read
+	 */
+	void put(Method method, CacheResult cacheResult, Object[] parameters, Object value, long generation) {
+		region(method, cacheResult).put(new Key(parameters), value == null ? NULL : value, generation);
+	}
+
+	private Region region(Method method, CacheResult cacheResult) {
+		Region region = regions.get(method);
+		if (region == null) {
+			region = new Region(cacheResult);
+			Region existing = regions.putIfAbsent(method, region);
+			if (existing != null) {
+				region = existing;
+			}
+		}
+		return region;
+	}
+
+	/**
+	 * Invalidates the results which depend on the table written by a
+	 * statement. Statements which do not write, e.g. queries or CREATE
+	 * statements, are ignored.
+	 *
+	 * @param sql
+	 *            the executed statement
+	 */
+	public void invalidateStatement(String sql) {
+		if (regions.isEmpty()) {
+			return;
+		}
+		String table = getWrittenTable(sql);
+		if (table == ANY_TABLE) {
+			invalidateAll();
+		} else if (table != null) {
+			invalidateTable(table);
+		}
+	}
+
+	/**
+	 * Returns the table which is written by a statement.
+	 *
+	 * @param sql
+	 *            the executed statement
+	 * @return the table name, ANY_TABLE if the statement may write to any
+	 *         table or null if the statement does not write
+	 */
+	static String getWrittenTable(String sql) {
+		Matcher m = WRITE.matcher(sql);
+		if (m.find()) {
+			return m.group(2) == null ? ANY_TABLE : m.group(2);
+		} else if (UNKNOWN_WRITE.matcher(sql).find()) {
+			return ANY_TABLE;
+		}
+		return null;
+	}
+
+	/**
+	 * Invalidates the results which depend on a table.
+	 *
+	 * @param table
+	 *            the table name, optionally qualified by a schema
+	 */
+	public void invalidateTable(String table) {
+		if (regions.isEmpty()) {
+			return;
+		}
+		String name = normalize(table);
+		for (Region region : regions.values()) {
+			if (region.dependsOn(name)) {
+				region.clear();
+			}
+		}
+	}
+
+	/**
+	 * Invalidates all results.
+	 */
+	public void invalidateAll() {
+		for (Region region : regions.values()) {
+			region.clear();
+		}
+	}
+
+	/**
+	 * Returns the number of cached results.
+	 *
+	 * @return the number of cached results
+	 */
+	public int size() {
+		int size = 0;
+		for (Region region : regions.values()) {
+			size += region.size();
+		}
+		return size;
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of results which have been evicted because their
+	 * method exceeded maxEntries or because they expired.
+	 *
+	 * @return the number of evicted results
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * Returns the number of results which have been invalidated by writes.
+	 *
+	 * @return the number of invalidated results
+	 */
+	public long getInvalidationCount() {
+		return invalidations.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ResultCache[size=" + size() + ", hits=" + hits + ", misses=" + misses + ", evictions="
+				+ evictions + ", invalidations=" + invalidations + "]";
+	}
+
+	/**
+	 * Strips the quotes and the schema from a table name.
+	 */
+	static String normalize(String table) {
+		String name = table.replace("\"", "").replace("`", "").replace("[", "").replace("]", "");
+		return name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * The cached results of one method.
+	 */
+	private class Region {
+		final long ttl;
+		final String[] tables;
+		final LinkedHashMap<Key, CachedResult> entries;
+		volatile long generation;
+
+		Region(CacheResult cacheResult) {
+			this.ttl = cacheResult.ttl();
+			this.tables = new String[cacheResult.tables().length];
+			for (int i = 0; i < tables.length; i++) {
+				tables[i] = normalize(cacheResult.tables()[i]);
+			}
+			final int maxEntries = Math.max(1, cacheResult.maxEntries());
+			this.entries = new LinkedHashMap<Key, CachedResult>(16, 0.75f, true) {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Key, CachedResult> eldest) {
+					if (size() > maxEntries) {
+						evictions.incrementAndGet();
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+
+		boolean dependsOn(String table) {
+			if (tables.length == 0) {
+				return true;
+			}
+			for (String name : tables) {
+				if (name.equals(table)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		synchronized Object get(Key key) {
+			CachedResult entry = entries.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.expires > 0 && entry.expires < System.currentTimeMillis()) {
+				entries.remove(key);
+				evictions.incrementAndGet();
+				return null;
+			}
+			return entry.value;
+		}
+
+		synchronized void put(Key key, Object value, long readGeneration) {
+			if (readGeneration != generation) {
+				// invalidated while the result was read
+				return;
+			}
+			long expires = ttl > 0 ? (System.currentTimeMillis() + ttl) : 0;
+			entries.put(key, new CachedResult(value, expires));
+		}
+
+		synchronized void clear() {
+			generation++;
+			invalidations.addAndGet(entries.size());
+			entries.clear();
+		}
+
+		synchronized int size() {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * A cached result.
+	 */
+	private static class CachedResult {
+		final Object value;
+		final long expires;
+
+		CachedResult(Object value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+
+	/**
+	 * The bound parameters of a cached result.
+	 */
+	private static class Key {
+		final Object[] parameters;
+		final int hash;
+
+		Key(Object[] parameters) {
+			this.parameters = parameters;
+			this.hash = Arrays.deepHashCode(parameters);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && Arrays.deepEquals(parameters, ((Key) o).parameters);
+		}
+	}
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2026 iciql contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iciql;
+
+import java.lang.reflect.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.iciql.Iciql.DataTypeAdapter;
+import com.iciql.util.JdbcUtils;
+import com.iciql.util.Utils;
+
+/**
+ * ResultCursor reads the rows of a DAO query one at a time, either as model
+ * objects or as the value of the first column. The statement is returned to
+ * the statement cache of the Db when the cursor is closed.
+ *
+ * @param <T>
+ */
+final class ResultCursor<T> implements Cursor<T> {
+
+	private final Db db;
+
+	private final Object key;
+
+	private final String sql;
+
+	private final PreparedStatement statement;
+
+	private final ResultSet rs;
+
+	private final Class<T> type;
+
+	private final TableDefinition<T> def;
+
+	private final int[] columns;
+
+	private final DataTypeAdapter<?> adapter;
+
+	private boolean fetched;
+
+	private boolean hasNext;
+
+	private boolean failed;
+
+	private boolean closed;
+
+	/**
+	 * Executes a bound query and opens a cursor on the result.
+	 *
+	 * @param db
+	 * @param key
+	 *            the statement cache key
+	 * @param sql
+	 * @param statement
+	 *            the bound statement
+	 * @param type
+	 *            the row type
+	 * @param model
+	 *            true if the rows are read as model objects, false if the
+	 *            rows are read from the first column
+	 * @param adapter
+	 *            the type adapter of the first column, may be null
+	 * @return a cursor
+	 */
+	static <T> ResultCursor<T> open(Db db, Object key, String sql, PreparedStatement statement,
+			Class<T> type, boolean model, DataTypeAdapter<?> adapter) {
+		ResultSet rs;
+		try {
+			rs = statement.executeQuery();
+		} catch (SQLException e) {
+			JdbcUtils.closeSilently(statement);
+			throw new IciqlException(e);
+		}
+		try {
+			return new ResultCursor<T>(db, key, sql, statement, rs, type, model, adapter);
+		} catch (RuntimeException e) {
+			JdbcUtils.closeSilently(rs);
+			JdbcUtils.closeSilently(statement);
+			throw e;
+		}
+	}
+
+	private ResultCursor(Db db, Object key, String sql, PreparedStatement statement, ResultSet rs,
+			Class<T> type, boolean model, DataTypeAdapter<?> adapter) {
+		this.db = db;
+		this.key = key;
+		this.sql = sql;
+		this.statement = statement;
+		this.rs = rs;
+		this.type = type;
+		this.adapter = adapter;
+		if (model) {
+			String lowerSql = sql.toLowerCase();
+			boolean wildcardSelect = lowerSql.startsWith("select *")
+					|| lowerSql.startsWith("select distinct *");
+			this.def = db.define(type);
+			this.columns = def.mapColumns(wildcardSelect, rs);
+		} else {
+			this.def = null;
+			this.columns = null;
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (closed) {
+			return false;
+		}
+		if (!fetched) {
+			try {
+				hasNext = rs.next();
+			} catch (SQLException e) {
+				failed = true;
+				close();
+				throw new IciqlException(e);
+			}
+			fetched = true;
+			if (!hasNext) {
+				// release the statement as soon as the result is exhausted
+				close();
+			}
+		}
+		return hasNext;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		fetched = false;
+		try {
+			return read();
+		} catch (SQLException e) {
+			failed = true;
+			close();
+			throw new IciqlException(e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private T read() throws SQLException {
+		if (def != null) {
+			// query of an Iciql model
+			T item = Utils.newObject(type);
+			def.readRow(db.getDialect(), item, rs, columns);
+			return item;
+		}
+		Object o = rs.getObject(1);
+		if (adapter == null) {
+			// use internal Iciql type conversion
+			return (T) Utils.convert(o, type);
+		}
+		// use the type adapter to convert the JDBC object to a domain type
+		return (T) adapter.deserialize(o);
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return this;
+	}
+
+	/**
+	 * Reads the first row and closes the cursor.
+	 *
+	 * @return the first row or null
+	 */
+	T first() {
+		try {
+			return hasNext() ? next() : null;
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * Reads the remaining rows into a list and closes the cursor.
+	 *
+	 * @return the rows
+	 */
+	List<T> toList() {
+		List<T> list = Utils.newArrayList();
+		try {
+			while (hasNext()) {
+				list.add(next());
+			}
+		} finally {
+			close();
+		}
+		return list;
+	}
+
+	/**
+	 * Reads the remaining rows into an array and closes the cursor.
+	 *
+	 * @param componentType
+	 *            the component type of the array, may be primitive
+	 * @return the array of rows
+	 */
+	@SuppressWarnings("unchecked")
+	Object toArray(Class<?> componentType) {
+		List<T> list = toList();
+		if (!componentType.isPrimitive()) {
+			return list.toArray((T[]) Array.newInstance(componentType, list.size()));
+		}
+		Object array = Array.newInstance(componentType, list.size());
+		for (int i = 0; i < list.size(); i++) {
+			Array.set(array, i, list.get(i));
+		}
+		return array;
+	}
+
+	/**
+	 * Passes the remaining rows to a consumer and closes the cursor.
+	 *
+	 * @param consumer
+	 */
+	void each(RowConsumer<? super T> consumer) {
+		try {
+			while (hasNext()) {
+				consumer.accept(next());
+			}
+		} finally {
+			close();
+		}
+	}
+
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		JdbcUtils.closeSilently(rs);
+		if (failed) {
+			JdbcUtils.closeSilently(statement);
+		} else {
+			db.releaseStatement(key, sql, statement);
+		}
+	}
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2026 iciql contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iciql;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RetryPolicy retries transactions which failed because of a transient
+ * condition, e.g. a deadlock or a lock timeout, as classified by the dialect
+ * of the database. Transactions are retried with an exponential backoff and a
+ * random jitter, so that conflicting transactions do not retry in lockstep.
+ * <p>
+ * Retries are limited by a budget which is shared by all transactions of the
+ * policy. Every retry spends one token and every transaction which succeeds
+ * at the first attempt earns a fraction of a token, so that retries can not
+ * multiply the load of a database which is already overloaded. A Db uses a
+ * policy once it is set with Db.setRetryPolicy, Db instances may share a
+ * policy.
+ * </p>
+ */
+public class RetryPolicy {
+
+	private final Random random = new Random();
+
+	private int maxAttempts = 3;
+
+	private long initialBackoff = 20;
+
+	private long maxBackoff = 1000;
+
+	private double maxTokens = 10;
+
+	private double tokenRatio = 0.1;
+
+	private double tokens = maxTokens;
+
+	private final AtomicLong attempts = new AtomicLong();
+
+	private final AtomicLong retries = new AtomicLong();
+
+	private final AtomicLong recoveries = new AtomicLong();
+
+	private final AtomicLong exhaustions = new AtomicLong();
+
+	private final AtomicLong throttles = new AtomicLong();
+
+	/**
+	 * Sets the maximum number of attempts of a transaction. Default: 3.
+	 *
+	 * @param maxAttempts
+	 *            the maximum number of attempts, including the first attempt
+	 * @return this policy
+	 */
+	public RetryPolicy setMaxAttempts(int maxAttempts) {
+		this.maxAttempts = Math.max(1, maxAttempts);
+		return this;
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * Sets the backoff between attempts. The backoff before the nth retry is
+	 * a random time between 0 and initialBackoff * 2^(n-1), limited to
+	 * maxBackoff. Default: 20 and 1000 milliseconds.
+	 *
+	 * @param initialBackoff
+	 *            the maximum backoff before the first retry in milliseconds
+	 * @param maxBackoff
+	 *            the maximum backoff before any retry in milliseconds
+	 * @return this policy
+	 */
+	public RetryPolicy setBackoff(long initialBackoff, long maxBackoff) {
+		this.initialBackoff = Math.max(0, initialBackoff);
+		this.maxBackoff = Math.max(this.initialBackoff, maxBackoff);
+		return this;
+	}
+
+	/**
+	 * Sets the retry budget. Default: 10 tokens and 0.1 tokens per successful
+	 * transaction, i.e. once the budget is spent at most one retry per ten
+	 * successful transactions.
+	 *
+	 * @param maxTokens
+	 *            the maximum number of retries which may be spent in a burst
+	 * @param tokenRatio
+	 *            the tokens which are earned by a transaction which succeeds
+	 *            at the first attempt
+	 * @return this policy
+	 */
+	public synchronized RetryPolicy setBudget(double maxTokens, double tokenRatio) {
+		this.maxTokens = maxTokens;
+		this.tokenRatio = tokenRatio;
+		this.tokens = maxTokens;
+		return this;
+	}
+
+	/**
+	 * Returns true if a failed attempt of a transaction should be retried and
+	 * spends a token of the budget.
+	 *
+	 * @param db
+	 *            the database of the transaction
+	 * @param e
+	 *            the exception of the failed attempt
+	 * @param attempt
+	 *            the number of the failed attempt, starting at 1
+	 * @return true if the transaction should be retried
+	 */
+	boolean shouldRetry(Db db, IciqlException e, int attempt) {
+		if (!db.getDialect().isRetryable(e)) {
+			return false;
+		}
+		if (attempt >= maxAttempts) {
+			exhaustions.incrementAndGet();
+			return false;
+		}
+		synchronized (this) {
+			if (tokens < 1) {
+				throttles.incrementAndGet();
+				return false;
+			}
+			tokens -= 1;
+		}
+		retries.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Records an attempt of a transaction.
+	 */
+	void attempted() {
+		attempts.incrementAndGet();
+	}
+
+	/**
+	 * Records the success of a transaction.
+	 *
+	 * @param attempt
+	 *            the number of the successful attempt, starting at 1
+	 */
+	void succeeded(int attempt) {
+		if (attempt > 1) {
+			recoveries.incrementAndGet();
+			return;
+		}
+		synchronized (this) {
+			tokens = Math.min(maxTokens, tokens + tokenRatio);
+		}
+	}
+
+	/**
+	 * Returns the backoff before a retry.
+	 *
+	 * @param retry
+	 *            the number of the retry, starting at 1
+	 * @return the backoff in milliseconds
+	 */
+	long backoff(int retry) {
+		long ceiling = initialBackoff << Math.min(retry - 1, 30);
+		if (ceiling <= 0 || ceiling > maxBackoff) {
+			ceiling = maxBackoff;
+		}
+		synchronized (random) {
+			return (long) (random.nextDouble() * ceiling);
+		}
+	}
+
+	/**
+	 * Returns the number of attempts of all transactions, including retries.
+	 *
+	 * @return the number of attempts
+	 */
+	public long getAttemptCount() {
+		return attempts.get();
+	}
+
+	public long getRetryCount() {
+		return retries.get();
+	}
+
+	/**
+	 * Returns the number of transactions which succeeded after a retry.
+	 *
+	 * @return the number of recovered transactions
+	 */
+	public long getRecoveredCount() {
+		return recoveries.get();
+	}
+
+	/**
+	 * Returns the number of transactions which failed after maxAttempts.
+	 *
+	 * @return the number of exhausted transactions
+	 */
+	public long getExhaustedCount() {
+		return exhaustions.get();
+	}
+
+	/**
+	 * Returns the number of retryable failures which were not retried because
+	 * the retry budget was spent.
+	 *
+	 * @return the number of throttled retries
+	 */
+	public long getThrottledCount() {
+		return throttles.get();
+	}
+
+	@Override
+	public String toString() {
+		return "RetryPolicy[attempts=" + attempts + ", retries=" + retries + ", recovered=" + recoveries
+				+ ", exhausted=" + exhaustions + ", throttled=" + throttles + "]";
+	}
+}
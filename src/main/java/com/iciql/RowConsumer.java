@@ -0,0 +1,39 @@
+/*
+ * Copyright 2026 iciql contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iciql;
+
+/**
+ * A RowConsumer receives the rows of an @SqlQuery DAO method, one row at a
+ * time, as they are read from the result set.
+ *
+ * <pre>
+ * &#064;SqlQuery(&quot;select * from Product&quot;)
+ * void forEachProduct(RowConsumer&lt;Product&gt; consumer);
+ * </pre>
+ *
+ * @param <T>
+ *            the row type
+ */
+public interface RowConsumer<T> {
+
+	/**
+	 * Accepts a row.
+	 *
+	 * @param row
+	 */
+	void accept(T row);
+}
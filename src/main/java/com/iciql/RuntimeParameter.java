@@ -46,4 +46,13 @@ class RuntimeParameter<A> implements Token {
 			query.appendSQL(stat, x, PARAMETER);
 		}
 	}
+
+	<T> boolean appendKey(SQLStatement.Key key, Query<T> query) {
+		key.add(RuntimeParameter.class);
+		if (!query.appendKey(key, null, x)) {
+			return false;
+		}
+		key.add(compareType);
+		return !compareType.hasRightExpression() || query.appendKey(key, x, PARAMETER);
+	}
 }
@@ -54,4 +54,23 @@ public class RuntimeToken implements Token {
 			stat.addParameter(arg);
 		}
 	}
+
+	/**
+	 * Append the structure of this token to a statement key.
+	 *
+	 * @param key
+	 *            the statement key
+	 * @return false if the token count of the fragment does not match the
+	 *         args, which is reported when the token is rendered
+	 */
+	boolean appendKey(SQLStatement.Key key) {
+		if (StringUtils.count('?', fragment) != args.length) {
+			return false;
+		}
+		key.add(RuntimeToken.class).add(fragment);
+		for (Object arg : args) {
+			key.addParameter(arg);
+		}
+		return true;
+	}
 }
@@ -18,6 +18,8 @@
 
 package com.iciql;
 
+import java.util.List;
+
 import com.iciql.Iciql.DataTypeAdapter;
 import com.iciql.TableDefinition.IndexDefinition;
 
@@ -181,6 +183,32 @@ public interface SQLDialect {
 	<T> void prepareMerge(SQLStatement stat, String schemaName, String tableName, TableDefinition<T> def,
 			Object obj);
 
+	/**
+	 * Prepare a single UPDATE statement which sets the non-primary key columns
+	 * of several rows, identified by their primary keys. The statement must
+	 * not bind more than (columns * (keys + 1) + keys) parameters per row.
+	 *
+	 * @param stat
+	 *            return the SQL statement
+	 * @param schemaName
+	 *            the schema name
+	 * @param tableName
+	 *            the table name
+	 * @param def
+	 *            the table definition
+	 * @param objs
+	 *            the rows
+	 */
+	<T> void prepareUpdateAll(SQLStatement stat, String schemaName, String tableName,
+			TableDefinition<T> def, List<?> objs);
+
+	/**
+	 * Returns the maximum number of parameters of a prepared statement.
+	 *
+	 * @return the maximum number of parameters
+	 */
+	int getMaxParameters();
+
 	/**
 	 * Append "LIMIT limit OFFSET offset" to the SQL statement.
 	 *
@@ -193,6 +221,45 @@ public interface SQLDialect {
 	 */
 	void appendLimitOffset(SQLStatement stat, long limit, long offset);
 
+	/**
+	 * Append an IN or NOT IN condition which binds all values as one array
+	 * parameter instead of one parameter per value.
+	 *
+	 * @param stat
+	 *            the statement
+	 * @param compareType
+	 *            IN or NOT IN
+	 * @param dataType
+	 *            the SQL type of the compared column
+	 * @param values
+	 *            the serialized values
+	 * @return true if the condition was appended, false if the dialect can not
+	 *         bind arrays
+	 */
+	boolean prepareInArray(SQLStatement stat, CompareType compareType, String dataType, Object[] values);
+
+	/**
+	 * Returns the execution plan of the statement as reported by the
+	 * database.
+	 *
+	 * @param stat
+	 *            the statement to explain
+	 * @return the execution plan as text, or null if the dialect can not
+	 *         explain the statement
+	 */
+	String explain(SQLStatement stat);
+
+	/**
+	 * Returns true if a statement failed because of a transient condition,
+	 * e.g. a deadlock or a lock timeout, so that its transaction may succeed
+	 * if it is retried.
+	 *
+	 * @param e
+	 *            the exception of the statement
+	 * @return true if the transaction may be retried
+	 */
+	boolean isRetryable(IciqlException e);
+
 	/**
 	 * Returns the preferred DATETIME class for the database.
 	 * <p>
@@ -23,6 +23,7 @@ import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -437,6 +438,79 @@ public class SQLDialectDefault implements SQLDialect {
 		stat.setSQL(buff.toString());
 	}
 
+	/**
+	 * Updates the rows with one searched CASE expression per column:
+	 * <p>
+	 * UPDATE table SET col = CASE WHEN pk = ? THEN ? ... ELSE col END, ...
+	 * WHERE pk IN(?, ...)
+	 */
+	@Override
+	public <T> void prepareUpdateAll(SQLStatement stat, String schemaName, String tableName,
+			TableDefinition<T> def, List<?> objs) {
+		StatementBuilder buff = new StatementBuilder("UPDATE ");
+		buff.append(prepareTableName(schemaName, tableName)).append(" SET ");
+		buff.resetCount();
+		for (FieldDefinition field : def.fields) {
+			if (field.isPrimaryKey) {
+				continue;
+			}
+			String column = prepareColumnName(field.columnName);
+			buff.appendExceptFirst(", ");
+			buff.append(column).append(" = CASE");
+			for (Object obj : objs) {
+				buff.append(" WHEN ");
+				appendPrimaryKey(stat, buff, def, obj);
+				buff.append(" THEN ?");
+				stat.addParameter(def.getUpdateParameter(this, obj, field));
+			}
+			// the ELSE branch determines the type of the THEN parameters
+			buff.append(" ELSE ").append(column).append(" END");
+		}
+		buff.append(" WHERE ");
+		buff.resetCount();
+		if (def.primaryKeyColumnNames.size() == 1) {
+			FieldDefinition key = null;
+			for (FieldDefinition field : def.fields) {
+				if (field.isPrimaryKey) {
+					key = field;
+					break;
+				}
+			}
+			buff.append(prepareColumnName(key.columnName)).append(" IN(");
+			for (Object obj : objs) {
+				buff.appendExceptFirst(", ");
+				buff.append('?');
+				stat.addParameter(serialize(def.getValue(obj, key), key.typeAdapter));
+			}
+			buff.append(')');
+		} else {
+			for (Object obj : objs) {
+				buff.appendExceptFirst(" OR ");
+				buff.append('(');
+				appendPrimaryKey(stat, buff, def, obj);
+				buff.append(')');
+			}
+		}
+		stat.setSQL(buff.toString());
+	}
+
+	private <T> void appendPrimaryKey(SQLStatement stat, StatementBuilder buff, TableDefinition<T> def,
+			Object obj) {
+		String and = "";
+		for (FieldDefinition field : def.fields) {
+			if (field.isPrimaryKey) {
+				buff.append(and).append(prepareColumnName(field.columnName)).append(" = ?");
+				stat.addParameter(serialize(def.getValue(obj, field), field.typeAdapter));
+				and = " AND ";
+			}
+		}
+	}
+
+	@Override
+	public int getMaxParameters() {
+		return Short.MAX_VALUE;
+	}
+
 	@Override
 	public void appendLimitOffset(SQLStatement stat, long limit, long offset) {
 		if (limit > 0) {
@@ -447,6 +521,40 @@ public class SQLDialectDefault implements SQLDialect {
 		}
 	}
 
+	@Override
+	public boolean prepareInArray(SQLStatement stat, CompareType compareType, String dataType,
+			Object[] values) {
+		return false;
+	}
+
+	@Override
+	public String explain(SQLStatement stat) {
+		return stat.prefix("EXPLAIN ").executeText();
+	}
+
+	@Override
+	public boolean isRetryable(IciqlException e) {
+		return e.getIciqlCode() == IciqlException.CODE_DEADLOCK
+				|| e.getIciqlCode() == IciqlException.CODE_LOCK_TIMEOUT;
+	}
+
+	/**
+	 * Returns the vendor error code of the SQLException which caused an
+	 * exception.
+	 *
+	 * @param e
+	 *            the exception
+	 * @return the vendor error code or 0
+	 */
+	protected int getErrorCode(IciqlException e) {
+		for (Throwable t = e.getCause(); t != null; t = t.getCause()) {
+			if (t instanceof SQLException) {
+				return ((SQLException) t).getErrorCode();
+			}
+		}
+		return 0;
+	}
+
 	@Override
 	public void registerAdapter(DataTypeAdapter<?> typeAdapter) {
 		typeAdapters.put((Class<? extends DataTypeAdapter<?>>) typeAdapter.getClass(), typeAdapter);
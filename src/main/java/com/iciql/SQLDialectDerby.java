@@ -68,4 +68,25 @@ public class SQLDialectDerby extends SQLDialectDefault {
 		stat.setSQL(buff.toString());
 		return;
 	}
+
+	/**
+	 * Derby has no EXPLAIN statement. The runtime statistics of a query are
+	 * collected by executing it once more.
+	 */
+	@Override
+	public String explain(SQLStatement stat) {
+		if (!stat.getSQL().trim().toUpperCase().startsWith("SELECT")) {
+			return null;
+		}
+		Db db = stat.getDb();
+		db.executeUpdate("CALL SYSCS_UTIL.SYSCS_SET_RUNTIMESTATISTICS(1)");
+		try {
+			stat.execute();
+			SQLStatement statistics = new SQLStatement(db);
+			statistics.setSQL("VALUES SYSCS_UTIL.SYSCS_GET_RUNTIMESTATISTICS()");
+			return statistics.executeText();
+		} finally {
+			db.executeUpdate("CALL SYSCS_UTIL.SYSCS_SET_RUNTIMESTATISTICS(0)");
+		}
+	}
 }
\ No newline at end of file
@@ -133,4 +133,17 @@ public class SQLDialectH2 extends SQLDialectDefault {
 		buff.append(')');
 		stat.setSQL(buff.toString());
 	}
+
+	/**
+	 * H2 binds an Object[] parameter as a table function.
+	 */
+	@Override
+	public boolean prepareInArray(SQLStatement stat, CompareType compareType, String dataType,
+			Object[] values) {
+		stat.appendSQL(" ");
+		stat.appendSQL(compareType.getString());
+		stat.appendSQL("(SELECT X FROM TABLE(X " + dataType + "=?))");
+		stat.addParameter(values);
+		return true;
+	}
 }
\ No newline at end of file
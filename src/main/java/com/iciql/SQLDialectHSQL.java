@@ -147,4 +147,19 @@ public class SQLDialectHSQL extends SQLDialectDefault {
 		buff.append(')');
 		stat.setSQL(buff.toString());
 	}
+
+	@Override
+	public boolean prepareInArray(SQLStatement stat, CompareType compareType, String dataType,
+			Object[] values) {
+		stat.appendSQL(" ");
+		stat.appendSQL(compareType.getString());
+		stat.appendSQL("(UNNEST(?))");
+		stat.addParameter(stat.createArray(dataType, values));
+		return true;
+	}
+
+	@Override
+	public String explain(SQLStatement stat) {
+		return stat.prefix("EXPLAIN PLAN FOR ").executeText();
+	}
 }
\ No newline at end of file
@@ -50,4 +50,39 @@ public class SQLDialectMSSQL extends SQLDialectDefault {
       }
     }
   }
+
+  /**
+   * SHOWPLAN must be the only statement of a batch, so statements can not be
+   * explained on a shared connection.
+   *
+   * @param stat Statement
+   * @return null
+   */
+  @Override
+  public String explain(SQLStatement stat) {
+    return null;
+  }
+
+  /**
+   * SQL Server reports deadlock victims (1205) and lock request timeouts
+   * (1222) by error code.
+   *
+   * @param e Exception
+   * @return true if the transaction may be retried
+   */
+  @Override
+  public boolean isRetryable(IciqlException e) {
+    int errorCode = getErrorCode(e);
+    return super.isRetryable(e) || errorCode == 1205 || errorCode == 1222;
+  }
+
+  /**
+   * SQL Server accepts at most 2100 parameters per request.
+   *
+   * @return 2100
+   */
+  @Override
+  public int getMaxParameters() {
+    return 2100;
+  }
 }
@@ -24,6 +24,16 @@ import com.iciql.util.StatementBuilder;
  */
 public class SQLDialectMySQL extends SQLDialectDefault {
 
+	/**
+	 * MySQL reports deadlocks (1213) and lock wait timeouts (1205) with
+	 * different SQL states depending on the driver version.
+	 */
+	@Override
+	public boolean isRetryable(IciqlException e) {
+		int errorCode = getErrorCode(e);
+		return super.isRetryable(e) || errorCode == 1205 || errorCode == 1213;
+	}
+
 	@Override
 	public String convertSqlType(String sqlType) {
 		if (sqlType.equals("CLOB")) {
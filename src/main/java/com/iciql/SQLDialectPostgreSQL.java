@@ -16,6 +16,9 @@
 
 package com.iciql;
 
+import java.util.List;
+
+import com.iciql.TableDefinition.FieldDefinition;
 import com.iciql.TableDefinition.IndexDefinition;
 import com.iciql.util.StatementBuilder;
 
@@ -101,4 +104,74 @@ public class SQLDialectPostgreSQL extends SQLDialectDefault {
 		stat.setSQL(buff.toString().trim());
 	}
 
+	@Override
+	public boolean prepareInArray(SQLStatement stat, CompareType compareType, String dataType,
+			Object[] values) {
+		if (compareType == CompareType.NOT_IN) {
+			stat.appendSQL(" <> ALL(?)");
+		} else {
+			stat.appendSQL(" = ANY(?)");
+		}
+		String arrayType = convertSqlType(dataType).toLowerCase();
+		if ("double precision".equals(arrayType)) {
+			arrayType = "float8";
+		}
+		stat.addParameter(stat.createArray(arrayType, values));
+		return true;
+	}
+
+	/**
+	 * Updates the rows by joining the table with a VALUES list:
+	 * <p>
+	 * UPDATE table AS T SET col = V.col, ... FROM (VALUES (CAST(? AS type),
+	 * ...), ...) AS V(pk, col, ...) WHERE T.pk = V.pk
+	 */
+	@Override
+	public <T> void prepareUpdateAll(SQLStatement stat, String schemaName, String tableName,
+			TableDefinition<T> def, List<?> objs) {
+		StatementBuilder buff = new StatementBuilder("UPDATE ");
+		buff.append(prepareTableName(schemaName, tableName)).append(" AS T SET ");
+		buff.resetCount();
+		for (FieldDefinition field : def.fields) {
+			if (!field.isPrimaryKey) {
+				String column = prepareColumnName(field.columnName);
+				buff.appendExceptFirst(", ");
+				buff.append(column).append(" = V.").append(column);
+			}
+		}
+		buff.append(" FROM (VALUES ");
+		buff.resetCount();
+		for (Object obj : objs) {
+			buff.appendExceptFirst(", ");
+			buff.append('(');
+			String comma = "";
+			for (FieldDefinition field : def.fields) {
+				// parameters of a VALUES list are untyped
+				buff.append(comma).append("CAST(? AS ").append(convertSqlType(field.dataType)).append(')');
+				if (field.isPrimaryKey) {
+					stat.addParameter(serialize(def.getValue(obj, field), field.typeAdapter));
+				} else {
+					stat.addParameter(def.getUpdateParameter(this, obj, field));
+				}
+				comma = ", ";
+			}
+			buff.append(')');
+		}
+		buff.append(") AS V(");
+		buff.resetCount();
+		for (FieldDefinition field : def.fields) {
+			buff.appendExceptFirst(", ");
+			buff.append(prepareColumnName(field.columnName));
+		}
+		buff.append(") WHERE ");
+		buff.resetCount();
+		for (FieldDefinition field : def.fields) {
+			if (field.isPrimaryKey) {
+				String column = prepareColumnName(field.columnName);
+				buff.appendExceptFirst(" AND ");
+				buff.append("T.").append(column).append(" = V.").append(column);
+			}
+		}
+		stat.setSQL(buff.toString());
+	}
 }
\ No newline at end of file
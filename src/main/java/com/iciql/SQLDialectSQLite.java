@@ -135,4 +135,14 @@ public class SQLDialectSQLite extends SQLDialectDefault {
 		stat.setSQL(buff.toString());
 	}
 
+	@Override
+	public String explain(SQLStatement stat) {
+		return stat.prefix("EXPLAIN QUERY PLAN ").executeText();
+	}
+
+	@Override
+	public int getMaxParameters() {
+		// SQLITE_MAX_VARIABLE_NUMBER
+		return 999;
+	}
 }
\ No newline at end of file
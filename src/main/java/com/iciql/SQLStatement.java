@@ -17,36 +17,105 @@
 
 package com.iciql;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.iciql.util.IciqlLogger;
 import com.iciql.util.JdbcUtils;
 
 /**
  * This class represents a parameterized SQL statement.
+ * <p>
+ * The rendered SQL of a query is cached by the structural key of the query,
+ * i.e. its tables, columns and operators without the parameter values.
+ * Repeated executions of a query shape only collect their parameters and
+ * re-use the previously rendered and validated SQL string. The shapes are
+ * evicted in least recently used order.
+ * <p>
+ * Queries and updates which take longer than the slow statement threshold of
+ * the database are explained by the dialect and the plan is logged to the
+ * iciql listeners, at most once per minute for each statement.
  */
 
 public class SQLStatement {
+
+	private static final int MAX_SHAPES = 1024;
+
+	private static final Map<Key, Shape> SHAPES = Collections.synchronizedMap(new LinkedHashMap<Key, Shape>(16,
+			0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Shape> eldest) {
+			return size() > MAX_SHAPES;
+		}
+	});
+
+	private static final long EXPLAIN_INTERVAL = 60 * 1000L;
+
+	private static final ConcurrentHashMap<String, Long> EXPLAINED = new ConcurrentHashMap<String, Long>();
+
 	private Db db;
 	private StringBuilder buff = new StringBuilder();
+	private Shape shape;
 	private String sql;
 	private ArrayList<Object> params = new ArrayList<Object>();
+	private TableDefinition<?> table;
+	private Object entity;
 
 	SQLStatement(Db db) {
 		this.db = db;
 	}
 
+	/**
+	 * Marks this statement as a write of one model object, which invalidates
+	 * only the cached object of its primary key rather than all cached
+	 * objects of the table.
+	 *
+	 * @param obj
+	 *            the written model object
+	 * @return this statement
+	 */
+	SQLStatement forEntity(Object obj) {
+		this.entity = obj;
+		return this;
+	}
+
+	/**
+	 * Marks this statement as a write to the table of a model, which bumps
+	 * the write versions of the table without parsing the SQL.
+	 *
+	 * @param def
+	 *            the written table
+	 * @return this statement
+	 */
+	SQLStatement forTable(TableDefinition<?> def) {
+		this.table = def;
+		return this;
+	}
+
 	public void setSQL(String sql) {
 		this.sql = sql;
+		shape = null;
 		buff = new StringBuilder(sql);
 	}
 
 	public SQLStatement appendSQL(String s) {
 		buff.append(s);
 		sql = null;
+		shape = null;
 		return this;
 	}
 
@@ -71,6 +140,65 @@ public class SQLStatement {
 		return sql;
 	}
 
+	/**
+	 * Returns the bound parameters of the statement.
+	 *
+	 * @return the parameters
+	 */
+	Object[] getParameters() {
+		return params.toArray();
+	}
+
+	/**
+	 * Returns the number of bound parameters of the statement.
+	 *
+	 * @return the number of parameters
+	 */
+	int getParameterCount() {
+		return params.size();
+	}
+
+	/**
+	 * Returns the statement of a previously rendered query shape with the
+	 * parameters of the key.
+	 *
+	 * @param db
+	 * @param key
+	 *            the structural key of the query, may be null
+	 * @return the statement or null, if the shape has not been rendered yet
+	 */
+	static SQLStatement forKey(Db db, Key key) {
+		if (key == null) {
+			return null;
+		}
+		Shape shape = SHAPES.get(key);
+		if (shape == null) {
+			return null;
+		}
+		SQLStatement stat = new SQLStatement(db);
+		stat.sql = shape.sql;
+		stat.shape = shape;
+		for (Object o : key.params) {
+			stat.addParameter(o);
+		}
+		return stat;
+	}
+
+	/**
+	 * Caches the rendered SQL of this statement as the shape of a query key.
+	 *
+	 * @param key
+	 *            the structural key of the query, may be null
+	 */
+	void cacheShape(Key key) {
+		if (key == null || key.params.size() != params.size()) {
+			// not cacheable
+			return;
+		}
+		shape = new Shape(getSQL());
+		SHAPES.put(key.freeze(), shape);
+	}
+
 	/**
 	 * toSQL creates a static sql statement with the referenced parameters
 	 * encoded in the statement.
@@ -78,9 +206,7 @@ public class SQLStatement {
 	 * @return a complete sql statement
 	 */
 	String toSQL() {
-		if (sql == null) {
-			sql = buff.toString();
-		}
+		String sql = getSQL();
 		if (params.size() == 0) {
 			return sql;
 		}
@@ -116,6 +242,23 @@ public class SQLStatement {
 		return this;
 	}
 	
+	/**
+	 * Creates a JDBC array parameter on the connection of this statement.
+	 *
+	 * @param typeName
+	 *            the SQL type of the elements
+	 * @param elements
+	 *            the elements
+	 * @return the array
+	 */
+	java.sql.Array createArray(String typeName, Object[] elements) {
+		try {
+			return db.getConnection().createArrayOf(typeName, elements);
+		} catch (SQLException e) {
+			throw new IciqlException(e, "failed to create {0} array", typeName);
+		}
+	}
+
 	void execute() {
 		PreparedStatement ps = null;
 		try {
@@ -130,7 +273,10 @@ public class SQLStatement {
 
 	ResultSet executeQuery() {
 		try {
-			return prepare(false).executeQuery();
+			long start = System.nanoTime();
+			ResultSet rs = prepare(false).executeQuery();
+			checkSlow(start);
+			return rs;
 		} catch (SQLException e) {
 			throw IciqlException.fromSQL(getSQL(), e);
 		}
@@ -139,8 +285,12 @@ public class SQLStatement {
 	int executeUpdate() {
 		PreparedStatement ps = null;
 		try {
+			long start = System.nanoTime();
 			ps = prepare(false);
-			return ps.executeUpdate();
+			int count = ps.executeUpdate();
+			checkSlow(start);
+			db.invalidateResults(getSQL(), table, entity);
+			return count;
 		} catch (SQLException e) {
 			throw IciqlException.fromSQL(getSQL(), e);
 		} finally {
@@ -153,6 +303,7 @@ public class SQLStatement {
 		try {
 			ps = prepare(true);
 			ps.executeUpdate();
+			db.invalidateResults(getSQL(), table, entity);
 			long identity = -1;
 			ResultSet rs = ps.getGeneratedKeys();
 			if (rs != null && rs.next()) {
@@ -167,6 +318,163 @@ public class SQLStatement {
 		}
 	}
 
+	/**
+	 * Returns a statement which prefixes the SQL of this statement, e.g. with
+	 * EXPLAIN, and binds the same parameters.
+	 *
+	 * @param prefix
+	 *            the prefix
+	 * @return the prefixed statement
+	 */
+	SQLStatement prefix(String prefix) {
+		SQLStatement stat = new SQLStatement(db);
+		stat.setSQL(prefix + getSQL());
+		stat.params.addAll(params);
+		return stat;
+	}
+
+	/**
+	 * Returns a copy of this statement which executes on another database,
+	 * e.g. on a connection which is borrowed for an asynchronous call. Array
+	 * parameters belong to the connection which created them and are
+	 * re-created on the connection of the other database.
+	 *
+	 * @param db
+	 *            the database
+	 * @return the copied statement
+	 */
+	SQLStatement copy(Db db) {
+		SQLStatement stat = new SQLStatement(db);
+		stat.sql = getSQL();
+		stat.shape = shape;
+		stat.table = table;
+		stat.entity = entity;
+		stat.buff.append(stat.sql);
+		for (Object o : params) {
+			if (o instanceof java.sql.Array) {
+				java.sql.Array array = (java.sql.Array) o;
+				try {
+					o = stat.createArray(array.getBaseTypeName(), (Object[]) array.getArray());
+				} catch (SQLException e) {
+					throw IciqlException.fromSQL(stat.sql, e);
+				}
+			}
+			stat.params.add(o);
+		}
+		return stat;
+	}
+
+	/**
+	 * Executes this statement as a query and returns the result as text, one
+	 * line per row with the columns separated by tabs.
+	 *
+	 * @return the result as text
+	 */
+	String executeText() {
+		ResultSet rs = null;
+		try {
+			rs = prepare(false).executeQuery();
+			int columns = rs.getMetaData().getColumnCount();
+			StringBuilder sb = new StringBuilder();
+			while (rs.next()) {
+				if (sb.length() > 0) {
+					sb.append('\n');
+				}
+				for (int i = 1; i <= columns; i++) {
+					if (i > 1) {
+						sb.append('\t');
+					}
+					sb.append(rs.getString(i));
+				}
+			}
+			return sb.toString();
+		} catch (SQLException e) {
+			throw IciqlException.fromSQL(getSQL(), e);
+		} finally {
+			JdbcUtils.closeSilently(rs, true);
+		}
+	}
+
+	private void checkSlow(long start) {
+		long threshold = db.getSlowStatementThreshold();
+		if (threshold < 0) {
+			return;
+		}
+		long elapsed = (System.nanoTime() - start) / 1000000L;
+		if (elapsed < threshold) {
+			return;
+		}
+		String sql = getSQL();
+		long now = System.currentTimeMillis();
+		Long last = EXPLAINED.get(sql);
+		if (last == null) {
+			if (EXPLAINED.size() >= MAX_SHAPES) {
+				EXPLAINED.clear();
+			}
+			if (EXPLAINED.putIfAbsent(sql, now) != null) {
+				return;
+			}
+		} else if (now - last < EXPLAIN_INTERVAL || !EXPLAINED.replace(sql, last, now)) {
+			// explained recently or by another thread
+			return;
+		}
+		String plan = explainInSavepoint();
+		if (plan != null) {
+			IciqlLogger.explain(MessageFormat.format("{0} ms: {1}\n{2}", elapsed, sql, plan));
+		}
+	}
+
+	/**
+	 * Explains this statement. Within an open transaction the statement is
+	 * explained in a savepoint, because a failed statement aborts the whole
+	 * transaction on some databases, e.g. on PostgreSQL. The statement is not
+	 * explained within a transaction if the dialect does not support
+	 * savepoints.
+	 *
+	 * @return the plan, the error of the explain or null
+	 */
+	private String explainInSavepoint() {
+		Connection conn = db.getConnection();
+		Savepoint savepoint = null;
+		try {
+			if (!conn.getAutoCommit()) {
+				if (!db.getDialect().supportsSavePoints()) {
+					return null;
+				}
+				savepoint = conn.setSavepoint();
+			}
+		} catch (SQLException e) {
+			return null;
+		}
+		String plan;
+		try {
+			plan = db.getDialect().explain(this);
+		} catch (RuntimeException e) {
+			// explaining is best effort, the statement itself succeeded
+			plan = e.getMessage();
+			if (savepoint != null) {
+				try {
+					conn.rollback(savepoint);
+				} catch (SQLException s) {
+					// the transaction fails on its next statement
+				}
+			}
+			return plan;
+		}
+		if (savepoint != null) {
+			try {
+				conn.releaseSavepoint(savepoint);
+			} catch (SQLException e) {
+				// released with the transaction
+			}
+		}
+		return plan;
+	}
+
+	Db getDb() {
+		return db;
+	}
+
 	private void setValue(PreparedStatement prep, int parameterIndex, Object x) {
 		try {
 			prep.setObject(parameterIndex, x);
@@ -179,12 +487,131 @@ public class SQLStatement {
 	}
 
 	PreparedStatement prepare(boolean returnGeneratedKeys) {
-		PreparedStatement prep = db.prepare(getSQL(), returnGeneratedKeys);
+		String sql = getSQL();
+		boolean checkUnmappedField = shape == null || !shape.checked;
+		PreparedStatement prep = db.prepare(sql, returnGeneratedKeys, checkUnmappedField);
+		if (shape != null) {
+			// the shape has been validated, skip the check on re-use
+			shape.checked = true;
+		}
+		bind(prep);
+		return prep;
+	}
+
+	private void bind(PreparedStatement prep) {
 		for (int i = 0; i < params.size(); i++) {
 			Object o = params.get(i);
 			setValue(prep, i + 1, o);
 		}
-		return prep;
+	}
+
+	/**
+	 * Executes statements of equal SQL as one JDBC batch on the database of
+	 * the first statement.
+	 *
+	 * @param batch
+	 *            the statements, which must have equal SQL
+	 * @return the update counts
+	 */
+	static int[] executeBatch(List<SQLStatement> batch) {
+		SQLStatement first = batch.get(0);
+		PreparedStatement ps = null;
+		try {
+			long start = System.nanoTime();
+			ps = first.prepare(false);
+			ps.addBatch();
+			for (int i = 1; i < batch.size(); i++) {
+				batch.get(i).bind(ps);
+				ps.addBatch();
+			}
+			int[] counts = ps.executeBatch();
+			first.checkSlow(start);
+			for (SQLStatement stat : batch) {
+				first.db.invalidateResults(stat.getSQL(), stat.table, stat.entity);
+			}
+			return counts;
+		} catch (SQLException e) {
+			throw IciqlException.fromSQL(first.getSQL(), e);
+		} finally {
+			JdbcUtils.closeSilently(ps);
+		}
+	}
+
+	/**
+	 * The structural key of a query: its tables, columns, operators and SQL
+	 * fragments in rendering order, but not its parameter values. Queries of
+	 * equal keys render equal SQL. The key collects the parameters of the
+	 * query, which are bound to the cached SQL.
+	 */
+	static class Key {
+		private final List<Object> parts;
+		private final List<Object> params;
+		private int hash;
+
+		Key(Object... header) {
+			parts = new ArrayList<Object>();
+			params = new ArrayList<Object>();
+			Collections.addAll(parts, header);
+		}
+
+		private Key(List<Object> parts) {
+			this.parts = parts;
+			this.params = Collections.emptyList();
+		}
+
+		Key add(Object part) {
+			parts.add(part);
+			return this;
+		}
+
+		Key addParameter(Object o) {
+			params.add(o);
+			return this;
+		}
+
+		int getParameterCount() {
+			return params.size();
+		}
+
+		/**
+		 * Returns a copy of this key without the parameter values, which is
+		 * kept by the shape cache.
+		 */
+		Key freeze() {
+			return new Key(parts);
+		}
+
+		@Override
+		public int hashCode() {
+			if (hash == 0) {
+				hash = parts.hashCode();
+			}
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return hashCode() == other.hashCode() && parts.equals(other.parts);
+		}
+	}
+
+	/**
+	 * The rendered SQL of a statement shape.
+	 */
+	private static class Shape {
+		final String sql;
+		volatile boolean checked;
+
+		Shape(String sql) {
+			this.sql = sql;
+		}
 	}
 
 }
@@ -18,7 +18,9 @@
 package com.iciql;
 
 import java.util.ArrayList;
+import java.util.List;
 
+import com.iciql.TableDefinition.AliasValues;
 import com.iciql.util.Utils;
 
 /**
@@ -38,6 +40,7 @@ class SelectTable<T> {
 	private boolean outerJoin;
 	private ArrayList<Token> joinConditions = Utils.newArrayList();
 	private T alias;
+	private AliasValues aliasValues;
 
 	@SuppressWarnings("unchecked")
 	SelectTable(Db db, Query<T> query, T alias, boolean outerJoin) {
@@ -46,7 +49,7 @@ class SelectTable<T> {
 		this.outerJoin = outerJoin;
 		aliasDef = (TableDefinition<T>) db.getTableDefinition(alias.getClass());
 		clazz = Utils.getClass(alias);
-		as = "T" + Utils.nextAsCount();
+		as = query.nextAs();
 	}
 
 	T getAlias() {
@@ -101,6 +104,25 @@ class SelectTable<T> {
 		joinConditions.add(condition);
 	}
 
+	List<Token> getJoinConditions() {
+		return joinConditions;
+	}
+
+	void setAliasValues(AliasValues aliasValues) {
+		this.aliasValues = aliasValues;
+	}
+
+	/**
+	 * Releases the field values of the alias, so that another query may
+	 * re-use them.
+	 */
+	void releaseAlias() {
+		if (aliasValues != null) {
+			aliasValues.release();
+			aliasValues = null;
+		}
+	}
+
 	T getCurrent() {
 		return current;
 	}
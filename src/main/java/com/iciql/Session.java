@@ -0,0 +1,506 @@
+/*
+ * Copyright 2026 iciql contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iciql;
+
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.iciql.TableDefinition.FieldDefinition;
+import com.iciql.util.Utils;
+
+/**
+ * Session is a unit of work over a Db. It keeps one instance of a model object
+ * per primary key, tracks the modifications of the objects it manages and
+ * writes the pending inserts, updates and deletes when it is flushed.
+ * Repeated modifications of an object are coalesced into one statement.
+ * <p>
+ * Flush groups the pending writes by table and executes statements of equal
+ * SQL as JDBC batches. Inserts and updates are written to referenced tables
+ * first and deletes are written to referencing tables first, following the
+ * foreign key constraints of the models.
+ * </p>
+ * <p>
+ * A session is not thread-safe.
+ * </p>
+ */
+public class Session {
+
+	/**
+	 * The life cycle state of a managed object.
+	 */
+	private enum State {
+		NEW, MANAGED, REMOVED;
+	}
+
+	private final Db db;
+
+	private final Map<Object, Entry> entries = new IdentityHashMap<Object, Entry>();
+
+	private final Map<Class<?>, Map<Object, Entry>> identityMap = new HashMap<Class<?>, Map<Object, Entry>>();
+
+	private List<Entry> order = Utils.newArrayList();
+
+	Session(Db db) {
+		this.db = db;
+	}
+
+	public Db getDb() {
+		return db;
+	}
+
+	/**
+	 * Returns the managed object of a primary key. Objects which are not
+	 * managed yet are selected and managed by the session.
+	 *
+	 * @param clazz
+	 *            the model class
+	 * @param key
+	 *            the value of the primary key field or the list of the values
+	 *            of a composite primary key
+	 * @return the model object or null if it does not exist or has been
+	 *         deleted in this session
+	 */
+	public <T> T get(Class<T> clazz, Object key) {
+		TableDefinition<T> def = db.define(clazz).createIfRequired(db);
+		Entry entry = lookup(def, key);
+		if (entry != null) {
+			return entry.state == State.REMOVED ? null : clazz.cast(entry.object);
+		}
+		T obj = def.get(db, key);
+		if (obj == null) {
+			return null;
+		}
+		manage(def, obj, def.copy(obj));
+		return obj;
+	}
+
+	/**
+	 * Manages an object which has been read from the database. If the session
+	 * already manages an object of the same primary key, the managed object is
+	 * returned and the given object is ignored.
+	 *
+	 * @param obj
+	 *            the model object
+	 * @return the managed object
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T attach(T obj) {
+		TableDefinition<?> def = define(obj);
+		if (entries.containsKey(obj)) {
+			return obj;
+		}
+		Entry entry = lookup(def, getKey(def, obj));
+		if (entry != null) {
+			return (T) entry.object;
+		}
+		manage(def, obj, def.copy(obj));
+		return obj;
+	}
+
+	/**
+	 * Manages a list of objects which have been read from the database.
+	 *
+	 * @param list
+	 *            the model objects
+	 * @return the managed objects
+	 * @see #attach(Object)
+	 */
+	public <T> List<T> attachAll(List<T> list) {
+		List<T> managed = Utils.newArrayList();
+		for (T t : list) {
+			managed.add(attach(t));
+		}
+		return managed;
+	}
+
+	/**
+	 * Schedules the insert of a new object.
+	 *
+	 * @param obj
+	 *            the model object
+	 */
+	public <T> void insert(T obj) {
+		TableDefinition<?> def = define(obj);
+		Entry entry = entries.get(obj);
+		if (entry == null) {
+			Object key = def.getGeneratedKeyField(obj) == null ? getKey(def, obj) : null;
+			entry = lookup(def, key);
+			if (entry == null) {
+				register(new Entry(def, obj, null, State.NEW), key);
+				return;
+			}
+			if (entry.state != State.REMOVED) {
+				throw new IciqlException("{0} {1} is already managed by the session", def.getModelClass()
+						.getSimpleName(), key);
+			}
+			// the new object replaces the deleted row of its key
+			entries.remove(entry.object);
+			entry.object = obj;
+			entries.put(obj, entry);
+		}
+		if (entry.state == State.REMOVED) {
+			entry.state = State.MANAGED;
+		}
+	}
+
+	/**
+	 * Schedules the update of an object. Managed objects are updated on flush
+	 * if they have been modified, so this method is only required for objects
+	 * which are not managed by the session. The fields of an object whose
+	 * primary key is managed by another object are copied to the managed
+	 * object.
+	 *
+	 * @param obj
+	 *            the model object
+	 * @return the managed object
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T update(T obj) {
+		TableDefinition<?> def = define(obj);
+		Entry entry = entries.get(obj);
+		if (entry == null) {
+			entry = lookup(def, getKey(def, obj));
+			if (entry == null) {
+				// the state of the row is unknown, always write the object
+				entry = manage(def, obj, null);
+			} else if (entry.state != State.REMOVED) {
+				def.copyFields(obj, entry.object);
+			}
+		}
+		if (entry.state == State.REMOVED) {
+			throw new IciqlException("{0} {1} has been deleted in the session", def.getModelClass()
+					.getSimpleName(), getKey(def, obj));
+		}
+		return (T) entry.object;
+	}
+
+	/**
+	 * Schedules the delete of an object. The insert of an object which has
+	 * not been flushed yet is cancelled.
+	 *
+	 * @param obj
+	 *            the model object
+	 */
+	public <T> void delete(T obj) {
+		TableDefinition<?> def = define(obj);
+		Entry entry = entries.get(obj);
+		if (entry == null) {
+			entry = lookup(def, getKey(def, obj));
+			if (entry == null) {
+				entry = manage(def, obj, null);
+			}
+		}
+		if (entry.state == State.NEW) {
+			unregister(entry);
+		} else {
+			entry.state = State.REMOVED;
+		}
+	}
+
+	/**
+	 * Returns true if the session manages an object.
+	 *
+	 * @param obj
+	 *            the model object
+	 * @return true if the object is managed
+	 */
+	public boolean contains(Object obj) {
+		return entries.containsKey(obj);
+	}
+
+	/**
+	 * Returns true if an object will be written on flush.
+	 *
+	 * @param obj
+	 *            the model object
+	 * @return true if the object is new, deleted or modified
+	 */
+	public boolean isDirty(Object obj) {
+		Entry entry = entries.get(obj);
+		return entry != null && entry.isDirty();
+	}
+
+	/**
+	 * Writes all pending inserts, updates and deletes. The writes are
+	 * executed within one savepoint if the Db uses auto savepoints. If a write
+	 * fails, the session keeps its pending writes.
+	 *
+	 * @return the number of written rows
+	 */
+	public int flush() {
+		Map<TableDefinition<?>, Writes> writes = new LinkedHashMap<TableDefinition<?>, Writes>();
+		for (Entry entry : order) {
+			if (entry.detached || !entry.isDirty()) {
+				continue;
+			}
+			Writes tableWrites = writes.get(entry.def);
+			if (tableWrites == null) {
+				tableWrites = new Writes();
+				writes.put(entry.def, tableWrites);
+			}
+			if (entry.state == State.NEW) {
+				tableWrites.inserts.add(entry);
+			} else if (entry.state == State.REMOVED) {
+				tableWrites.deletes.add(entry);
+			} else {
+				tableWrites.updates.add(entry);
+			}
+		}
+		if (writes.isEmpty()) {
+			return 0;
+		}
+		List<TableDefinition<?>> tables = sortByForeignKeys(writes.keySet());
+		List<Entry> generated = Utils.newArrayList();
+		int count = 0;
+		Savepoint savepoint = null;
+		try {
+			savepoint = db.prepareSavepoint();
+			for (TableDefinition<?> def : tables) {
+				count += insert(def, writes.get(def).inserts, generated);
+			}
+			for (TableDefinition<?> def : tables) {
+				count += update(def, writes.get(def).updates);
+			}
+			for (int i = tables.size() - 1; i >= 0; i--) {
+				TableDefinition<?> def = tables.get(i);
+				count += delete(def, writes.get(def).deletes);
+			}
+			db.commit(savepoint);
+		} catch (IciqlException e) {
+			db.rollback(savepoint);
+			for (Entry entry : generated) {
+				entry.def.setGeneratedKey(entry.def.getGeneratedKeyField(entry.object), entry.object, null);
+			}
+			throw e;
+		}
+
+		// the managed objects now reflect their rows
+		List<Entry> flushed = Utils.newArrayList();
+		for (Entry entry : order) {
+			if (entry.detached) {
+				continue;
+			}
+			if (entry.state == State.REMOVED) {
+				unregister(entry);
+				continue;
+			}
+			if (entry.key == null && entry.state == State.NEW) {
+				entry.key = getKey(entry.def, entry.object);
+				if (entry.key != null) {
+					identityMap(entry.def).put(entry.key, entry);
+				}
+			}
+			entry.state = State.MANAGED;
+			entry.snapshot = entry.def.copy(entry.object);
+			flushed.add(entry);
+		}
+		order = flushed;
+		return count;
+	}
+
+	/**
+	 * Discards all managed objects and pending writes.
+	 */
+	public void clear() {
+		entries.clear();
+		identityMap.clear();
+		order.clear();
+	}
+
+	private int insert(TableDefinition<?> def, List<Entry> inserts, List<Entry> generated) {
+		int count = 0;
+		List<SQLStatement> batch = Utils.newArrayList();
+		for (Entry entry : inserts) {
+			FieldDefinition keyField = def.getGeneratedKeyField(entry.object);
+			if (keyField != null) {
+				// the generated key is required to identify the object
+				count += executeBatch(batch);
+				long key = def.insert(db, entry.object, true);
+				if (key != -1) {
+					def.setGeneratedKey(keyField, entry.object, key);
+					generated.add(entry);
+				}
+				count++;
+				continue;
+			}
+			SQLStatement stat = def.prepareInsert(db, entry.object);
+			if (!batch.isEmpty() && !batch.get(0).getSQL().equals(stat.getSQL())) {
+				count += executeBatch(batch);
+			}
+			batch.add(stat);
+		}
+		return count + executeBatch(batch);
+	}
+
+	private int update(TableDefinition<?> def, List<Entry> updates) {
+		if (updates.size() > 1 && db.getMultiRowUpdateSize() > 1) {
+			List<Object> objects = Utils.newArrayList();
+			for (Entry entry : updates) {
+				objects.add(entry.object);
+			}
+			return def.updateAll(db, objects, db.getMultiRowUpdateSize());
+		}
+		List<SQLStatement> batch = Utils.newArrayList();
+		for (Entry entry : updates) {
+			batch.add(def.prepareUpdate(db, entry.object));
+		}
+		return executeBatch(batch);
+	}
+
+	private int delete(TableDefinition<?> def, List<Entry> deletes) {
+		List<SQLStatement> batch = Utils.newArrayList();
+		for (Entry entry : deletes) {
+			batch.add(def.prepareDelete(db, entry.object));
+		}
+		return executeBatch(batch);
+	}
+
+	private int executeBatch(List<SQLStatement> batch) {
+		if (batch.isEmpty()) {
+			return 0;
+		}
+		int count = 0;
+		for (int rows : SQLStatement.executeBatch(batch)) {
+			count += rows == Statement.SUCCESS_NO_INFO ? 1 : rows;
+		}
+		batch.clear();
+		return count;
+	}
+
+	/**
+	 * Sorts tables so that referenced tables precede the tables which
+	 * reference them. Tables of a reference cycle keep their order.
+	 */
+	private List<TableDefinition<?>> sortByForeignKeys(Iterable<TableDefinition<?>> defs) {
+		Map<String, TableDefinition<?>> byTable = new HashMap<String, TableDefinition<?>>();
+		for (TableDefinition<?> def : defs) {
+			byTable.put(ResultCache.normalize(def.tableName), def);
+		}
+		List<TableDefinition<?>> sorted = Utils.newArrayList();
+		Map<TableDefinition<?>, Boolean> visited = new IdentityHashMap<TableDefinition<?>, Boolean>();
+		for (TableDefinition<?> def : defs) {
+			visit(def, byTable, visited, sorted);
+		}
+		return sorted;
+	}
+
+	private void visit(TableDefinition<?> def, Map<String, TableDefinition<?>> byTable,
+			Map<TableDefinition<?>, Boolean> visited, List<TableDefinition<?>> sorted) {
+		if (visited.put(def, Boolean.TRUE) != null) {
+			return;
+		}
+		for (String table : def.getReferencedTables()) {
+			TableDefinition<?> referenced = byTable.get(table);
+			if (referenced != null) {
+				visit(referenced, byTable, visited, sorted);
+			}
+		}
+		sorted.add(def);
+	}
+
+	private TableDefinition<?> define(Object obj) {
+		return db.define(obj.getClass()).createIfRequired(db);
+	}
+
+	/**
+	 * Returns the normalized primary key of an object or null if the model
+	 * has no primary key.
+	 */
+	private Object getKey(TableDefinition<?> def, Object obj) {
+		if (def.primaryKeyColumnNames == null || def.primaryKeyColumnNames.isEmpty()) {
+			return null;
+		}
+		return EntityCache.normalizeKey(def.getPrimaryKey(obj));
+	}
+
+	private Entry lookup(TableDefinition<?> def, Object key) {
+		if (key == null) {
+			return null;
+		}
+		return identityMap(def).get(EntityCache.normalizeKey(key));
+	}
+
+	private Map<Object, Entry> identityMap(TableDefinition<?> def) {
+		Map<Object, Entry> map = identityMap.get(def.getModelClass());
+		if (map == null) {
+			map = new HashMap<Object, Entry>();
+			identityMap.put(def.getModelClass(), map);
+		}
+		return map;
+	}
+
+	private Entry manage(TableDefinition<?> def, Object obj, Object snapshot) {
+		Entry entry = new Entry(def, obj, snapshot, State.MANAGED);
+		register(entry, getKey(def, obj));
+		return entry;
+	}
+
+	private void register(Entry entry, Object key) {
+		entry.key = key;
+		entries.put(entry.object, entry);
+		if (key != null) {
+			identityMap(entry.def).put(key, entry);
+		}
+		order.add(entry);
+	}
+
+	private void unregister(Entry entry) {
+		entry.detached = true;
+		entries.remove(entry.object);
+		if (entry.key != null) {
+			identityMap(entry.def).remove(entry.key);
+		}
+	}
+
+	/**
+	 * A managed object and the copy of its row.
+	 */
+	private static class Entry {
+		final TableDefinition<?> def;
+		Object object;
+		Object snapshot;
+		Object key;
+		State state;
+		boolean detached;
+
+		Entry(TableDefinition<?> def, Object object, Object snapshot, State state) {
+			this.def = def;
+			this.object = object;
+			this.snapshot = snapshot;
+			this.state = state;
+		}
+
+		boolean isDirty() {
+			return state != State.MANAGED || snapshot == null || def.isModified(snapshot, object);
+		}
+	}
+
+	/**
+	 * The pending writes of a table.
+	 */
+	private static class Writes {
+		final List<Entry> inserts = new ArrayList<Entry>();
+		final List<Entry> updates = new ArrayList<Entry>();
+		final List<Entry> deletes = new ArrayList<Entry>();
+	}
+}
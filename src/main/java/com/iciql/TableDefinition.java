@@ -18,6 +18,7 @@
 
 package com.iciql;
 
+import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -29,6 +30,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.iciql.Iciql.ConstraintDeferrabilityType;
 import com.iciql.Iciql.ConstraintDeleteType;
@@ -51,6 +53,7 @@ import com.iciql.Iciql.IQTable;
 import com.iciql.Iciql.IQVersion;
 import com.iciql.Iciql.IQView;
 import com.iciql.Iciql.IndexType;
+import com.iciql.util.ConcurrentWeakIdentityHashMap;
 import com.iciql.util.IciqlLogger;
 import com.iciql.util.StatementBuilder;
 import com.iciql.util.StringUtils;
@@ -203,6 +206,14 @@ public class TableDefinition<T> {
 	ArrayList<ConstraintForeignKeyDefinition> constraintsForeignKey = Utils.newArrayList();
 	ArrayList<ConstraintUniqueDefinition> constraintsUnique = Utils.newArrayList();
 
+	/**
+	 * The field values last assigned to each alias object of this table. An
+	 * alias object which is used for several queries keeps its field values
+	 * as long as they have not been modified and the query which last used
+	 * the alias has built its statement.
+	 */
+	private final Map<Object, AliasValues> aliasValues = new ConcurrentWeakIdentityHashMap<Object, AliasValues>();
+
 	TableDefinition(Class<T> clazz) {
 		this.clazz = clazz;
 		schemaName = null;
@@ -718,6 +729,21 @@ public class TableDefinition<T> {
 	}
 
 	long insert(Db db, Object obj, boolean returnKey) {
+		SQLStatement stat = prepareInsert(db, obj);
+		if (returnKey) {
+			return stat.executeInsert();
+		}
+		return stat.executeUpdate();
+	}
+
+	/**
+	 * Builds the INSERT statement of a model object without executing it.
+	 *
+	 * @param db
+	 * @param obj
+	 * @return the statement
+	 */
+	SQLStatement prepareInsert(Db db, Object obj) {
 		if (!StringUtils.isNullOrEmpty(viewTableName)) {
 			throw new IciqlException("Iciql does not support inserting rows into views!");
 		}
@@ -750,10 +776,8 @@ public class TableDefinition<T> {
 		buff.append(')');
 		stat.setSQL(buff.toString());
 		IciqlLogger.insert(stat.getSQL());
-		if (returnKey) {
-			return stat.executeInsert();
-		}
-		return stat.executeUpdate();
+		stat.forTable(this).forEntity(obj);
+		return stat;
 	}
 
 	private boolean skipInsertField(FieldDefinition field, Object obj) {
@@ -793,10 +817,22 @@ public class TableDefinition<T> {
 		SQLStatement stat = new SQLStatement(db);
 		db.getDialect().prepareMerge(stat, schemaName, tableName, this, obj);
 		IciqlLogger.merge(stat.getSQL());
+		stat.forTable(this).forEntity(obj);
 		return stat.executeUpdate();
 	}
 
 	int update(Db db, Object obj) {
+		return prepareUpdate(db, obj).executeUpdate();
+	}
+
+	/**
+	 * Builds the UPDATE statement of a model object without executing it.
+	 *
+	 * @param db
+	 * @param obj
+	 * @return the statement
+	 */
+	SQLStatement prepareUpdate(Db db, Object obj) {
 		if (!StringUtils.isNullOrEmpty(viewTableName)) {
 			throw new IciqlException("Iciql does not support updating rows in views!");
 		}
@@ -811,16 +847,10 @@ public class TableDefinition<T> {
 
 		for (FieldDefinition field : fields) {
 			if (!field.isPrimaryKey) {
-				Object value = getValue(obj, field);
-				if (value == null && !field.nullable) {
-					// try to interpret and instantiate a default value
-					value = ModelUtils.getDefaultValue(field, db.getDialect().getDateTimeClass());
-				}
 				buff.appendExceptFirst(", ");
 				buff.append(db.getDialect().prepareColumnName(field.columnName));
 				buff.append(" = ?");
-				Object parameter = db.getDialect().serialize(value, field.typeAdapter);
-				stat.addParameter(parameter);
+				stat.addParameter(getUpdateParameter(db.getDialect(), obj, field));
 			}
 		}
 		Object alias = Utils.newObject(obj.getClass());
@@ -843,10 +873,241 @@ public class TableDefinition<T> {
 		stat.setSQL(buff.toString());
 		query.appendWhere(stat);
 		IciqlLogger.update(stat.getSQL());
-		return stat.executeUpdate();
+		stat.forTable(this).forEntity(obj);
+		return stat;
+	}
+
+	/**
+	 * Updates the rows with set-based UPDATE statements of at most maxRows
+	 * rows each, limited by the number of parameters supported by the
+	 * dialect. If the list contains a primary key more than once, the row
+	 * which is updated is undefined.
+	 *
+	 * @return the number of updated rows
+	 */
+	int updateAll(Db db, List<?> list, int maxRows) {
+		if (!StringUtils.isNullOrEmpty(viewTableName)) {
+			throw new IciqlException("Iciql does not support updating rows in views!");
+		}
+		if (primaryKeyColumnNames == null || primaryKeyColumnNames.size() == 0) {
+			throw new IllegalStateException("No primary key columns defined for table " + clazz
+					+ " - no update possible");
+		}
+		int keys = primaryKeyColumnNames.size();
+		int columns = fields.size() - keys;
+		if (columns == 0) {
+			return 0;
+		}
+		// one CASE branch per column plus the key of the WHERE clause
+		int rowParameters = columns * (keys + 1) + keys;
+		int rows = Math.max(1, Math.min(maxRows, db.getDialect().getMaxParameters() / rowParameters));
+		int count = 0;
+		for (int i = 0; i < list.size(); i += rows) {
+			List<?> chunk = list.subList(i, Math.min(list.size(), i + rows));
+			SQLStatement stat = new SQLStatement(db);
+			db.getDialect().prepareUpdateAll(stat, schemaName, tableName, this, chunk);
+			IciqlLogger.update(stat.getSQL());
+			count += stat.forTable(this).executeUpdate();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the serialized value of a field for an UPDATE statement. The
+	 * default value is used for a null field which is not nullable.
+	 */
+	Object getUpdateParameter(SQLDialect dialect, Object obj, FieldDefinition field) {
+		Object value = getValue(obj, field);
+		if (value == null && !field.nullable) {
+			// try to interpret and instantiate a default value
+			value = ModelUtils.getDefaultValue(field, dialect.getDateTimeClass());
+		}
+		return dialect.serialize(value, field.typeAdapter);
+	}
+
+	/**
+	 * Returns the primary key of a model object, i.e. the value of the primary
+	 * key field or the list of the values of a composite primary key.
+	 *
+	 * @param obj
+	 * @return the primary key
+	 */
+	Object getPrimaryKey(Object obj) {
+		List<Object> values = Utils.newArrayList();
+		for (FieldDefinition field : fields) {
+			if (field.isPrimaryKey) {
+				values.add(field.getValue(obj));
+			}
+		}
+		return values.size() == 1 ? values.get(0) : values;
+	}
+
+	/**
+	 * Selects a model object by its primary key. The objects of a model which
+	 * is annotated with IQCache are served from the entity cache.
+	 *
+	 * @param db
+	 * @param key
+	 *            the value of the primary key field or the list or array of
+	 *            the values of a composite primary key
+	 * @return the model object or null
+	 */
+	T get(Db db, Object key) {
+		if (primaryKeyColumnNames == null || primaryKeyColumnNames.size() == 0) {
+			throw new IciqlException("No primary key columns defined for table {0}", clazz.getName());
+		}
+		Object[] values;
+		if (primaryKeyColumnNames.size() == 1) {
+			values = new Object[] { key };
+		} else if (key instanceof List) {
+			values = ((List<?>) key).toArray();
+		} else if (key instanceof Object[]) {
+			values = (Object[]) key;
+		} else {
+			values = null;
+		}
+		if (values == null || values.length != primaryKeyColumnNames.size()) {
+			throw new IciqlException("{0} has a primary key of {1} columns, specify the key as a list of {1} values",
+					clazz.getName(), primaryKeyColumnNames.size());
+		}
+		T alias = Utils.newObject(clazz);
+		Query<T> query = Query.from(db, alias);
+		int i = 0;
+		for (FieldDefinition field : fields) {
+			if (field.isPrimaryKey) {
+				Object fieldAlias = field.getValue(alias);
+				if (field.isPrimitive) {
+					fieldAlias = query.getPrimitiveAliasByValue(fieldAlias);
+				}
+				if (i > 0) {
+					query.addConditionToken(ConditionAndOr.AND);
+				}
+				query.addConditionToken(new Condition<Object>(fieldAlias, values[i++], CompareType.EQUAL));
+			}
+		}
+		return query.selectFirst();
+	}
+
+	/**
+	 * Returns a copy of the mapped fields of a model object. Arrays and dates
+	 * are copied, other field values are shared.
+	 *
+	 * @param obj
+	 * @return the copy
+	 */
+	T copy(Object obj) {
+		T copy = Utils.newObject(clazz);
+		copyFields(obj, copy);
+		return copy;
+	}
+
+	/**
+	 * Copies the mapped fields of a model object to another object of the
+	 * model. Arrays and dates are copied, other field values are shared.
+	 *
+	 * @param obj
+	 *            the source object
+	 * @param copy
+	 *            the target object
+	 */
+	void copyFields(Object obj, Object copy) {
+		for (FieldDefinition field : fields) {
+			Object value = field.getValue(obj);
+			if (value instanceof java.util.Date) {
+				value = ((java.util.Date) value).clone();
+			} else if (value != null && value.getClass().isArray()) {
+				int length = Array.getLength(value);
+				Object array = Array.newInstance(value.getClass().getComponentType(), length);
+				System.arraycopy(value, 0, array, 0, length);
+				value = array;
+			}
+			try {
+				field.field.set(copy, value);
+			} catch (Exception e) {
+				throw new IciqlException(e);
+			}
+		}
+	}
+
+	/**
+	 * Returns true if a mapped field of a model object differs from a copy of
+	 * the object.
+	 *
+	 * @param copy
+	 *            the copy of the object
+	 * @param obj
+	 *            the object
+	 * @return true if the object has been modified
+	 */
+	boolean isModified(Object copy, Object obj) {
+		for (FieldDefinition field : fields) {
+			Object[] values = { field.getValue(copy) };
+			Object[] current = { field.getValue(obj) };
+			if (!Arrays.deepEquals(values, current)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the auto-increment primary key field of a model object if the
+	 * key has not been assigned yet and is generated by the database.
+	 *
+	 * @param obj
+	 * @return the key field or null
+	 */
+	FieldDefinition getGeneratedKeyField(Object obj) {
+		for (FieldDefinition field : fields) {
+			if (field.isPrimaryKey && field.isAutoIncrement && skipInsertField(field, obj)) {
+				return field;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Assigns a generated key to the key field of a model object.
+	 *
+	 * @param field
+	 *            the key field
+	 * @param obj
+	 * @param key
+	 *            the generated key or null to unassign the key
+	 */
+	void setGeneratedKey(FieldDefinition field, Object obj, Long key) {
+		if (key == null && field.isPrimitive) {
+			key = 0L;
+		}
+		field.setValue(null, obj, key);
+	}
+
+	/**
+	 * Returns the normalized names of the tables which are referenced by the
+	 * foreign keys of this table.
+	 *
+	 * @return the referenced tables
+	 */
+	Set<String> getReferencedTables() {
+		Set<String> tables = new LinkedHashSet<String>();
+		for (ConstraintForeignKeyDefinition constraint : constraintsForeignKey) {
+			tables.add(ResultCache.normalize(constraint.referenceTable));
+		}
+		return tables;
 	}
 
 	int delete(Db db, Object obj) {
+		return prepareDelete(db, obj).executeUpdate();
+	}
+
+	/**
+	 * Builds the DELETE statement of a model object without executing it.
+	 *
+	 * @param db
+	 * @param obj
+	 * @return the statement
+	 */
+	SQLStatement prepareDelete(Db db, Object obj) {
 		if (!StringUtils.isNullOrEmpty(viewTableName)) {
 			throw new IciqlException("Iciql does not support deleting rows from views!");
 		}
@@ -878,7 +1139,8 @@ public class TableDefinition<T> {
 		stat.setSQL(buff.toString());
 		query.appendWhere(stat);
 		IciqlLogger.delete(stat.getSQL());
-		return stat.executeUpdate();
+		stat.forTable(this).forEntity(obj);
+		return stat;
 	}
 
 	TableDefinition<T> createIfRequired(Db db) {
@@ -1144,16 +1406,89 @@ public class TableDefinition<T> {
 		}
 	}
 
-	void initSelectObject(SelectTable<T> table, Object obj, Map<Object, SelectColumn<T>> map, boolean reuse) {
-		for (FieldDefinition def : fields) {
+	/**
+	 * Maps the fields of an alias object to the columns of a table of a query.
+	 * The fields are assigned new values unless the alias is re-used as it is
+	 * or, if leasing, the values of a released alias are still intact.
+	 *
+	 * @param reuse
+	 *            if true the alias is re-used as it is
+	 * @param lease
+	 *            if true the alias values are leased by the query
+	 * @return the lease of the alias values or null if the alias values are
+	 *         not leased
+	 */
+	AliasValues initSelectObject(SelectTable<T> table, Object obj, Map<Object, SelectColumn<T>> map,
+			Map<Object, Object> primitiveMap, boolean reuse, boolean lease) {
+		AliasValues leased = reuse || !lease ? null : leaseAlias(obj);
+		Object[] values = null;
+		if (!reuse && leased == null) {
+			values = new Object[fields.size()];
+		}
+		for (int i = 0; i < fields.size(); i++) {
+			FieldDefinition def = fields.get(i);
 			Object value;
-			if (!reuse) {
+			if (values != null) {
 				value = def.initWithNewObject(obj);
+				values[i] = value;
 			} else {
 				value = def.getValue(obj);
 			}
 			SelectColumn<T> column = new SelectColumn<T>(table, def);
 			map.put(value, column);
+			if (def.isPrimitive && !primitiveMap.containsKey(value)) {
+				// index primitive aliases by value
+				primitiveMap.put(value, value);
+			}
+		}
+		if (values != null && lease) {
+			leased = new AliasValues(values);
+			aliasValues.put(obj, leased);
+		}
+		return leased;
+	}
+
+	/**
+	 * Leases the field values which were assigned when the object was last
+	 * initialized as an alias of this table. The values of an alias which is
+	 * still leased by a query, e.g. one which is built concurrently, are not
+	 * shared, so that the alias is initialized again like before.
+	 *
+	 * @param obj
+	 *            the alias object
+	 * @return the leased values or null if the alias must be initialized
+	 */
+	private AliasValues leaseAlias(Object obj) {
+		AliasValues lease = aliasValues.get(obj);
+		if (lease == null || !lease.leased.compareAndSet(false, true)) {
+			return null;
+		}
+		Object[] values = lease.values;
+		for (int i = 0; i < values.length; i++) {
+			FieldDefinition def = fields.get(i);
+			Object value = def.getValue(obj);
+			if (def.isPrimitive ? !values[i].equals(value) : values[i] != value) {
+				// modified, the alias is initialized again
+				return null;
+			}
+		}
+		return lease;
+	}
+
+	/**
+	 * The field values of an alias object and whether they are in use by a
+	 * query which has not been executed yet.
+	 */
+	static class AliasValues {
+		final Object[] values;
+		final AtomicBoolean leased = new AtomicBoolean(true);
+
+		AliasValues(Object[] values) {
+			this.values = values;
+		}
+
+		void release() {
+			leased.set(false);
 		}
 	}
 
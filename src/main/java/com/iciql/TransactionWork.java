@@ -0,0 +1,46 @@
+/*
+ * Copyright 2026 iciql contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iciql;
+
+/**
+ * A TransactionWork is executed within a transaction by Db.inTransaction.
+ *
+ * <pre>
+ * long orderId = db.inTransaction(new TransactionWork&lt;Long&gt;() {
+ * 	public Long execute(Db db) {
+ * 		db.insert(order);
+ * 		db.insertAll(order.items);
+ * 		return order.orderId;
+ * 	}
+ * });
+ * </pre>
+ *
+ * @param <V>
+ *            the result type
+ */
+public interface TransactionWork<V> {
+
+	/**
+	 * Executes the work. The transaction is rolled back if this method throws
+	 * an exception and committed otherwise.
+	 *
+	 * @param db
+	 *            the database of the transaction
+	 * @return the result
+	 */
+	V execute(Db db);
+}
@@ -52,4 +52,9 @@ public class UpdateColumnIncrement<T, A> implements UpdateColumn {
 		stat.appendSQL(")");
 	}
 
+	boolean appendKey(SQLStatement.Key key) {
+		key.add(UpdateColumnIncrement.class);
+		return query.appendKey(key, null, x) && query.appendKey(key, null, x) && query.appendKey(key, x, y);
+	}
+
 }
@@ -60,4 +60,12 @@ public class UpdateColumnSet<T, A> implements UpdateColumn {
 		}
 	}
 
+	boolean appendKey(SQLStatement.Key key) {
+		key.add(UpdateColumnSet.class);
+		if (!query.appendKey(key, null, x)) {
+			return false;
+		}
+		return query.appendKey(key, x, isParameter ? RuntimeParameter.PARAMETER : y);
+	}
+
 }
@@ -21,21 +21,32 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Stack;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.iciql.IciqlException;
+import com.iciql.Query;
+import com.iciql.SQLStatement;
 import com.iciql.Token;
 
 /**
  * This class converts a method to a SQL Token by interpreting (decompiling) the
  * bytecode of the class.
+ * <p>
+ * The decompiled token of a method does not depend on the field values of the
+ * instance, so it is cached per class and method. Each call only binds the
+ * field values of the instance to the cached token.
  */
 public class ClassReader {
 
 	private static final boolean DEBUG = false;
 
+	private static final Map<Class<?>, Map<String, Token>> TEMPLATES = Collections
+			.synchronizedMap(new WeakHashMap<Class<?>, Map<String, Token>>());
+
 	private byte[] data;
 	private int pos;
 	private Constant[] constantPool;
@@ -49,7 +60,6 @@ public class ClassReader {
 	private boolean endOfMethod;
 	private boolean condition;
 	private int nextPc;
-	private Map<String, Object> fieldMap = new HashMap<String, Object>();
 
 	private static void debug(String s) {
 		if (DEBUG) {
@@ -58,24 +68,49 @@ public class ClassReader {
 	}
 
 	public Token decompile(Object instance, Map<String, Object> fields, String method) {
-		this.fieldMap = fields;
-		this.convertMethodName = method;
 		Class<?> clazz = instance.getClass();
+		Map<String, Token> methods = TEMPLATES.get(clazz);
+		if (methods == null) {
+			methods = new ConcurrentHashMap<String, Token>();
+			TEMPLATES.put(clazz, methods);
+		}
+		Token template = methods.get(method);
+		if (template == null) {
+			template = readClass(clazz, method);
+			if (template == null) {
+				return null;
+			}
+			methods.put(method, template);
+		}
+		return new Bound(template, fields);
+	}
+
+	private Token readClass(Class<?> clazz, String method) {
+		this.convertMethodName = method;
 		String className = clazz.getName();
 		debug("class name " + className);
 		ByteArrayOutputStream buff = new ByteArrayOutputStream();
+		InputStream in = null;
 		try {
-			InputStream in = clazz.getClassLoader().getResource(className.replace('.', '/') + ".class")
-					.openStream();
+			in = clazz.getClassLoader().getResource(className.replace('.', '/') + ".class").openStream();
+			byte[] buffer = new byte[4096];
 			while (true) {
-				int x = in.read();
-				if (x < 0) {
+				int len = in.read(buffer);
+				if (len < 0) {
 					break;
 				}
-				buff.write(x);
+				buff.write(buffer, 0, len);
 			}
 		} catch (IOException e) {
 			throw new IciqlException("Could not read class bytecode", e);
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
 		}
 		data = buff.toByteArray();
 		int header = readInt();
@@ -1217,7 +1252,7 @@ public class ClassReader {
 			if (s.startsWith("this.")) {
 				s = s.substring(5);
 			}
-			stack.push(Variable.get(s, fieldMap.get(s)));
+			stack.push(Variable.get(s));
 			op = "getfield " + field;
 			break;
 		}
@@ -1363,7 +1398,7 @@ public class ClassReader {
 
 	private void setVariable(int x, Token value) {
 		while (x >= variables.size()) {
-			variables.add(Variable.get("p" + variables.size(), null));
+			variables.add(Variable.get("p" + variables.size()));
 		}
 		variables.set(x, value);
 	}
@@ -1373,7 +1408,7 @@ public class ClassReader {
 			return Variable.THIS;
 		}
 		while (x >= variables.size()) {
-			variables.add(Variable.get("p" + variables.size(), null));
+			variables.add(Variable.get("p" + variables.size()));
 		}
 		return variables.get(x);
 	}
@@ -1454,4 +1489,31 @@ public class ClassReader {
 		return ((long) (readInt()) << 32) + (readInt() & 0xffffffffL);
 	}
 
+	/**
+	 * A decompiled token bound to the field values of one instance.
+	 */
+	private static class Bound implements Token {
+
+		private final Token template;
+		private final Map<String, Object> values;
+
+		Bound(Token template, Map<String, Object> values) {
+			this.template = template;
+			this.values = values;
+		}
+
+		public String toString() {
+			return template.toString();
+		}
+
+		public <T> void appendSQL(SQLStatement stat, Query<T> query) {
+			Map<String, Object> previous = Variable.bind(values);
+			try {
+				template.appendSQL(stat, query);
+			} finally {
+				Variable.bind(previous);
+			}
+		}
+	}
+
 }
@@ -17,27 +17,47 @@
 
 package com.iciql.bytecode;
 
+import java.util.Map;
+
 import com.iciql.Query;
 import com.iciql.SQLStatement;
 import com.iciql.Token;
 
 /**
- * A variable.
+ * A variable. The value of a variable is looked up by name in the values bound
+ * to the current thread while the statement is appended.
  */
 public class Variable implements Token {
 
-	static final Variable THIS = new Variable("this", null);
+	static final Variable THIS = new Variable("this");
+
+	private static final ThreadLocal<Map<String, Object>> VALUES = new ThreadLocal<Map<String, Object>>();
 
 	private final String name;
-	private final Object obj;
 
-	private Variable(String name, Object obj) {
+	private Variable(String name) {
 		this.name = name;
-		this.obj = obj;
 	}
 
-	static Variable get(String name, Object obj) {
-		return new Variable(name, obj);
+	static Variable get(String name) {
+		return new Variable(name);
+	}
+
+	/**
+	 * Binds the variable values of the current thread.
+	 *
+	 * @param values
+	 *            the values by variable name, or null to unbind
+	 * @return the previously bound values
+	 */
+	static Map<String, Object> bind(Map<String, Object> values) {
+		Map<String, Object> previous = VALUES.get();
+		if (values == null) {
+			VALUES.remove();
+		} else {
+			VALUES.set(values);
+		}
+		return previous;
 	}
 
 	public String toString() {
@@ -45,7 +65,8 @@ public class Variable implements Token {
 	}
 
 	public <T> void appendSQL(SQLStatement stat, Query<T> query) {
-		query.appendSQL(stat, null, obj);
+		Map<String, Object> values = VALUES.get();
+		query.appendSQL(stat, null, values == null ? null : values.get(name));
 	}
 
 }
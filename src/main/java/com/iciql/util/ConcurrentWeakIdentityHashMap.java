@@ -0,0 +1,166 @@
+/*
+ * Copyright 2026 iciql contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iciql.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe hash map which uses weak references and object identity to
+ * compare keys. Lookups do not lock, updates only lock a segment of the map.
+ * Entries whose keys have been garbage collected are expunged through a
+ * reference queue when the map is modified.
+ *
+ * @param <K>
+ *            the keys
+ * @param <V>
+ *            the value
+ */
+
+public class ConcurrentWeakIdentityHashMap<K, V> implements Map<K, V> {
+
+	private final ConcurrentHashMap<Object, V> map = new ConcurrentHashMap<Object, V>();
+	private final ReferenceQueue<K> queue = new ReferenceQueue<K>();
+
+	public int size() {
+		expunge();
+		return map.size();
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public V get(Object key) {
+		if (key == null) {
+			return null;
+		}
+		return map.get(new Lookup(key));
+	}
+
+	public V put(K key, V value) {
+		expunge();
+		return map.put(new Key<K>(key, queue), value);
+	}
+
+	public V remove(Object key) {
+		expunge();
+		if (key == null) {
+			return null;
+		}
+		return map.remove(new Lookup(key));
+	}
+
+	public void clear() {
+		map.clear();
+		expunge();
+	}
+
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	public boolean containsValue(Object value) {
+		if (value == null) {
+			return false;
+		}
+		return map.containsValue(value);
+	}
+
+	public Set<java.util.Map.Entry<K, V>> entrySet() {
+		throw new UnsupportedOperationException();
+	}
+
+	public Set<K> keySet() {
+		throw new UnsupportedOperationException();
+	}
+
+	public void putAll(Map<? extends K, ? extends V> m) {
+		throw new UnsupportedOperationException();
+	}
+
+	public Collection<V> values() {
+		throw new UnsupportedOperationException();
+	}
+
+	private void expunge() {
+		Reference<? extends K> ref;
+		while ((ref = queue.poll()) != null) {
+			map.remove(ref);
+		}
+	}
+
+	private static Object referent(Object o) {
+		if (o instanceof Key) {
+			return ((Key<?>) o).get();
+		} else if (o instanceof Lookup) {
+			return ((Lookup) o).key;
+		}
+		return null;
+	}
+
+	/**
+	 * The weak key of an entry. A cleared key is only equal to itself.
+	 */
+	private static class Key<K> extends WeakReference<K> {
+
+		private final int hash;
+
+		Key(K key, ReferenceQueue<K> queue) {
+			super(key, queue);
+			hash = System.identityHashCode(key);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object o) {
+			if (o == this) {
+				return true;
+			}
+			Object key = get();
+			return key != null && key == referent(o);
+		}
+	}
+
+	/**
+	 * A strong key used to look up an entry.
+	 */
+	private static class Lookup {
+
+		private final Object key;
+
+		Lookup(Object key) {
+			this.key = key;
+		}
+
+		public int hashCode() {
+			return System.identityHashCode(key);
+		}
+
+		public boolean equals(Object o) {
+			return o == this || key == referent(o);
+		}
+	}
+
+}
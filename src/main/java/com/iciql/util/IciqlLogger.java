@@ -38,7 +38,7 @@ public class IciqlLogger {
 	 * Enumeration of the different statement types that are logged.
 	 */
 	public enum StatementType {
-		STAT, TOTAL, CREATE, INSERT, UPDATE, MERGE, DELETE, SELECT, DROP, WARN;
+		STAT, TOTAL, CREATE, INSERT, UPDATE, MERGE, DELETE, SELECT, DROP, WARN, EXPLAIN;
 	}
 
 	/**
@@ -66,6 +66,7 @@ public class IciqlLogger {
 	private static final AtomicLong DELETE_COUNT = new AtomicLong();
 	private static final AtomicLong DROP_COUNT = new AtomicLong();
 	private static final AtomicLong WARN_COUNT = new AtomicLong();
+	private static final AtomicLong EXPLAIN_COUNT = new AtomicLong();
 
 	/**
 	 * Activates the Console Logger.
@@ -141,6 +142,11 @@ public class IciqlLogger {
 		logStatement(StatementType.WARN, args.length > 0 ? MessageFormat.format(message, args) : message);
 	}
 
+	public static void explain(String plan) {
+		EXPLAIN_COUNT.incrementAndGet();
+		logStatement(StatementType.EXPLAIN, plan);
+	}
+
 	private static void logStatement(final StatementType type, final String statement) {
 		for (final IciqlListener listener : LISTENERS) {
 			EXEC.execute(new Runnable() {
@@ -183,6 +189,10 @@ public class IciqlLogger {
 		return WARN_COUNT.longValue();
 	}
 
+	public static long getExplainCount() {
+		return EXPLAIN_COUNT.longValue();
+	}
+
 	public static long getTotalCount() {
 		return getCreateCount() + getInsertCount() + getUpdateCount() + getDeleteCount() + getMergeCount()
 				+ getSelectCount() + getDropCount();
@@ -192,6 +202,7 @@ public class IciqlLogger {
 		logStatement(StatementType.STAT, "iciql Runtime Statistics");
 		logStatement(StatementType.STAT, "========================");
 		logStat(StatementType.WARN, getWarnCount());
+		logStat(StatementType.EXPLAIN, getExplainCount());
 		logStatement(StatementType.STAT, "========================");
 		logStat(StatementType.CREATE, getCreateCount());
 		logStat(StatementType.INSERT, getInsertCount());
@@ -54,12 +54,22 @@ public class Utils {
 
 	public static final AtomicLong COUNTER = new AtomicLong(0);
 
+	/**
+	 * @deprecated table aliases are numbered per query, iciql no longer uses
+	 *             this counter
+	 */
+	@Deprecated
 	public static final AtomicInteger AS_COUNTER = new AtomicInteger(0);
 
 	private static final boolean MAKE_ACCESSIBLE = true;
 
 	private static final int BUFFER_BLOCK_SIZE = 4 * 1024;
 
+	/**
+	 * @deprecated table aliases are numbered per query, iciql no longer uses
+	 *             this counter
+	 */
+	@Deprecated
 	public static synchronized int nextAsCount() {
 		// prevent negative values and use a threadsafe counter
 		int count = AS_COUNTER.incrementAndGet();
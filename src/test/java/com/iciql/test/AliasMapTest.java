@@ -18,12 +18,15 @@
 package com.iciql.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
 import com.iciql.Db;
 import com.iciql.IciqlException;
+import com.iciql.Query;
 import com.iciql.test.models.PrimitivesModel;
 import com.iciql.test.models.Product;
 import com.iciql.util.Utils;
@@ -136,4 +139,68 @@ public class AliasMapTest {
 		}
 		db.close();
 	}
+
+	/**
+	 * Confirms that the field values of an alias are re-used by the next
+	 * query of the alias once the previous query has been executed.
+	 */
+	@Test
+	public void testAliasReuse() throws Exception {
+		Db db = IciqlSuite.openNewDb();
+		db.setReuseAliases(true);
+		db.insertAll(Product.getList());
+
+		Product p = new Product();
+		assertEquals(1, db.from(p).where(p.productId).is(9).selectCount());
+		Integer productId = p.productId;
+
+		// the unmodified alias keeps its values
+		long bc = Utils.COUNTER.get();
+		assertEquals(1, db.from(p).where(p.productId).is(9).selectCount());
+		assertSame(productId, p.productId);
+		assertEquals(bc, Utils.COUNTER.get());
+
+		// a modified alias is initialized again
+		p.productName = null;
+		assertEquals(1, db.from(p).where(p.productId).is(9).selectCount());
+		assertNotSame(productId, p.productId);
+
+		db.close();
+	}
+
+	/**
+	 * Confirms that the field values of an alias are not shared with a query
+	 * which has not been executed yet.
+	 */
+	@Test
+	public void testAliasLease() throws Exception {
+		Db db = IciqlSuite.openNewDb();
+		db.setReuseAliases(true);
+		db.insertAll(Product.getList());
+
+		Product p = new Product();
+		Query<Product> query1 = db.from(p);
+		Integer productId1 = p.productId;
+
+		// the values are leased by query1, query2 initializes the alias again
+		Query<Product> query2 = db.from(p);
+		Integer productId2 = p.productId;
+		assertNotSame(productId1, productId2);
+		assertEquals(1, query2.where(p.productId).is(9).selectCount());
+
+		// query2 has been executed, query3 re-uses its values
+		Query<Product> query3 = db.from(p);
+		assertSame(productId2, p.productId);
+		assertEquals(1, query3.where(p.productId).is(9).selectCount());
+
+		// query1 lost its mapping like a query of a re-initialized alias
+		try {
+			query1.where(p.productId).is(9).selectCount();
+			assertTrue("Fail: query1 mapped the fields of another query.", false);
+		} catch (IciqlException e) {
+			assertEquals(IciqlException.CODE_UNMAPPED_FIELD, e.getIciqlCode());
+		}
+
+		db.close();
+	}
 }
\ No newline at end of file
@@ -17,6 +17,7 @@
 package com.iciql.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.List;
@@ -30,6 +31,7 @@ import com.iciql.Db;
 import com.iciql.IciqlException;
 import com.iciql.Query;
 import com.iciql.test.models.Product;
+import com.iciql.util.ConcurrentWeakIdentityHashMap;
 import com.iciql.util.Utils;
 
 /**
@@ -149,6 +151,50 @@ public class ConcurrencyTest {
 		assertEquals("ThreadLocal should never fail!", 0, failures.get());
 	}
 
+	@Test
+	public void testConcurrentWeakIdentityHashMap() throws Exception {
+		// concurrent puts and gets of equal, but not identical, keys
+		final int threadCount = 8;
+		final int keyCount = 2000;
+		final ConcurrentWeakIdentityHashMap<String, Integer> map =
+				new ConcurrentWeakIdentityHashMap<String, Integer>();
+		final List<List<String>> keys = Utils.newArrayList();
+		final AtomicInteger failures = new AtomicInteger(0);
+		List<Thread> threads = Utils.newArrayList();
+		for (int i = 0; i < threadCount; i++) {
+			final int thread = i;
+			final List<String> threadKeys = Utils.newArrayList();
+			keys.add(threadKeys);
+			threads.add(new Thread(new Runnable() {
+				public void run() {
+					for (int j = 0; j < keyCount; j++) {
+						String key = new String("key" + j);
+						threadKeys.add(key);
+						Integer value = thread * keyCount + j;
+						if (map.put(key, value) != null || !value.equals(map.get(key))) {
+							failures.incrementAndGet();
+						}
+					}
+				}
+			}, "ICIQL-" + i));
+		}
+		for (Thread t : threads) {
+			t.start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+
+		assertEquals(0, failures.get());
+		assertEquals(threadCount * keyCount, map.size());
+		for (int i = 0; i < threadCount; i++) {
+			for (int j = 0; j < keyCount; j++) {
+				assertEquals(Integer.valueOf(i * keyCount + j), map.get(keys.get(i).get(j)));
+			}
+		}
+		assertNull(map.get("key0"));
+	}
+
 	private void test(int testCase, Product p) throws AssertionError {
 		Db db = IciqlSuite.openCurrentDb();
 		try {
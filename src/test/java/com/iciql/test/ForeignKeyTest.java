@@ -17,6 +17,8 @@
 package com.iciql.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.After;
@@ -25,6 +27,7 @@ import org.junit.Test;
 
 import com.iciql.Db;
 import com.iciql.IciqlException;
+import com.iciql.Session;
 import com.iciql.test.models.CategoryAnnotationOnly;
 import com.iciql.test.models.ProductAnnotationOnlyWithForeignKey;
 
@@ -68,6 +71,41 @@ public class ForeignKeyTest {
 		assertEquals(count1, count2 + 2L);
 	}
 	
+	@Test
+	public void testSessionFlushOrder() {
+		// the setup rows have explicit keys which an identity column does
+		// not skip, remove them so the generated category key is unused
+		CategoryAnnotationOnly c = new CategoryAnnotationOnly();
+		db.from(c).delete();
+
+		Session session = db.openSession();
+
+		// the product references the category which is inserted later
+		ProductAnnotationOnlyWithForeignKey product = new ProductAnnotationOnlyWithForeignKey();
+		product.productId = 11L;
+		product.productName = "Gorgonzola";
+		product.category = "Dairy";
+		session.insert(product);
+		CategoryAnnotationOnly category = new CategoryAnnotationOnly();
+		category.category = "Dairy";
+		session.insert(category);
+		product.productName = "Gorgonzola Telino";
+		assertEquals(2, session.flush());
+		assertTrue(category.categoryId != null);
+		assertTrue(category == session.get(CategoryAnnotationOnly.class, category.categoryId));
+		assertFalse(session.isDirty(product));
+
+		ProductAnnotationOnlyWithForeignKey p = new ProductAnnotationOnlyWithForeignKey();
+		assertEquals("Gorgonzola Telino", db.from(p).where(p.productId).is(11L).selectFirst().productName);
+
+		// the category is deleted after the product which references it
+		session.delete(category);
+		session.delete(product);
+		assertEquals(2, session.flush());
+		assertEquals(0, db.from(p).where(p.category).is("Dairy").selectCount());
+		assertNull(session.get(CategoryAnnotationOnly.class, category.categoryId));
+	}
+
 	@Test
 	public void testForeignKeyDropReferenceTable() {
 		try {
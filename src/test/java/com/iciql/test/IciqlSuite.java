@@ -96,7 +96,7 @@ import com.iciql.util.Utils;
 		ConcurrencyTest.class, EnumsTest.class, ModelsTest.class, PrimitivesTest.class, OneOfTest.class,
 		RuntimeQueryTest.class, SamplesTest.class, UpdateTest.class, UpgradesTest.class, JoinTest.class,
 		UUIDTest.class, ViewsTest.class, ForeignKeyTest.class, TransactionTest.class, NestedConditionsTest.class,
-		DataTypeAdapterTest.class, ProductDaoTest.class })
+		DataTypeAdapterTest.class, ProductDaoTest.class, ReplicaTest.class })
 public class IciqlSuite {
 	private final static File baseFolder = new File(System.getProperty("user.dir"), "/testdbs");
 	private static final TestDb[] TEST_DBS = {
@@ -25,6 +25,7 @@ import java.util.Set;
 import java.util.TreeSet;
 
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -121,6 +122,65 @@ public class OneOfTest {
 						.toSQL());
 	}
 
+	@Test
+	public void oneOfPaddingTest() {
+		String PrimitivesTest = db.getDialect().prepareTableName(null, "PrimitivesTest");
+		String myInteger = db.getDialect().prepareColumnName("myInteger");
+
+		// lists are padded to the next power of two with their last value
+		PrimitivesModel p = new PrimitivesModel();
+		assertEquals(
+				String.format("SELECT * FROM %s WHERE %s IN(0, 1, 2, 2)", PrimitivesTest, myInteger),
+				db.from(p)
+						.where(p.myInteger).oneOf(0, 1, 2)
+						.toSQL());
+		assertEquals(
+				String.format("SELECT * FROM %s WHERE %s NOT IN(0, 1, 2, 3, 4, 4, 4, 4)", PrimitivesTest, myInteger),
+				db.from(p)
+						.where(p.myInteger).noneOf(0, 1, 2, 3, 4)
+						.toSQL());
+	}
+
+	@Test
+	public void oneOfPaddingLimitTest() {
+		db.setInArrayThreshold(0);
+
+		// a list whose next power of two exceeds the parameter limit is not
+		// padded beyond it
+		int max = db.getDialect().getMaxParameters();
+		List<String> values = new ArrayList<String>();
+		for (int i = 0; i < Integer.highestOneBit(max); i++) {
+			values.add("R" + i);
+		}
+		values.add("NY");
+
+		Customer c = new Customer();
+		String sql = db.from(c).where(c.region).oneOf(values).toSQL();
+		assertEquals(values.size(), sql.split(", ").length);
+		assertEquals(1, db.from(c).where(c.region).oneOf(values).selectCount());
+	}
+
+	@Test
+	public void oneOfArrayTest() {
+		Assume.assumeTrue(IciqlSuite.isH2(db));
+		db.setInArrayThreshold(2);
+
+		Customer c = new Customer();
+		List<Customer> list = db.from(c).where(c.region).oneOf("ME", "NY", "XX").select();
+		Set<String> regions = new TreeSet<String>();
+		for (Customer customer : list) {
+			regions.add(customer.region);
+		}
+		assertEquals("[ME, NY]", regions.toString());
+
+		list = db.from(c).where(c.region).noneOf("WA", "CA", "LA").select();
+		regions.clear();
+		for (Customer customer : list) {
+			regions.add(customer.region);
+		}
+		assertEquals("[ME, NY]", regions.toString());
+	}
+
 	public void noneOfTest() {
 		Customer c = new Customer();
 		List<Customer> meAndny = db.from(c).where(c.region).noneOf("WA", "CA", "LA").select();
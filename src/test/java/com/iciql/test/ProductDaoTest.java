@@ -16,20 +16,48 @@
 
 package com.iciql.test;
 
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.sql.Connection;
 import java.sql.Date;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.ToolProvider;
 
 import org.junit.After;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.iciql.Cursor;
 import com.iciql.Dao;
 import com.iciql.DaoClasspathStatementProvider;
+import com.iciql.DaoProcessor;
+import com.iciql.DaoSupport;
 import com.iciql.Db;
 import com.iciql.Iciql.Mode;
 import com.iciql.IciqlException;
+import com.iciql.PlanRemark;
+import com.iciql.QueryPlanInspector;
+import com.iciql.ResultCache;
+import com.iciql.RowConsumer;
+import com.iciql.ValidationRemark;
 import com.iciql.test.DataTypeAdapterTest.SerializedObjectTypeAdapterTest;
 import com.iciql.test.DataTypeAdapterTest.SupportedTypesAdapter;
 import com.iciql.test.models.Order;
@@ -84,6 +112,185 @@ public class ProductDaoTest extends Assert {
 		}
 	}
 
+	@Test
+	public void testQueryList() {
+
+		ProductDao dao = db.open(ProductDao.class);
+
+		List<Product> products = dao.getProductList();
+		assertEquals(10, products.size());
+		assertEquals("Chai", products.get(0).productName);
+
+		assertEquals(Arrays.asList(3L, 4L, 5L, 6L, 8L), dao.getProductIdList("Condiments"));
+		assertTrue(dao.getProductIdList("Nothing").isEmpty());
+	}
+
+	@Test
+	public void testQueryCursor() {
+
+		ProductDao dao = db.open(ProductDao.class);
+
+		// a partially read cursor is closed explicitly
+		Cursor<Product> cursor = dao.getProductCursor();
+		assertEquals("Chai", cursor.next().productName);
+		assertEquals("Chang", cursor.next().productName);
+		cursor.close();
+		assertFalse(cursor.hasNext());
+
+		// an exhausted cursor closes itself
+		int count = 0;
+		for (Product product : dao.getProductCursor()) {
+			assertEquals(++count, product.productId.intValue());
+		}
+		assertEquals(10, count);
+
+		Iterator<String> names = dao.getProductNames();
+		assertEquals("Chai", names.next());
+		List<String> remaining = new ArrayList<String>();
+		while (names.hasNext()) {
+			remaining.add(names.next());
+		}
+		assertEquals(9, remaining.size());
+		assertEquals("Ikura", remaining.get(8));
+	}
+
+	@Test
+	public void testQueryRowConsumer() {
+
+		ProductDao dao = db.open(ProductDao.class);
+
+		final List<String> names = new ArrayList<String>();
+		dao.forEachProduct("Beverages", new RowConsumer<Product>() {
+			@Override
+			public void accept(Product row) {
+				names.add(row.productName);
+			}
+		});
+		assertEquals(Arrays.asList("Chai", "Chang"), names);
+	}
+
+	@Test
+	public void testBatchStatement() {
+
+		ProductDao dao = db.open(ProductDao.class);
+
+		// parallel argument arrays
+		int[] counts = dao.setProductNames(new long[] { 1, 2, 3 }, Arrays.asList("a", "b", "c"));
+		assertEquals(3, counts.length);
+		assertEquals("a", dao.getProductName(1));
+		assertEquals("c", dao.getProductName(3));
+
+		// beans and a constant argument in batches of 2
+		List<Product> products = dao.getProductList().subList(0, 5);
+		for (Product product : products) {
+			product.unitsInStock = 100;
+		}
+		counts = dao.restockProducts(products, "Restocked");
+		assertEquals(5, counts.length);
+		assertEquals(5, dao.getProductIdList("Restocked").size());
+		assertEquals(100, dao.getUnitsInStock(5));
+
+		// mismatched argument arrays
+		try {
+			dao.setProductNames(new long[] { 1, 2 }, Arrays.asList("a"));
+			assertTrue("batch arguments of different lengths should fail", false);
+		} catch (IciqlException e) {
+			assertTrue(true);
+		}
+
+		// no batch argument
+		try {
+			dao.setProductNamesWithoutBatch(1, "a");
+			assertTrue("a batch without an array or Iterable argument should fail", false);
+		} catch (IciqlException e) {
+			assertTrue(true);
+		}
+	}
+
+	@Test
+	public void testCacheResult() {
+
+		ProductDao dao = db.open(ProductDao.class);
+		ResultCache cache = new ResultCache();
+		db.setResultCache(cache);
+
+		assertEquals("Chai", dao.getCachedProductName(1));
+		assertEquals("Chai", dao.getCachedProductName(1));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+		// a DAO statement invalidates the cached results
+		dao.setProductName(1, "Tea");
+		assertEquals("Tea", dao.getCachedProductName(1));
+		assertEquals(1, cache.getInvalidationCount());
+
+		// a Db write invalidates the cached results
+		Product chai = dao.getProduct(1);
+		chai.productName = "Green Tea";
+		db.update(chai);
+		assertEquals("Green Tea", dao.getCachedProductName(1));
+		assertEquals(2, cache.getInvalidationCount());
+
+		// writes to other tables do not
+		db.executeUpdate("delete from Orders where orderId < 0");
+		assertEquals("Green Tea", dao.getCachedProductName(1));
+		assertEquals(2, cache.getHitCount());
+
+		// least recently used results are evicted
+		dao.getCachedProductName(2);
+		dao.getCachedProductName(3);
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void testAsync() throws Exception {
+
+		ProductDao dao = db.open(ProductDao.class);
+
+		// independent calls overlap on borrowed connections
+		Future<List<Product>> products = dao.getProductsAsync("Condiments");
+		Future<String> name = dao.getProductNameAsync(2);
+		assertEquals(5, products.get().size());
+		assertEquals("Chang", name.get());
+
+		assertEquals(1, dao.setProductNameAsync(1, "Tea").get().intValue());
+		assertEquals("Tea", dao.getProductName(1));
+
+		Product p = new Product();
+		Future<List<Product>> beverages = db.from(p).where(p.category).is("Beverages").orderBy(p.productId)
+				.selectAsync();
+		assertEquals(2, beverages.get().size());
+		assertEquals("Tea", beverages.get().get(0).productName);
+
+		Future<Integer> updated = db.from(p).set(p.category).to("Drinks").where(p.category).is("Beverages")
+				.updateAsync();
+		assertEquals(2, updated.get().intValue());
+		assertEquals(2, db.from(p).where(p.category).is("Drinks").selectCount());
+
+		try {
+			dao.getProductCursorAsync();
+			fail("Streamed results can not be returned asynchronously");
+		} catch (IciqlException e) {
+		}
+	}
+
+	@Test
+	public void testWarmUp() {
+
+		db.warmUp(Product.class, Order.class);
+		db.warmUpDao(PlanDao.class);
+
+		PlanDao dao = db.open(PlanDao.class);
+		assertEquals("Chang", dao.getProduct(2).productName);
+
+		try {
+			db.warmUpDao(Product.class);
+			fail("Product is not a DAO interface");
+		} catch (IciqlException e) {
+		}
+	}
+
 	@Test
 	public void testQueryIgnoreDoubleDelimiter() {
 
@@ -230,6 +437,56 @@ public class ProductDaoTest extends Assert {
 
 	}
 
+	@Test
+	public void testStatementReuse() {
+
+		ProductDao dao = db.open(ProductDao.class);
+		ProductDao dao2 = db.open(ProductDao.class);
+
+		// both DAOs share the prepared statements of the connection
+		for (int i = 0; i < 3; i++) {
+			assertEquals("Chang", dao.getProduct(2).productName);
+			assertEquals("Aniseed Syrup", dao2.getProduct(3).productName);
+			assertEquals("Chef Anton's Gumbo Mix", dao.getProductName(5));
+		}
+
+		// bind a typed null parameter
+		dao.setProductName(1, null);
+		assertNull(dao2.getProduct(1).productName);
+		dao2.setProductName(1, "Tea");
+		assertEquals("Tea", dao.getProduct(1).productName);
+
+		// count the statements which are prepared on the connection
+		final Connection conn = db.getConnection();
+		final AtomicInteger prepared = new AtomicInteger();
+		Connection counting = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { Connection.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("close".equals(method.getName())) {
+							// the connection belongs to the test db
+							return null;
+						} else if (method.getName().startsWith("prepareStatement")) {
+							prepared.incrementAndGet();
+						}
+						try {
+							return method.invoke(conn, args);
+						} catch (InvocationTargetException e) {
+							throw e.getCause();
+						}
+					}
+				});
+		Db countingDb = Db.open(counting);
+		ProductDao dao3 = countingDb.open(ProductDao.class);
+		assertEquals("Chang", dao3.getProduct(2).productName);
+		assertEquals(1, prepared.get());
+
+		// the second execution re-uses the cached prepared statement
+		assertEquals("Aniseed Syrup", dao3.getProduct(3).productName);
+		assertEquals(1, prepared.get());
+		countingDb.close();
+	}
+
 	@Test
 	public void testQueryWithDataTypeAdapter() {
 
@@ -338,6 +595,79 @@ public class ProductDaoTest extends Assert {
 		db.close();
 	}
 
+	@Test
+	public void testQueryPlans() {
+
+		// plans are database specific
+		Assume.assumeTrue(IciqlSuite.isH2(db));
+
+		Product p = new Product();
+		QueryPlanInspector inspector = new QueryPlanInspector(db);
+		inspector.addDao(PlanDao.class);
+		inspector.addQuery("productsInStock", db.from(p).where(p.unitsInStock).exceeds(0));
+
+		Map<String, String> plans = inspector.explain();
+		assertEquals(3, plans.size());
+
+		// the category update and the stock query scan the table
+		Properties baseline = new Properties();
+		baseline.putAll(plans);
+		List<PlanRemark> remarks = inspector.validatePlans(baseline);
+		assertEquals(2, remarks.size());
+		assertEquals("PlanDao.renameCategory", remarks.get(0).statement);
+		assertEquals(ValidationRemark.Level.WARN, remarks.get(0).level);
+		assertEquals("productsInStock", remarks.get(1).statement);
+		assertEquals(ValidationRemark.Level.WARN, remarks.get(1).level);
+
+		// a changed plan is an error
+		baseline.setProperty("PlanDao.getProduct", "changed");
+		remarks = inspector.validatePlans(baseline);
+		assertEquals(3, remarks.size());
+		assertEquals("PlanDao.getProduct", remarks.get(0).statement);
+		assertTrue(remarks.get(0).isError());
+	}
+
+	@Test
+	public void testGeneratedDao() throws Exception {
+
+		// requires a JDK
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		Assume.assumeNotNull(compiler);
+
+		// generate and compile the implementation of the compiled PlanDao
+		File dir = new File(System.getProperty("java.io.tmpdir"), "iciql-dao-" + System.nanoTime());
+		assertTrue(dir.mkdirs());
+		List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"),
+				"-processor", DaoProcessor.class.getName(), "-d", dir.getPath(), "-s", dir.getPath());
+		CompilationTask task = compiler.getTask(null, null, null, options,
+				Arrays.asList(PlanDao.class.getCanonicalName()), null);
+		assertTrue(task.call());
+
+		URLClassLoader loader = new URLClassLoader(new URL[] { dir.toURI().toURL() }, getClass()
+				.getClassLoader());
+		Class<?> implementation = loader.loadClass(PlanDao.class.getName().replace('$', '_')
+				+ DaoSupport.SUFFIX);
+		PlanDao dao = (PlanDao) implementation.getConstructor(Db.class).newInstance(db);
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals("Chang", dao.getProduct(2).productName);
+		}
+		assertEquals(5, dao.renameCategory("Condiments", "Garnishes"));
+		assertEquals("Garnishes", dao.getProduct(3).category);
+
+		delete(dir);
+	}
+
+	private void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
 	/**
 	 * Define the Product DAO interface.
 	 */
@@ -347,7 +677,7 @@ public class ProductDaoTest extends Assert {
 		void getWithIllegalVoid();
 
 		@SqlQuery("select * from Product")
-		List<Product> getWithIllegalCollection();
+		Set<Product> getWithIllegalCollection();
 
 		@SqlQuery("select * from Product where ::id = 1")
 		Product getWithDoubleDelimiter();
@@ -355,6 +685,21 @@ public class ProductDaoTest extends Assert {
 		@SqlQuery("select * from Product")
 		Product[] getAllProducts();
 
+		@SqlQuery("select * from Product order by productId")
+		List<Product> getProductList();
+
+		@SqlQuery("select productId from Product where category = :category order by productId")
+		List<Long> getProductIdList(@Bind("category") String cat);
+
+		@SqlQuery("select * from Product order by productId")
+		Cursor<Product> getProductCursor();
+
+		@SqlQuery("select productName from Product order by productId")
+		Iterator<String> getProductNames();
+
+		@SqlQuery("select * from Product where category = :category order by productId")
+		void forEachProduct(@Bind("category") String category, RowConsumer<Product> consumer);
+
 		@SqlQuery("select * from Product where productId = :id")
 		Product getProduct(@Bind("id") long id);
 
@@ -411,5 +756,43 @@ public class ProductDaoTest extends Assert {
 		@SqlQuery("get.products")
 		Product[] getProductsFromResourceQuery();
 
+		@SqlBatch("update Product set productName = :name where productId = :id")
+		int[] setProductNames(@Bind("id") long[] ids, @Bind("name") List<String> names);
+
+		@SqlBatch(value = "update Product set unitsInStock = :p.unitsInStock, category = :category where productId = :p.productId", batchSize = 2)
+		int[] restockProducts(@BindBean("p") List<Product> products, @Bind("category") String category);
+
+		@SqlBatch("update Product set productName = :name where productId = :id")
+		void setProductNamesWithoutBatch(@Bind("id") long id, @Bind("name") String name);
+
+		@SqlQuery("select productName from Product where productId = :id")
+		@CacheResult(tables = "Product", maxEntries = 2)
+		String getCachedProductName(@Bind("id") long id);
+
+		@SqlQuery("select * from Product where category = :category order by productId")
+		Future<List<Product>> getProductsAsync(@Bind("category") String category);
+
+		@SqlQuery("select productName from Product where productId = :?")
+		Future<String> getProductNameAsync(long id);
+
+		@SqlQuery("select * from Product order by productId")
+		Future<Cursor<Product>> getProductCursorAsync();
+
+		@SqlStatement("update Product set productName = :name where productId = :id")
+		Future<Integer> setProductNameAsync(@Bind("id") long id, @Bind("name") String name);
+
+	}
+
+	/**
+	 * Define a DAO interface for query plan inspection.
+	 */
+	public interface PlanDao extends Dao {
+
+		@SqlQuery("select * from Product where productId = :id")
+		Product getProduct(@Bind("id") long id);
+
+		@SqlStatement("update Product set category = :newCategory where category = :oldCategory")
+		int renameCategory(@Bind("oldCategory") String oldCategory, @Bind("newCategory") String newCategory);
+
 	}
 }
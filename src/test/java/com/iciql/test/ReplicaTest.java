@@ -0,0 +1,126 @@
+/*
+ * Copyright 2026 iciql contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iciql.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.iciql.Db;
+import com.iciql.ReplicaSet;
+import com.iciql.TransactionWork;
+import com.iciql.test.ProductDaoTest.ProductDao;
+import com.iciql.test.models.Product;
+
+/**
+ * Tests reading from replicas. The primary and the replicas are independent
+ * H2 databases with different rows, so each result tells where it was read.
+ */
+public class ReplicaTest {
+
+	private Db primary;
+	private Db replica1;
+	private Db replica2;
+	private ReplicaSet replicas;
+
+	@Before
+	public void setUp() {
+		List<Product> products = Product.getList();
+		primary = Db.open(dataSource("primary"));
+		primary.insertAll(products);
+		replica1 = Db.open(dataSource("replica1"));
+		replica1.insertAll(products.subList(0, 1));
+		replica2 = Db.open(dataSource("replica2"));
+		replica2.insertAll(products.subList(0, 2));
+		replicas = new ReplicaSet(dataSource("replica1"), dataSource("replica2"));
+	}
+
+	@After
+	public void tearDown() {
+		primary.dropTable(Product.class);
+		replica1.dropTable(Product.class);
+		replica2.dropTable(Product.class);
+		primary.close();
+		replica1.close();
+		replica2.close();
+	}
+
+	private DataSource dataSource(String name) {
+		JdbcDataSource ds = new JdbcDataSource();
+		ds.setURL("jdbc:h2:mem:iciql_" + name + ";DB_CLOSE_DELAY=-1");
+		ds.setUser("sa");
+		ds.setPassword("sa");
+		return ds;
+	}
+
+	@Test
+	public void testReadsFromReplicas() {
+		Db db = Db.open(dataSource("primary"), replicas);
+		Product p = new Product();
+		try {
+			// replicas are used in turn
+			assertEquals(1L, db.from(p).selectCount());
+			assertEquals(2, db.from(p).select().size());
+			assertEquals(1, db.open(ProductDao.class).getAllProducts().length);
+			assertEquals(2L, replicas.getReadCount(0));
+			assertEquals(1L, replicas.getReadCount(1));
+
+			// transactions read from the primary
+			long count = db.inTransaction(new TransactionWork<Long>() {
+				@Override
+				public Long execute(Db tx) {
+					return tx.from(new Product()).selectCount();
+				}
+			});
+			assertEquals(10L, count);
+		} finally {
+			db.close();
+		}
+	}
+
+	@Test
+	public void testReadYourWrites() {
+		replicas.setReadYourWritesWindow(60000);
+		Db db = Db.open(dataSource("primary"), replicas);
+		Product p = new Product();
+		try {
+			assertEquals(1L, db.from(p).selectCount());
+			db.from(p).set(p.unitsInStock).to(0).where(p.productId).is(1).update();
+
+			// reads follow the write to the primary
+			assertEquals(10L, db.from(p).selectCount());
+			assertEquals(0, db.from(p).where(p.productId).is(1).selectFirst().unitsInStock.intValue());
+		} finally {
+			db.close();
+		}
+
+		// the window is tracked per database
+		Db other = Db.open(dataSource("primary"), replicas);
+		try {
+			assertEquals(2L, other.from(p).selectCount());
+		} finally {
+			other.close();
+		}
+	}
+}
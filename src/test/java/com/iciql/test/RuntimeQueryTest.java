@@ -16,12 +16,19 @@
 package com.iciql.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Assume;
 import org.junit.Test;
@@ -31,8 +38,10 @@ import com.iciql.QueryWhere;
 import com.iciql.test.models.EnumModels.Tree;
 import com.iciql.test.models.Product;
 import com.iciql.test.models.StaticQueries;
+import com.iciql.util.IciqlLogger;
+import com.iciql.util.IciqlLogger.IciqlListener;
+import com.iciql.util.IciqlLogger.StatementType;
 import com.iciql.util.JdbcUtils;
-import com.iciql.util.Utils;
 
 /**
  * Tests the runtime dynamic query function.
@@ -110,8 +119,9 @@ public class RuntimeQueryTest {
 		StaticQueries.StaticModel2 m2 = new StaticQueries.StaticModel2();
 		StaticQueries.StaticModel2 m3 = new StaticQueries.StaticModel2();
 
-		int t0 = Utils.AS_COUNTER.get() + 1;
-		int t1 = t0 + 1;
+		// join aliases are assigned per query in join order
+		int t0 = 1;
+		int t1 = 2;
 
 		QueryWhere<?> where = db.from(m1).innerJoin(m2).on(m1.id).is(m2.id).where(m2.myTree).is(Tree.MAPLE);
 		String q1 = where.toSQL(false);
@@ -159,6 +169,192 @@ public class RuntimeQueryTest {
 		db.close();
 	}
 
+	@Test
+	public void testRepeatedQueryShape() {
+		Db db = IciqlSuite.openNewDb();
+		db.insertAll(Product.getList());
+
+		// same query shape with different parameters
+		for (Product expected : Product.getList()) {
+			Product p = new Product();
+			Product product = db.from(p).where(p.productId).is(expected.productId)
+					.and(p.category).is(expected.category).selectFirst();
+			assertEquals(expected.productName, product.productName);
+		}
+
+		// structurally different queries of a table do not share their SQL
+		Product p = new Product();
+		for (int i = 0; i < 2; i++) {
+			assertEquals(1, db.from(p).where(p.productId).is(1).selectCount());
+			assertEquals(9, db.from(p).where(p.productId).exceeds(1).selectCount());
+			assertEquals(2, db.from(p).where(p.productId).oneOf(1, 2).selectCount());
+			assertEquals(3, db.from(p).where(p.productId).oneOf(1, 2, 3).selectCount());
+			assertEquals(10, db.from(p).where(p.productId).is(p.productId).selectCount());
+			assertEquals(4, db.from(p).where(p.productId).atMost(5).limit(4).select().size());
+			assertEquals(1, db.from(p).set(p.unitsInStock).to(50 + i).where(p.productId).is(2 + i).update());
+			assertEquals(1, db.from(p).where(p.unitsInStock).is(50 + i).selectCount());
+		}
+
+		db.close();
+	}
+
+	@Test
+	public void testQueryShapeAgreement() throws Exception {
+		Db db = IciqlSuite.openNewDb();
+		db.insertAll(Product.getList());
+
+		final String marker = "shape-" + System.nanoTime();
+		final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch latch = new CountDownLatch(1);
+		IciqlListener listener = new IciqlListener() {
+			@Override
+			public void logIciql(StatementType type, String statement) {
+				if (type == StatementType.SELECT && statement.startsWith("SELECT COUNT(*)")) {
+					executed.add(statement);
+				} else if (type == StatementType.WARN && statement.equals(marker)) {
+					latch.countDown();
+				}
+			}
+		};
+		IciqlLogger.registerListener(listener);
+		List<String> rendered = new ArrayList<String>();
+		try {
+			// the second pass executes the cached shapes, which must agree
+			// with the SQL rendered for each query
+			Product p = new Product();
+			Product p2 = new Product();
+			for (int i = 0; i < 2; i++) {
+				assertShape(rendered, 1, db.from(p).where(p.productId).is(9));
+				assertShape(rendered, 9, db.from(p).where(p.productId).isNot(9));
+				assertShape(rendered, 5, db.from(p).where(p.productId).exceeds(5));
+				assertShape(rendered, 6, db.from(p).where(p.productId).atLeast(5));
+				assertShape(rendered, 4, db.from(p).where(p.productId).lessThan(5));
+				assertShape(rendered, 5, db.from(p).where(p.productId).atMost(5));
+				assertShape(rendered, 0, db.from(p).where(p.category).isNull());
+				assertShape(rendered, 10, db.from(p).where(p.category).isNotNull());
+				assertShape(rendered, 4, db.from(p).where(p.productName).like("Ch%"));
+				assertShape(rendered, 3, db.from(p).where(p.productId).between(2).and(4));
+				assertShape(rendered, 3, db.from(p).where(p.productId).oneOf(1, 2, 3));
+				assertShape(rendered, 5, db.from(p).where(p.productId).oneOf(1, 2, 3, 4, 5));
+				assertShape(rendered, 7, db.from(p).where(p.productId).noneOf(1, 2, 3));
+				assertShape(rendered, 10, db.from(p).where(p.productId).is(p.productId));
+				assertShape(rendered, 3, db.from(p).where(p.category).is("Condiments").and(p.unitsInStock)
+						.exceeds(10));
+				assertShape(rendered, 4, db.from(p).where(p.productId).atMost(2).or(p.productId).atLeast(9));
+				assertShape(rendered, 2, db.from(p).where(p.category).is("Produce").orOpen().and(p.productId)
+						.atLeast(9).and(p.unitsInStock).exceeds(30).close());
+				assertShape(rendered, 5, db.from(p).where("productId > ?", 5));
+				assertShape(rendered, 2, db.from(p).innerJoin(p2).on(p.productId).is(p2.productId)
+						.where(p2.category).is("Beverages"));
+			}
+			IciqlLogger.warn(marker);
+			assertTrue(latch.await(5, TimeUnit.SECONDS));
+		} finally {
+			IciqlLogger.unregisterListener(listener);
+			db.close();
+		}
+
+		assertEquals(rendered.size(), executed.size());
+		for (int i = 0; i < rendered.size(); i++) {
+			String sql = rendered.get(i);
+			String statement = executed.get(i);
+			assertEquals(sql.substring(sql.indexOf(" FROM ")).trim(),
+					statement.substring(statement.indexOf(" FROM ")).trim());
+		}
+	}
+
+	private static void assertShape(List<String> rendered, long count, QueryWhere<?> query) {
+		assertEquals(count, query.selectCount());
+		rendered.add(query.getSQL());
+	}
+
+	@Test
+	public void testExplain() {
+		Db db = IciqlSuite.openNewDb();
+
+		// explain output is database specific
+		Assume.assumeTrue(IciqlSuite.isH2(db));
+
+		Product p = new Product();
+		String plan = db.from(p).where(p.productId).is(1).explain();
+		assertNotNull(plan);
+		assertTrue(plan, plan.toUpperCase().contains("PRODUCT"));
+
+		db.close();
+	}
+
+	@Test
+	public void testSlowStatementExplain() throws Exception {
+		Db db = IciqlSuite.openNewDb();
+
+		// explain output is database specific
+		Assume.assumeTrue(IciqlSuite.isH2(db));
+
+		final String marker = "-" + System.nanoTime();
+		final AtomicReference<String> plan = new AtomicReference<String>();
+		final CountDownLatch latch = new CountDownLatch(1);
+		IciqlListener listener = new IciqlListener() {
+			@Override
+			public void logIciql(StatementType type, String statement) {
+				if (type == StatementType.EXPLAIN && statement.contains(marker)) {
+					plan.set(statement);
+					latch.countDown();
+				}
+			}
+		};
+		IciqlLogger.registerListener(listener);
+		try {
+			// every statement is slow with a threshold of 0 ms
+			db.setSlowStatementThreshold(0);
+			Product p = new Product();
+			// the marker literal makes the statement unique, so that it is
+			// not skipped as explained recently
+			db.from(p).where("productId <> ? AND productId <> " + marker, 0).select();
+			assertTrue(latch.await(5, TimeUnit.SECONDS));
+			assertTrue(plan.get(), plan.get().toUpperCase().contains("PRODUCT"));
+		} finally {
+			IciqlLogger.unregisterListener(listener);
+			db.close();
+		}
+	}
+
+	@Test
+	public void testSlowStatementExplainInTransaction() throws Exception {
+		Db db = IciqlSuite.openNewDb();
+		db.insertAll(Product.getList());
+
+		// explain output is database specific
+		Assume.assumeTrue(IciqlSuite.isH2(db));
+
+		final String marker = "-" + System.nanoTime();
+		final CountDownLatch latch = new CountDownLatch(1);
+		IciqlListener listener = new IciqlListener() {
+			@Override
+			public void logIciql(StatementType type, String statement) {
+				if (type == StatementType.EXPLAIN && statement.contains(marker)) {
+					latch.countDown();
+				}
+			}
+		};
+		IciqlLogger.registerListener(listener);
+		try {
+			db.setSlowStatementThreshold(0);
+			Product p = new Product();
+			db.begin();
+			db.from(p).where(p.productId).is(1).delete();
+			db.from(p).where("productId <> ? AND productId <> " + marker, 0).select();
+			assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+			// the statement is explained within the open transaction
+			assertEquals(9, db.from(p).selectCount());
+			db.rollback();
+			assertEquals(10, db.from(p).selectCount());
+		} finally {
+			IciqlLogger.unregisterListener(listener);
+			db.close();
+		}
+	}
+
 	@Test
 	public void testExecuteQuery() throws SQLException {
 		Db db = IciqlSuite.openNewDb();
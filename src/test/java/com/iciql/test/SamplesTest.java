@@ -391,6 +391,25 @@ public class SamplesTest {
 		assertEquals(1, count);
 	}
 
+	@Test
+	public void testFilterReuse() {
+		// the filter class is decompiled once, the captured values differ
+		assertEquals(1, countComplexObjects(1, "hello"));
+		assertEquals(0, countComplexObjects(0, "hello"));
+		assertEquals(0, countComplexObjects(1, "world"));
+		assertEquals(1, countComplexObjects(1, "hello"));
+	}
+
+	private long countComplexObjects(final int x, final String name) {
+		final ComplexObject co = new ComplexObject();
+		return db.from(co).where(new Filter() {
+			@Override
+			public boolean where() {
+				return co.id == x && co.name.equals(name);
+			}
+		}).selectCount();
+	}
+
 	@Test
 	public void testLimitOffset() {
 		Set<Integer> ids = new HashSet<Integer>();
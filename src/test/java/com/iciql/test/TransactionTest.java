@@ -16,15 +16,21 @@
 package com.iciql.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.sql.SQLException;
 
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.iciql.Db;
 import com.iciql.IciqlException;
+import com.iciql.RetryPolicy;
+import com.iciql.TransactionWork;
 import com.iciql.test.models.CategoryAnnotationOnly;
 import com.iciql.test.models.ProductAnnotationOnlyWithForeignKey;
 
@@ -88,6 +94,116 @@ public class TransactionTest {
 		assertEquals(count2, 0L);
 	}
 
+	@Test
+	public void testNestedTransactions() {
+		db.inTransaction(new TransactionWork<Void>() {
+			@Override
+			public Void execute(Db tx) {
+				tx.insertAll(CategoryAnnotationOnly.getList());
+				return null;
+			}
+		});
+
+		try {
+			db.inTransaction(new TransactionWork<Void>() {
+				@Override
+				public Void execute(Db tx) {
+					tx.insertAll(ProductAnnotationOnlyWithForeignKey.getList());
+					try {
+						// the nested transaction joins and marks the transaction
+						tx.inTransaction(new TransactionWork<Void>() {
+							@Override
+							public Void execute(Db nested) {
+								throw new IllegalStateException("rollback");
+							}
+						});
+					} catch (IllegalStateException e) {
+					}
+					return null;
+				}
+			});
+			fail("The transaction should have been rolled back!");
+		} catch (IciqlException e) {
+		}
+		assertFalse(db.isInTransaction());
+
+		ProductAnnotationOnlyWithForeignKey p = new ProductAnnotationOnlyWithForeignKey();
+		CategoryAnnotationOnly c = new CategoryAnnotationOnly();
+		assertEquals(5L, db.from(c).selectCount());
+		assertEquals(0L, db.from(p).selectCount());
+	}
+
+	@Test
+	public void testNestedSavepoint() {
+		Assume.assumeTrue(db.getDialect().supportsSavePoints());
+
+		db.inTransaction(new TransactionWork<Void>() {
+			@Override
+			public Void execute(Db tx) {
+				tx.insertAll(CategoryAnnotationOnly.getList());
+				assertTrue(tx.isInTransaction());
+				try {
+					// the savepoint only rolls back the nested work
+					tx.inTransaction(true, new TransactionWork<Void>() {
+						@Override
+						public Void execute(Db nested) {
+							nested.insertAll(ProductAnnotationOnlyWithForeignKey.getList());
+							throw new IllegalStateException("rollback");
+						}
+					});
+				} catch (IllegalStateException e) {
+				}
+				return null;
+			}
+		});
+		assertFalse(db.isInTransaction());
+
+		ProductAnnotationOnlyWithForeignKey p = new ProductAnnotationOnlyWithForeignKey();
+		CategoryAnnotationOnly c = new CategoryAnnotationOnly();
+		assertEquals(5L, db.from(c).selectCount());
+		assertEquals(0L, db.from(p).selectCount());
+	}
+
+	@Test
+	public void testRetry() {
+		RetryPolicy policy = new RetryPolicy().setMaxAttempts(3).setBackoff(1, 10);
+		db.setRetryPolicy(policy);
+		final int[] attempts = { 0 };
+		db.inTransaction(new TransactionWork<Void>() {
+			@Override
+			public Void execute(Db tx) {
+				tx.insertAll(CategoryAnnotationOnly.getList());
+				if (++attempts[0] == 1) {
+					// the first attempt is chosen as a deadlock victim
+					throw new IciqlException(new SQLException("deadlock", "40001"));
+				}
+				return null;
+			}
+		});
+		CategoryAnnotationOnly c = new CategoryAnnotationOnly();
+		assertEquals(2, attempts[0]);
+		assertEquals(5L, db.from(c).selectCount());
+		assertEquals(1, policy.getRetryCount());
+		assertEquals(1, policy.getRecoveredCount());
+
+		// other failures are not retried
+		try {
+			db.inTransaction(new TransactionWork<Void>() {
+				@Override
+				public Void execute(Db tx) {
+					attempts[0]++;
+					throw new IciqlException(new SQLException("duplicate key", "23505"));
+				}
+			});
+			fail("The transaction should have failed!");
+		} catch (IciqlException e) {
+			assertEquals(IciqlException.CODE_DUPLICATE_KEY, e.getIciqlCode());
+		}
+		assertEquals(3, attempts[0]);
+		assertEquals(1, policy.getRetryCount());
+		db.setRetryPolicy(null);
+	}
+
 	/**
 	 * Helper to set transaction mode
 	 */
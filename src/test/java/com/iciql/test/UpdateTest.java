@@ -19,13 +19,21 @@ package com.iciql.test;
 
 import static java.sql.Date.valueOf;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.List;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.iciql.Db;
+import com.iciql.EntityCache;
+import com.iciql.Iciql.IQCache;
+import com.iciql.Iciql.IQColumn;
+import com.iciql.Iciql.IQTable;
+import com.iciql.QueryCache;
 import com.iciql.test.models.Customer;
 import com.iciql.test.models.Order;
 import com.iciql.test.models.Product;
@@ -157,4 +165,116 @@ public class UpdateTest {
 
 	}
 
+	@Test
+	public void testMultiRowUpdate() {
+		db.setMultiRowUpdateSize(4);
+
+		// update 10 products with 3 statements
+		Product p = new Product();
+		List<Product> products = db.from(p).orderBy(p.productId).select();
+		for (Product product : products) {
+			product.unitsInStock = product.unitsInStock + 100;
+		}
+		db.updateAll(products);
+
+		List<Product> updated = db.from(p).orderBy(p.productId).select();
+		assertEquals(products.size(), updated.size());
+		for (int i = 0; i < products.size(); i++) {
+			assertEquals(products.get(i).productName, updated.get(i).productName);
+			assertEquals(products.get(i).unitsInStock, updated.get(i).unitsInStock);
+		}
+
+		// update rows with a combined primary key
+		Order o = new Order();
+		List<Order> orders = db.from(o).orderBy(o.orderId).select();
+		for (Order order : orders) {
+			order.orderDate = valueOf("2007-01-03");
+		}
+		db.updateAll(orders);
+		assertEquals(orders.size(), db.from(o).where(o.orderDate).is(valueOf("2007-01-03")).selectCount());
+	}
+
+	@Test
+	public void testEntityCache() {
+		EntityCache cache = new EntityCache();
+		db.setEntityCache(cache);
+
+		CachedProduct chai = db.get(CachedProduct.class, 1);
+		assertEquals("Chai", chai.productName);
+		CachedProduct c = new CachedProduct();
+		assertEquals("Chai", db.from(c).where(c.productId).is(1).selectFirst().productName);
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+		// the cache returns copies
+		chai.productName = "Tea";
+		assertEquals("Chai", db.get(CachedProduct.class, 1L).productName);
+
+		// a model update invalidates the cached object of its key
+		db.get(CachedProduct.class, 2);
+		db.update(chai);
+		assertEquals(1, cache.getInvalidationCount());
+		assertEquals("Tea", db.get(CachedProduct.class, 1).productName);
+
+		// a query update invalidates all cached objects of the table
+		Product p = new Product();
+		db.from(p).set(p.category).to("Drinks").where(p.category).is("Beverages").update();
+		assertEquals(0, cache.size());
+		assertEquals("Drinks", db.get(CachedProduct.class, 2).category);
+		assertNull(db.get(CachedProduct.class, 0));
+	}
+
+	@Test
+	public void testQueryCache() {
+		QueryCache cache = new QueryCache();
+		db.setQueryCache(cache);
+
+		Product p = new Product();
+		List<Product> beverages = db.from(p).where(p.category).is("Beverages").cached(0).select();
+		long count = db.from(p).where(p.category).is("Beverages").cached(0).selectCount();
+		assertEquals(beverages.size(), count);
+		assertTrue(beverages == db.from(p).where(p.category).is("Beverages").cached(0).select());
+		assertEquals(count, db.from(p).where(p.category).is("Beverages").cached(0).selectCount());
+		assertEquals(2, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+
+		// other parameters are cached separately
+		db.from(p).where(p.category).is("Condiments").cached(0).select();
+		assertEquals(3, cache.size());
+
+		// writes to other tables do not affect the results
+		Customer c = new Customer();
+		db.from(c).set(c.region).to("XX").where(c.region).is("WA").update();
+		db.from(p).where(p.category).is("Beverages").cached(0).select();
+		assertEquals(3, cache.getHitCount());
+
+		// writes to the table make the results stale
+		Product chai = db.from(p).where(p.productId).is(1).selectFirst();
+		chai.category = "Tea";
+		db.update(chai);
+		assertEquals(count - 1, db.from(p).where(p.category).is("Beverages").cached(0).selectCount());
+		assertEquals(1, cache.getInvalidationCount());
+	}
+
+	/**
+	 * A cached model of the Product table.
+	 */
+	@IQCache(maxEntries = 5)
+	@IQTable(name = "Product", create = false)
+	public static class CachedProduct {
+
+		@IQColumn(primaryKey = true)
+		public Integer productId;
+
+		@IQColumn
+		public String productName;
+
+		@IQColumn
+		public String category;
+
+		public CachedProduct() {
+			// public constructor
+		}
+	}
+
 }